@@ -0,0 +1,189 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks;
+
+import com.github.cmcgeemac.norm.NoP;
+import com.github.cmcgeemac.norm.NoR;
+import com.github.cmcgeemac.norm.NormStatement;
+import com.github.cmcgeemac.norm.SQL;
+import com.github.cmcgeemac.norm.benchmarks.jdbc.FakeConnection;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binding a single parameter of each of the supported types and executing an
+ * update that doesn't do anything, so that the difference between the modes
+ * is the binding. The boxed Integer covers the null check that nullable
+ * parameters need.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingBenchmark {
+
+    static final String SQL = "UPDATE foo SET v = :v";
+    static final String JDBC_SQL = "UPDATE foo SET v = ?";
+
+    @Param({"int", "long", "double", "Integer", "String", "BigDecimal", "Timestamp"})
+    public String type;
+
+    @Param({Execution.GENERATED, Execution.REFLECTIVE, Execution.JDBC})
+    public String mode;
+
+    private final Connection c = new FakeConnection();
+    private Execution execution;
+
+    public static class IntParams implements NoP {
+
+        int v = 42;
+    }
+
+    public static class LongParams implements NoP {
+
+        long v = 42L;
+    }
+
+    public static class DoubleParams implements NoP {
+
+        double v = 4.2;
+    }
+
+    public static class IntegerParams implements NoP {
+
+        Integer v = 42;
+    }
+
+    public static class StringParams implements NoP {
+
+        String v = "forty-two";
+    }
+
+    public static class BigDecimalParams implements NoP {
+
+        BigDecimal v = new BigDecimal("42.00");
+    }
+
+    public static class TimestampParams implements NoP {
+
+        Timestamp v = new Timestamp(42L);
+    }
+
+    @SQL(SQL)
+    public static class IntStatement extends NormStatement<IntParams, NoR> {
+    }
+
+    @SQL(SQL)
+    public static class LongStatement extends NormStatement<LongParams, NoR> {
+    }
+
+    @SQL(SQL)
+    public static class DoubleStatement extends NormStatement<DoubleParams, NoR> {
+    }
+
+    @SQL(SQL)
+    public static class IntegerStatement extends NormStatement<IntegerParams, NoR> {
+    }
+
+    @SQL(SQL)
+    public static class StringStatement extends NormStatement<StringParams, NoR> {
+    }
+
+    @SQL(SQL)
+    public static class BigDecimalStatement extends NormStatement<BigDecimalParams, NoR> {
+    }
+
+    @SQL(SQL)
+    public static class TimestampStatement extends NormStatement<TimestampParams, NoR> {
+    }
+
+    @Setup
+    public void setup() {
+        switch (type) {
+            case "int":
+                execution = execution(new IntStatement(), new @SQL(SQL) NormStatement<IntParams, NoR>() {
+                }, new IntParams(), (pstmt, p) -> pstmt.setInt(1, p.v));
+                break;
+            case "long":
+                execution = execution(new LongStatement(), new @SQL(SQL) NormStatement<LongParams, NoR>() {
+                }, new LongParams(), (pstmt, p) -> pstmt.setLong(1, p.v));
+                break;
+            case "double":
+                execution = execution(new DoubleStatement(), new @SQL(SQL) NormStatement<DoubleParams, NoR>() {
+                }, new DoubleParams(), (pstmt, p) -> pstmt.setDouble(1, p.v));
+                break;
+            case "Integer":
+                execution = execution(new IntegerStatement(), new @SQL(SQL) NormStatement<IntegerParams, NoR>() {
+                }, new IntegerParams(), (pstmt, p) -> {
+                    if (p.v == null) {
+                        pstmt.setNull(1, Types.INTEGER);
+                    } else {
+                        pstmt.setInt(1, p.v);
+                    }
+                });
+                break;
+            case "String":
+                execution = execution(new StringStatement(), new @SQL(SQL) NormStatement<StringParams, NoR>() {
+                }, new StringParams(), (pstmt, p) -> pstmt.setString(1, p.v));
+                break;
+            case "BigDecimal":
+                execution = execution(new BigDecimalStatement(), new @SQL(SQL) NormStatement<BigDecimalParams, NoR>() {
+                }, new BigDecimalParams(), (pstmt, p) -> pstmt.setBigDecimal(1, p.v));
+                break;
+            case "Timestamp":
+                execution = execution(new TimestampStatement(), new @SQL(SQL) NormStatement<TimestampParams, NoR>() {
+                }, new TimestampParams(), (pstmt, p) -> pstmt.setTimestamp(1, p.v));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown type " + type);
+        }
+    }
+
+    interface Binder<P> {
+
+        void bind(PreparedStatement pstmt, P p) throws Exception;
+    }
+
+    private <P extends NoP> Execution execution(NormStatement<P, NoR> generated, NormStatement<P, NoR> reflective, P p, Binder<P> binder) {
+        switch (mode) {
+            case Execution.GENERATED:
+                return () -> generated.executeUpdate(c, p);
+            case Execution.REFLECTIVE:
+                return () -> reflective.executeUpdate(c, p);
+            case Execution.JDBC:
+                return () -> {
+                    try (PreparedStatement pstmt = c.prepareStatement(JDBC_SQL)) {
+                        binder.bind(pstmt, p);
+                        return pstmt.executeUpdate();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    @Benchmark
+    public Object bind() throws Exception {
+        return execution.execute();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks;
+
+import com.github.cmcgeemac.norm.NoP;
+import com.github.cmcgeemac.norm.NoR;
+import com.github.cmcgeemac.norm.NormStatement;
+import com.github.cmcgeemac.norm.SQL;
+import com.github.cmcgeemac.norm.benchmarks.jdbc.FakeConnection;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of constructing a statement object. The steady state numbers are
+ * what inline statements pay on every call, while the cold numbers include
+ * the one time work for the statement class, such as loading the generated
+ * handler or parsing the SQL and building a handler at runtime.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+
+    static final String SQL = "SELECT id, name FROM foo WHERE id = :id";
+
+    public static class Params implements NoP {
+
+        int id = 1;
+    }
+
+    public static class Result implements NoR {
+
+        long id;
+        String name;
+    }
+
+    @SQL(SQL)
+    public static class Generated extends NormStatement<Params, Result> {
+    }
+
+    private final Connection c = new FakeConnection();
+
+    @Benchmark
+    public Object generated() {
+        return new Generated();
+    }
+
+    @Benchmark
+    public Object reflective() {
+        return new @SQL(SQL) NormStatement<Params, Result>() {
+        };
+    }
+
+    @Benchmark
+    public Object jdbc() throws Exception {
+        try (PreparedStatement pstmt = c.prepareStatement("SELECT id, name FROM foo WHERE id = ?")) {
+            return pstmt;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public Object generatedCold() {
+        return new Generated();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public Object reflectiveCold() {
+        return new @SQL(SQL) NormStatement<Params, Result>() {
+        };
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks;
+
+/**
+ * One way of running a statement that a benchmark compares with the others.
+ * Each JMH fork only ever sees one implementation, so the call is as cheap
+ * as calling the code directly once it has been compiled.
+ */
+interface Execution {
+
+    /**
+     * The mode that uses the handler generated by the annotation processor.
+     */
+    String GENERATED = "generated";
+
+    /**
+     * The mode that uses a statement declared in a method, where there's no
+     * generated handler and NORM builds one at runtime.
+     */
+    String REFLECTIVE = "reflective";
+
+    /**
+     * Plain JDBC written by hand, as the baseline.
+     */
+    String JDBC = "jdbc";
+
+    Object execute() throws Exception;
+}
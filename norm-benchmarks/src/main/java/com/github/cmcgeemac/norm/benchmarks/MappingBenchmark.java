@@ -0,0 +1,249 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks;
+
+import com.github.cmcgeemac.norm.NoP;
+import com.github.cmcgeemac.norm.NoR;
+import com.github.cmcgeemac.norm.NormStatement;
+import com.github.cmcgeemac.norm.SQL;
+import com.github.cmcgeemac.norm.benchmarks.jdbc.FakeConnection;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping 100 rows of different widths into result objects. There
+ * are no parameters to bind, so the difference between the modes is the
+ * mapping of the rows. The mapEach benchmark hands the rows to a callback
+ * instead of collecting a list, which for the NORM modes refills a single
+ * result object, so run it with the gc profiler to see the bytes per row.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    static final int ROWS = 100;
+
+    static final String SQL_1 = "SELECT id FROM foo";
+    static final String SQL_4 = "SELECT id, name, amount, count FROM foo";
+    static final String SQL_16 = "SELECT id1, name1, amount1, count1, id2, name2, amount2, count2, id3, name3, amount3, count3, id4, name4, amount4, count4 FROM foo";
+
+    @Param({"1", "4", "16"})
+    public int width;
+
+    @Param({Execution.GENERATED, Execution.REFLECTIVE, Execution.JDBC})
+    public String mode;
+
+    private Execution execution;
+    private Execution each;
+
+    // The last row handed to the callback, so that the mapping isn't eliminated
+    private Object last;
+
+    public static class Row1 implements NoR {
+
+        long id;
+    }
+
+    public static class Row4 implements NoR {
+
+        long id;
+        String name;
+        BigDecimal amount;
+        Integer count;
+    }
+
+    public static class Row16 implements NoR {
+
+        long id1;
+        String name1;
+        BigDecimal amount1;
+        Integer count1;
+        long id2;
+        String name2;
+        BigDecimal amount2;
+        Integer count2;
+        long id3;
+        String name3;
+        BigDecimal amount3;
+        Integer count3;
+        long id4;
+        String name4;
+        BigDecimal amount4;
+        Integer count4;
+    }
+
+    @SQL(SQL_1)
+    public static class Query1 extends NormStatement<NoP, Row1> {
+    }
+
+    @SQL(SQL_4)
+    public static class Query4 extends NormStatement<NoP, Row4> {
+    }
+
+    @SQL(SQL_16)
+    public static class Query16 extends NormStatement<NoP, Row16> {
+    }
+
+    private static Object[] values(int width) {
+        Object[] row = new Object[width];
+        for (int i = 0; i < width; i++) {
+            switch (i % 4) {
+                case 0:
+                    row[i] = 42L;
+                    break;
+                case 1:
+                    row[i] = "forty-two";
+                    break;
+                case 2:
+                    row[i] = new BigDecimal("42.00");
+                    break;
+                default:
+                    row[i] = 42;
+                    break;
+            }
+        }
+        return row;
+    }
+
+    @Setup
+    public void setup() {
+        switch (width) {
+            case 1:
+                setup(new String[]{"id"}, SQL_1, new Query1(), new @SQL(SQL_1) NormStatement<NoP, Row1>() {
+                }, rs -> {
+                    Row1 r = new Row1();
+                    r.id = rs.getLong(1);
+                    return r;
+                });
+                break;
+            case 4:
+                setup(new String[]{"id", "name", "amount", "count"}, SQL_4, new Query4(), new @SQL(SQL_4) NormStatement<NoP, Row4>() {
+                }, rs -> {
+                    Row4 r = new Row4();
+                    r.id = rs.getLong(1);
+                    r.name = rs.getString(2);
+                    r.amount = rs.getBigDecimal(3);
+                    r.count = rs.getInt(4);
+                    if (rs.wasNull()) {
+                        r.count = null;
+                    }
+                    return r;
+                });
+                break;
+            case 16:
+                setup(new String[]{"id1", "name1", "amount1", "count1", "id2", "name2", "amount2", "count2", "id3", "name3", "amount3", "count3", "id4", "name4", "amount4", "count4"}, SQL_16, new Query16(), new @SQL(SQL_16) NormStatement<NoP, Row16>() {
+                }, rs -> {
+                    Row16 r = new Row16();
+                    r.id1 = rs.getLong(1);
+                    r.name1 = rs.getString(2);
+                    r.amount1 = rs.getBigDecimal(3);
+                    r.count1 = rs.getInt(4);
+                    if (rs.wasNull()) {
+                        r.count1 = null;
+                    }
+                    r.id2 = rs.getLong(5);
+                    r.name2 = rs.getString(6);
+                    r.amount2 = rs.getBigDecimal(7);
+                    r.count2 = rs.getInt(8);
+                    if (rs.wasNull()) {
+                        r.count2 = null;
+                    }
+                    r.id3 = rs.getLong(9);
+                    r.name3 = rs.getString(10);
+                    r.amount3 = rs.getBigDecimal(11);
+                    r.count3 = rs.getInt(12);
+                    if (rs.wasNull()) {
+                        r.count3 = null;
+                    }
+                    r.id4 = rs.getLong(13);
+                    r.name4 = rs.getString(14);
+                    r.amount4 = rs.getBigDecimal(15);
+                    r.count4 = rs.getInt(16);
+                    if (rs.wasNull()) {
+                        r.count4 = null;
+                    }
+                    return r;
+                });
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported width " + width);
+        }
+    }
+
+    interface RowMapper<R> {
+
+        R map(ResultSet rs) throws Exception;
+    }
+
+    private <R extends NoR> void setup(String[] labels, String sql, NormStatement<NoP, R> generated, NormStatement<NoP, R> reflective, RowMapper<R> mapper) {
+        Connection c = new FakeConnection(labels, values(labels.length), ROWS);
+
+        switch (mode) {
+            case Execution.GENERATED:
+                execution = () -> generated.executeQuery(c);
+                each = () -> generated.executeQuery(c, null, r -> last = r);
+                break;
+            case Execution.REFLECTIVE:
+                execution = () -> reflective.executeQuery(c);
+                each = () -> reflective.executeQuery(c, null, r -> last = r);
+                break;
+            case Execution.JDBC:
+                execution = () -> {
+                    try (PreparedStatement pstmt = c.prepareStatement(sql); ResultSet rs = pstmt.executeQuery()) {
+                        List<R> results = new ArrayList<>();
+                        while (rs.next()) {
+                            results.add(mapper.map(rs));
+                        }
+                        return results;
+                    }
+                };
+                each = () -> {
+                    try (PreparedStatement pstmt = c.prepareStatement(sql); ResultSet rs = pstmt.executeQuery()) {
+                        int rows = 0;
+                        while (rs.next()) {
+                            last = mapper.map(rs);
+                            rows++;
+                        }
+                        return rows;
+                    }
+                };
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    @Benchmark
+    public Object map() throws Exception {
+        return execution.execute();
+    }
+
+    @Benchmark
+    public Object mapEach() throws Exception {
+        each.execute();
+        return last;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks;
+
+import com.github.cmcgeemac.norm.NoP;
+import com.github.cmcgeemac.norm.NoR;
+import com.github.cmcgeemac.norm.NormStatement;
+import com.github.cmcgeemac.norm.SQL;
+import com.github.cmcgeemac.norm.benchmarks.jdbc.FakeConnection;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A complete executeQuery() with parameters to bind and rows to map, as an
+ * application would run it, for different numbers of rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    static final String SQL = "SELECT id, name, amount, created FROM orders "
+            + "WHERE customer = :customer AND status = :status AND created > :since";
+    static final String JDBC_SQL = "SELECT id, name, amount, created FROM orders "
+            + "WHERE customer = ? AND status = ? AND created > ?";
+
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    @Param({Execution.GENERATED, Execution.REFLECTIVE, Execution.JDBC})
+    public String mode;
+
+    private Execution execution;
+
+    public static class Params implements NoP {
+
+        long customer = 42L;
+        String status = "SHIPPED";
+        Timestamp since = new Timestamp(0L);
+    }
+
+    public static class Order implements NoR {
+
+        long id;
+        String name;
+        BigDecimal amount;
+        Timestamp created;
+    }
+
+    @SQL(SQL)
+    public static class Query extends NormStatement<Params, Order> {
+    }
+
+    @Setup
+    public void setup() {
+        Connection c = new FakeConnection(new String[]{"id", "name", "amount", "created"},
+                new Object[]{42L, "forty-two", new BigDecimal("42.00"), new Timestamp(42L)}, rows);
+        Params p = new Params();
+
+        switch (mode) {
+            case Execution.GENERATED:
+                Query generated = new Query();
+                execution = () -> generated.executeQuery(c, p);
+                break;
+            case Execution.REFLECTIVE:
+                NormStatement<Params, Order> reflective = new @SQL(SQL) NormStatement<Params, Order>() {
+                };
+                execution = () -> reflective.executeQuery(c, p);
+                break;
+            case Execution.JDBC:
+                execution = () -> {
+                    try (PreparedStatement pstmt = c.prepareStatement(JDBC_SQL)) {
+                        pstmt.setLong(1, p.customer);
+                        pstmt.setString(2, p.status);
+                        pstmt.setTimestamp(3, p.since);
+
+                        try (ResultSet rs = pstmt.executeQuery()) {
+                            List<Order> results = new ArrayList<>();
+                            while (rs.next()) {
+                                Order r = new Order();
+                                r.id = rs.getLong(1);
+                                r.name = rs.getString(2);
+                                r.amount = rs.getBigDecimal(3);
+                                r.created = rs.getTimestamp(4);
+                                results.add(r);
+                            }
+                            return results;
+                        }
+                    }
+                };
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown mode " + mode);
+        }
+    }
+
+    @Benchmark
+    public Object executeQuery() throws Exception {
+        return execution.execute();
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A Connection where everything fails as unsupported, so that the fakes only need
+ * to override what NORM and the benchmarks actually use.
+ */
+abstract class AbstractConnection implements java.sql.Connection {
+
+    static SQLException unsupported() {
+        return new SQLFeatureNotSupportedException("Not supported by the benchmark driver");
+    }
+
+    @Override
+    public void abort(java.util.concurrent.Executor arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void commit() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Array createArrayOf(String arg0, Object[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Blob createBlob() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Clob createClob() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.NClob createNClob() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.SQLXML createSQLXML() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Statement createStatement() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Statement createStatement(int arg0, int arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Statement createStatement(int arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Struct createStruct(String arg0, Object[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getCatalog() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.util.Properties getClientInfo() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getClientInfo(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.DatabaseMetaData getMetaData() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getNetworkTimeout() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getSchema() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.util.Map<String, Class<?>> getTypeMap() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.SQLWarning getWarnings() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isValid(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String nativeSQL(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.CallableStatement prepareCall(String arg0, int arg1, int arg2, int arg3) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.CallableStatement prepareCall(String arg0, int arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.CallableStatement prepareCall(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.PreparedStatement prepareStatement(String arg0, int[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.PreparedStatement prepareStatement(String arg0, String[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.PreparedStatement prepareStatement(String arg0, int arg1, int arg2, int arg3) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.PreparedStatement prepareStatement(String arg0, int arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.PreparedStatement prepareStatement(String arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.PreparedStatement prepareStatement(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void releaseSavepoint(java.sql.Savepoint arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void rollback(java.sql.Savepoint arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setAutoCommit(boolean arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setCatalog(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setClientInfo(String arg0, String arg1) throws SQLClientInfoException {
+        throw new SQLClientInfoException();
+    }
+
+    @Override
+    public void setClientInfo(java.util.Properties arg0) throws SQLClientInfoException {
+        throw new SQLClientInfoException();
+    }
+
+    @Override
+    public void setHoldability(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNetworkTimeout(java.util.concurrent.Executor arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setReadOnly(boolean arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Savepoint setSavepoint() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Savepoint setSavepoint(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setSchema(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setTransactionIsolation(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setTypeMap(java.util.Map<String, Class<?>> arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> arg0) throws SQLException {
+        throw unsupported();
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A PreparedStatement where everything fails as unsupported, so that the fakes only need
+ * to override what NORM and the benchmarks actually use.
+ */
+@SuppressWarnings("deprecation")
+abstract class AbstractPreparedStatement implements java.sql.PreparedStatement {
+
+    static SQLException unsupported() {
+        return new SQLFeatureNotSupportedException("Not supported by the benchmark driver");
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void addBatch(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean execute(String arg0, int[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean execute(String arg0, String[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean execute(String arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean execute(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ResultSet executeQuery() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ResultSet executeQuery(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int executeUpdate(String arg0, int[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int executeUpdate(String arg0, String[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int executeUpdate(String arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int executeUpdate(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Connection getConnection() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ResultSet getGeneratedKeys() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ResultSetMetaData getMetaData() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean getMoreResults(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ParameterMetaData getParameterMetaData() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ResultSet getResultSet() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.SQLWarning getWarnings() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setArray(int arg0, java.sql.Array arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setAsciiStream(int arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setAsciiStream(int arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setAsciiStream(int arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBigDecimal(int arg0, java.math.BigDecimal arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBinaryStream(int arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBinaryStream(int arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBinaryStream(int arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBlob(int arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBlob(int arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBlob(int arg0, java.sql.Blob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBoolean(int arg0, boolean arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setByte(int arg0, byte arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setBytes(int arg0, byte[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setCharacterStream(int arg0, java.io.Reader arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setCharacterStream(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setCharacterStream(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setClob(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setClob(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setClob(int arg0, java.sql.Clob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setCursorName(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setDate(int arg0, java.sql.Date arg1, java.util.Calendar arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setDate(int arg0, java.sql.Date arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setDouble(int arg0, double arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setFetchDirection(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setFetchSize(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setFloat(int arg0, float arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setInt(int arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setLong(int arg0, long arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setMaxFieldSize(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setMaxRows(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNCharacterStream(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNCharacterStream(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNClob(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNClob(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNClob(int arg0, java.sql.NClob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNString(int arg0, String arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNull(int arg0, int arg1, String arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setNull(int arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setObject(int arg0, Object arg1, int arg2, int arg3) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setObject(int arg0, Object arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setObject(int arg0, Object arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setPoolable(boolean arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setQueryTimeout(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setRef(int arg0, java.sql.Ref arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setRowId(int arg0, java.sql.RowId arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setSQLXML(int arg0, java.sql.SQLXML arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setShort(int arg0, short arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setString(int arg0, String arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setTime(int arg0, java.sql.Time arg1, java.util.Calendar arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setTime(int arg0, java.sql.Time arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setTimestamp(int arg0, java.sql.Timestamp arg1, java.util.Calendar arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setTimestamp(int arg0, java.sql.Timestamp arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setURL(int arg0, java.net.URL arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setUnicodeStream(int arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> arg0) throws SQLException {
+        throw unsupported();
+    }
+}
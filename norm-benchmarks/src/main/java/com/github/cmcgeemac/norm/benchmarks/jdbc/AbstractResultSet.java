@@ -0,0 +1,976 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A ResultSet where everything fails as unsupported, so that the fakes only need
+ * to override what NORM and the benchmarks actually use.
+ */
+@SuppressWarnings("deprecation")
+abstract class AbstractResultSet implements java.sql.ResultSet {
+
+    static SQLException unsupported() {
+        return new SQLFeatureNotSupportedException("Not supported by the benchmark driver");
+    }
+
+    @Override
+    public boolean absolute(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void afterLast() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void cancelRowUpdates() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void deleteRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int findColumn(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Array getArray(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Array getArray(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.InputStream getAsciiStream(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.InputStream getAsciiStream(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.math.BigDecimal getBigDecimal(String arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.math.BigDecimal getBigDecimal(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.math.BigDecimal getBigDecimal(int arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.math.BigDecimal getBigDecimal(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.InputStream getBinaryStream(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.InputStream getBinaryStream(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Blob getBlob(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Blob getBlob(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean getBoolean(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean getBoolean(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public byte getByte(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public byte getByte(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public byte[] getBytes(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public byte[] getBytes(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.Reader getCharacterStream(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.Reader getCharacterStream(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Clob getClob(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Clob getClob(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getConcurrency() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getCursorName() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Date getDate(String arg0, java.util.Calendar arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Date getDate(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Date getDate(int arg0, java.util.Calendar arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Date getDate(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public double getDouble(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public double getDouble(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public float getFloat(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public float getFloat(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getHoldability() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getInt(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getInt(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public long getLong(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public long getLong(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.ResultSetMetaData getMetaData() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.Reader getNCharacterStream(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.Reader getNCharacterStream(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.NClob getNClob(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.NClob getNClob(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getNString(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getNString(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T getObject(String arg0, Class<T> arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public Object getObject(String arg0, java.util.Map<String, Class<?>> arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public Object getObject(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T getObject(int arg0, Class<T> arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public Object getObject(int arg0, java.util.Map<String, Class<?>> arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public Object getObject(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Ref getRef(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Ref getRef(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.RowId getRowId(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.RowId getRowId(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.SQLXML getSQLXML(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.SQLXML getSQLXML(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public short getShort(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public short getShort(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Statement getStatement() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getString(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getString(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Time getTime(String arg0, java.util.Calendar arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Time getTime(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Time getTime(int arg0, java.util.Calendar arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Time getTime(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Timestamp getTimestamp(String arg0, java.util.Calendar arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Timestamp getTimestamp(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Timestamp getTimestamp(int arg0, java.util.Calendar arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.Timestamp getTimestamp(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getType() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.net.URL getURL(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.net.URL getURL(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.InputStream getUnicodeStream(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.io.InputStream getUnicodeStream(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public java.sql.SQLWarning getWarnings() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void insertRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isAfterLast() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isLast() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void moveToCurrentRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void moveToInsertRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void refreshRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean relative(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean rowDeleted() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean rowInserted() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean rowUpdated() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setFetchDirection(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void setFetchSize(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateArray(String arg0, java.sql.Array arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateArray(int arg0, java.sql.Array arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(String arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(String arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(String arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(int arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(int arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateAsciiStream(int arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBigDecimal(String arg0, java.math.BigDecimal arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBigDecimal(int arg0, java.math.BigDecimal arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(String arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(String arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(String arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(int arg0, java.io.InputStream arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(int arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBinaryStream(int arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBlob(String arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBlob(String arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBlob(String arg0, java.sql.Blob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBlob(int arg0, java.io.InputStream arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBlob(int arg0, java.io.InputStream arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBlob(int arg0, java.sql.Blob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBoolean(String arg0, boolean arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBoolean(int arg0, boolean arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateByte(String arg0, byte arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateByte(int arg0, byte arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBytes(String arg0, byte[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateBytes(int arg0, byte[] arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(String arg0, java.io.Reader arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(String arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(String arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(int arg0, java.io.Reader arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateCharacterStream(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateClob(String arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateClob(String arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateClob(String arg0, java.sql.Clob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateClob(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateClob(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateClob(int arg0, java.sql.Clob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateDate(String arg0, java.sql.Date arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateDate(int arg0, java.sql.Date arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateDouble(String arg0, double arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateDouble(int arg0, double arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateFloat(String arg0, float arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateFloat(int arg0, float arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateInt(String arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateInt(int arg0, int arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateLong(String arg0, long arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateLong(int arg0, long arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(String arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(String arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNCharacterStream(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNClob(String arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNClob(String arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNClob(String arg0, java.sql.NClob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNClob(int arg0, java.io.Reader arg1, long arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNClob(int arg0, java.io.Reader arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNClob(int arg0, java.sql.NClob arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNString(String arg0, String arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNString(int arg0, String arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNull(String arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateNull(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateObject(String arg0, Object arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateObject(String arg0, Object arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateObject(int arg0, Object arg1, int arg2) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateObject(int arg0, Object arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateRef(String arg0, java.sql.Ref arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateRef(int arg0, java.sql.Ref arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateRow() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateRowId(String arg0, java.sql.RowId arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateRowId(int arg0, java.sql.RowId arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateSQLXML(String arg0, java.sql.SQLXML arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateSQLXML(int arg0, java.sql.SQLXML arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateShort(String arg0, short arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateShort(int arg0, short arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateString(String arg0, String arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateString(int arg0, String arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateTime(String arg0, java.sql.Time arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateTime(int arg0, java.sql.Time arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateTimestamp(String arg0, java.sql.Timestamp arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public void updateTimestamp(int arg0, java.sql.Timestamp arg1) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        throw unsupported();
+    }
+}
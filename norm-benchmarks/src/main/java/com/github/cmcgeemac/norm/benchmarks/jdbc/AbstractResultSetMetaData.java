@@ -0,0 +1,135 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A ResultSetMetaData where everything fails as unsupported, so that the fakes only need
+ * to override what NORM and the benchmarks actually use.
+ */
+abstract class AbstractResultSetMetaData implements java.sql.ResultSetMetaData {
+
+    static SQLException unsupported() {
+        return new SQLFeatureNotSupportedException("Not supported by the benchmark driver");
+    }
+
+    @Override
+    public String getCatalogName(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getColumnClassName(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getColumnDisplaySize(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getColumnLabel(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getColumnName(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getColumnType(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getColumnTypeName(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getPrecision(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int getScale(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getSchemaName(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public String getTableName(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isAutoIncrement(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isCaseSensitive(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isCurrency(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public int isNullable(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isReadOnly(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isSearchable(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isSigned(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public boolean isWritable(int arg0) throws SQLException {
+        throw unsupported();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> arg0) throws SQLException {
+        throw unsupported();
+    }
+}
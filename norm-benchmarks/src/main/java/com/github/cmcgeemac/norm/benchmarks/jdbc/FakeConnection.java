@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * An in-process connection that answers every query with the same canned
+ * rows, so that the benchmarks measure NORM and not a database or the
+ * network. Statements don't parse their SQL, they only hold on to the
+ * parameters that are bound and produce a fresh result set for each query.
+ */
+public class FakeConnection extends AbstractConnection {
+
+    private final String[] labels;
+    private final Object[] row;
+    private final int rows;
+
+    private boolean closed;
+    private boolean autoCommit = true;
+
+    /**
+     * @param labels the column labels of the results
+     * @param row the values of each column, repeated for every row
+     * @param rows the number of rows in the results of each query
+     */
+    public FakeConnection(String[] labels, Object[] row, int rows) {
+        this.labels = labels.clone();
+        this.row = row.clone();
+        this.rows = rows;
+    }
+
+    /**
+     * A connection for statements that don't produce any results.
+     */
+    public FakeConnection() {
+        this(new String[0], new Object[0], 0);
+    }
+
+    FakeResultSet results() {
+        return new FakeResultSet(labels, row, rows);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection is closed");
+        }
+
+        return new FakePreparedStatement(this, sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return prepareStatement(sql);
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return autoCommit;
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        this.autoCommit = autoCommit;
+    }
+
+    @Override
+    public void commit() throws SQLException {
+    }
+
+    @Override
+    public void rollback() throws SQLException {
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+    }
+}
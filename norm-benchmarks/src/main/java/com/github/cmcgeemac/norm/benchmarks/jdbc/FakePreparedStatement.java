@@ -0,0 +1,207 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * Keeps the bound parameters like a driver would before sending them, with
+ * the primitives kept apart from the objects so that binding them doesn't
+ * allocate anything that NORM itself didn't.
+ */
+class FakePreparedStatement extends AbstractPreparedStatement {
+
+    private static final int MAX_PARAMETERS = 64;
+
+    private final FakeConnection connection;
+    private final String sql;
+
+    private final long[] primitives = new long[MAX_PARAMETERS];
+    private final Object[] objects = new Object[MAX_PARAMETERS];
+
+    private int batched;
+    private int fetchSize;
+    private boolean closed;
+
+    FakePreparedStatement(FakeConnection connection, String sql) {
+        this.connection = connection;
+        this.sql = sql;
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Statement is closed: " + sql);
+        }
+    }
+
+    private void check(int idx) throws SQLException {
+        checkOpen();
+
+        if (idx < 1 || idx > MAX_PARAMETERS) {
+            throw new SQLException("Parameter index out of range: " + idx);
+        }
+    }
+
+    private void setPrimitive(int idx, long v) throws SQLException {
+        check(idx);
+        primitives[idx - 1] = v;
+        objects[idx - 1] = null;
+    }
+
+    private void setReference(int idx, Object v) throws SQLException {
+        check(idx);
+        objects[idx - 1] = v;
+    }
+
+    @Override
+    public void setNull(int idx, int sqlType) throws SQLException {
+        setReference(idx, null);
+    }
+
+    @Override
+    public void setBoolean(int idx, boolean x) throws SQLException {
+        setPrimitive(idx, x ? 1 : 0);
+    }
+
+    @Override
+    public void setShort(int idx, short x) throws SQLException {
+        setPrimitive(idx, x);
+    }
+
+    @Override
+    public void setInt(int idx, int x) throws SQLException {
+        setPrimitive(idx, x);
+    }
+
+    @Override
+    public void setLong(int idx, long x) throws SQLException {
+        setPrimitive(idx, x);
+    }
+
+    @Override
+    public void setFloat(int idx, float x) throws SQLException {
+        setPrimitive(idx, Float.floatToRawIntBits(x));
+    }
+
+    @Override
+    public void setDouble(int idx, double x) throws SQLException {
+        setPrimitive(idx, Double.doubleToRawLongBits(x));
+    }
+
+    @Override
+    public void setBigDecimal(int idx, BigDecimal x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void setString(int idx, String x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void setDate(int idx, Date x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void setTime(int idx, Time x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void setTimestamp(int idx, Timestamp x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void setObject(int idx, Object x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void setArray(int idx, java.sql.Array x) throws SQLException {
+        setReference(idx, x);
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        Arrays.fill(objects, null);
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        checkOpen();
+        return connection.results();
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        checkOpen();
+        return 1;
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        checkOpen();
+        return false;
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        checkOpen();
+        batched++;
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkOpen();
+        int[] counts = new int[batched];
+        Arrays.fill(counts, 1);
+        batched = 0;
+        return counts;
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        batched = 0;
+    }
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        fetchSize = rows;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection;
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * Returns the same row over and over. Columns are looked up by label with a
+ * case insensitive scan, which is roughly what the real drivers do for
+ * getters that take a column name.
+ */
+class FakeResultSet extends AbstractResultSet {
+
+    private final String[] labels;
+    private final Object[] row;
+    private final int rows;
+
+    private int position;
+    private boolean wasNull;
+    private boolean closed;
+
+    FakeResultSet(String[] labels, Object[] row, int rows) {
+        this.labels = labels;
+        this.row = row;
+        this.rows = rows;
+    }
+
+    private Object value(int column) throws SQLException {
+        if (closed || position < 1 || position > rows) {
+            throw new SQLException("The result set is not positioned on a row");
+        }
+
+        if (column < 1 || column > row.length) {
+            throw new SQLException("Column index out of range: " + column);
+        }
+
+        Object v = row[column - 1];
+        wasNull = v == null;
+        return v;
+    }
+
+    private Number number(int column) throws SQLException {
+        Object v = value(column);
+        return v != null ? (Number) v : 0;
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        if (closed) {
+            throw new SQLException("The result set is closed");
+        }
+
+        if (position <= rows) {
+            position++;
+        }
+
+        return position <= rows;
+    }
+
+    @Override
+    public int findColumn(String label) throws SQLException {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+
+        throw new SQLException("No such column: " + label);
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return new FakeResultSetMetaData(labels);
+    }
+
+    @Override
+    public boolean wasNull() throws SQLException {
+        return wasNull;
+    }
+
+    @Override
+    public boolean getBoolean(int column) throws SQLException {
+        Object v = value(column);
+        return v != null && (Boolean) v;
+    }
+
+    @Override
+    public short getShort(int column) throws SQLException {
+        return number(column).shortValue();
+    }
+
+    @Override
+    public int getInt(int column) throws SQLException {
+        return number(column).intValue();
+    }
+
+    @Override
+    public long getLong(int column) throws SQLException {
+        return number(column).longValue();
+    }
+
+    @Override
+    public float getFloat(int column) throws SQLException {
+        return number(column).floatValue();
+    }
+
+    @Override
+    public double getDouble(int column) throws SQLException {
+        return number(column).doubleValue();
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int column) throws SQLException {
+        return (BigDecimal) value(column);
+    }
+
+    @Override
+    public String getString(int column) throws SQLException {
+        Object v = value(column);
+        return v != null ? v.toString() : null;
+    }
+
+    @Override
+    public Date getDate(int column) throws SQLException {
+        return (Date) value(column);
+    }
+
+    @Override
+    public Time getTime(int column) throws SQLException {
+        return (Time) value(column);
+    }
+
+    @Override
+    public Timestamp getTimestamp(int column) throws SQLException {
+        return (Timestamp) value(column);
+    }
+
+    @Override
+    public Object getObject(int column) throws SQLException {
+        return value(column);
+    }
+
+    @Override
+    public boolean getBoolean(String label) throws SQLException {
+        return getBoolean(findColumn(label));
+    }
+
+    @Override
+    public short getShort(String label) throws SQLException {
+        return getShort(findColumn(label));
+    }
+
+    @Override
+    public int getInt(String label) throws SQLException {
+        return getInt(findColumn(label));
+    }
+
+    @Override
+    public long getLong(String label) throws SQLException {
+        return getLong(findColumn(label));
+    }
+
+    @Override
+    public float getFloat(String label) throws SQLException {
+        return getFloat(findColumn(label));
+    }
+
+    @Override
+    public double getDouble(String label) throws SQLException {
+        return getDouble(findColumn(label));
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String label) throws SQLException {
+        return getBigDecimal(findColumn(label));
+    }
+
+    @Override
+    public String getString(String label) throws SQLException {
+        return getString(findColumn(label));
+    }
+
+    @Override
+    public Date getDate(String label) throws SQLException {
+        return getDate(findColumn(label));
+    }
+
+    @Override
+    public Time getTime(String label) throws SQLException {
+        return getTime(findColumn(label));
+    }
+
+    @Override
+    public Timestamp getTimestamp(String label) throws SQLException {
+        return getTimestamp(findColumn(label));
+    }
+
+    @Override
+    public Object getObject(String label) throws SQLException {
+        return getObject(findColumn(label));
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm.benchmarks.jdbc;
+
+import java.sql.SQLException;
+
+class FakeResultSetMetaData extends AbstractResultSetMetaData {
+
+    private final String[] labels;
+
+    FakeResultSetMetaData(String[] labels) {
+        this.labels = labels;
+    }
+
+    @Override
+    public int getColumnCount() throws SQLException {
+        return labels.length;
+    }
+
+    @Override
+    public String getColumnLabel(int column) throws SQLException {
+        return labels[column - 1];
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        return labels[column - 1];
+    }
+}
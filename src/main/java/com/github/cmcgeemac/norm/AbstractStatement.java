@@ -5,33 +5,14 @@
  */
 package com.github.cmcgeemac.norm;
 
-import java.lang.reflect.AnnotatedType;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.ParameterizedType;
-import java.math.BigDecimal;
-import java.net.URL;
-import java.sql.Array;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
-import java.sql.Types;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.expression.JdbcNamedParameter;
-import net.sf.jsqlparser.parser.CCJSqlParserUtil;
-import net.sf.jsqlparser.statement.Statement;
 
 class AbstractStatement<P> {
 
@@ -43,196 +24,184 @@ class AbstractStatement<P> {
     protected Class<?> paramsClass;
     protected Constructor<?> paramsCtor;
 
-    private List<Field> slots;
-
     protected StatementHandler handler;
 
-    public AbstractStatement() {
-        super();
-
-        Class<?> c = getClass();
-
-        java.lang.reflect.Type[] types = ((ParameterizedType) c.getGenericSuperclass()).getActualTypeArguments();
-        if (types == null || types.length > 2) {
-            throw new IllegalArgumentException("NormStatements must extend and provide actual types for the generic variables of the superclass.");
-        }
-
-        // TODO this is a hack that may not work with all compilers
-        try {
-            Field outerThis = getClass().getDeclaredField("this$0");
-            outerThis.setAccessible(true);
-            statementOuter = outerThis.get(this);
-        } catch (IllegalAccessException | IllegalArgumentException | NoSuchFieldException | SecurityException ex) {
-            // Best effort
-            statementOuter = null;
-        }
-
-        paramsClass = (Class<?>) types[0];
+    final StatementMetadata metadata;
 
-        paramsCtor = Arrays.asList(paramsClass.getDeclaredConstructors()).stream()
-                .filter(ctor -> ctor.getParameterCount() == 0 || ctor.getParameterCount() == 1 && ctor.getParameterTypes()[0].isInstance(statementOuter))
-                .findFirst()
-                .orElse(null);
+    StatementHints hints;
 
-        if (paramsCtor != null) {
-            paramsCtor.setAccessible(true);
-        }
+    public AbstractStatement() {
+        super();
 
-        // Check for a handler class to bypass the initialization
-        Class<?> ec = c.getEnclosingClass();
-        String handlerClassName = c.getPackage().getName() + "." + (ec != null ? ec.getSimpleName() : "") + c.getSimpleName() + "NormHandler";
+        // The expensive parts are only worked out for the first instance of each statement class
+        metadata = StatementMetadata.of(getClass());
 
-        try {
-            Class<?> h = Class.forName(handlerClassName);
-            handler = (StatementHandler) h.newInstance();
-            safeSQL = handler.getSafeSQL();
-        } catch (ClassNotFoundException | IllegalAccessException | InstantiationException ex) {
-            Logger.getLogger(AbstractStatement.class.getName()).log(Level.INFO,
-                    "No handler found " + handlerClassName + " proceeding with reflection", ex);
-
-            AssertCodeGen[] cg = c.getAnnotationsByType(AssertCodeGen.class);
-            if (cg.length != 0) {
-                throw new IllegalStateException("Statement is declared as @CodeGenerate but not code generated handler is present. Check the compiler settings that permit annotation processor.");
-            }
+        statementOuter = metadata.outer(this);
+        paramsClass = metadata.paramsClass;
+        paramsCtor = metadata.paramsCtor;
+        handler = metadata.handler;
+        safeSQL = metadata.safeSQL;
+        hints = metadata.hints;
+    }
 
-            initWithReflection(c);
+    /**
+     * The hints of this statement object, which stop being shared with the
+     * rest of the statement class once they are changed.
+     */
+    StatementHints changeHints() {
+        if (hints == metadata.hints || hints == StatementHints.NONE) {
+            hints = hints.copy();
         }
+        return hints;
     }
 
-    @SuppressWarnings("unchecked")
     protected PreparedStatement createPreparedStatement(Connection c, P p) throws IllegalArgumentException, IllegalAccessException, SQLException {
-        PreparedStatement pstmt = c.prepareStatement(safeSQL);
+        return createPreparedStatement(c, p, null);
+    }
 
-        if (handler != null) {
-            handler.setParameters(p, pstmt, c);
-            return pstmt;
+    PreparedStatement createPreparedStatement(Connection c, P p, StatementExecution x) throws IllegalArgumentException, IllegalAccessException, SQLException {
+        String sql = sql(p);
+        PreparedStatement pstmt = prepare(c, sql);
+        if (x != null) {
+            x.mark(StatementExecution.Phase.PREPARE);
         }
 
-        // This is the placeholder
-        if (NoP.class.equals(paramsClass)) {
-            return pstmt;
+        try {
+            bindParameters(c, pstmt, p);
+        } catch (IllegalArgumentException | IllegalAccessException | SQLException ex) {
+            release(c, sql, pstmt, false);
+            throw ex;
         }
 
-        int idx = 1;
-        for (Field f : slots) {
-            // Ensure accessibility
-            f.setAccessible(true);
-
-            Object v = f.get(p);
-
-            // TODO blob, clob
-            if (v == null) {
-                pstmt.setNull(idx++, Types.NULL);
-            } else if (v instanceof Integer) {
-                pstmt.setInt(idx++, (Integer) v);
-            } else if (v instanceof Long) {
-                pstmt.setLong(idx++, (Long) v);
-            } else if (v instanceof Date) {
-                pstmt.setDate(idx++, (Date) v);
-            } else if (v instanceof BigDecimal) {
-                pstmt.setBigDecimal(idx++, (BigDecimal) v);
-            } else if (v instanceof Float) {
-                pstmt.setFloat(idx++, (Float) v);
-            } else if (v instanceof Double) {
-                pstmt.setDouble(idx++, (Double) v);
-            } else if (v instanceof Short) {
-                pstmt.setShort(idx++, (Short) v);
-            } else if (v instanceof String) {
-                pstmt.setString(idx++, (String) v);
-            } else if (v instanceof Time) {
-                pstmt.setTime(idx++, (Time) v);
-            } else if (v instanceof Timestamp) {
-                pstmt.setTimestamp(idx++, (Timestamp) v);
-            } else if (v instanceof URL) {
-                pstmt.setURL(idx++, (URL) v);
-            } else if (v instanceof Array) {
-                pstmt.setArray(idx++, (Array) v);
-            } else if (v instanceof Boolean) {
-                pstmt.setBoolean(idx++, (Boolean) v);
-            } else if (v.getClass().isArray()) {
-                Type[] t = f.getAnnotationsByType(Type.class);
-                pstmt.setArray(idx++, c.createArrayOf(t[0].value(), (Object[]) v));
-            } else {
-                pstmt.setObject(idx++, v);
-            }
+        if (x != null) {
+            x.mark(StatementExecution.Phase.BIND);
         }
 
         return pstmt;
     }
 
-    private void initWithReflection(Class<?> c) {
-        SQL[] sql = c.getAnnotationsByType(SQL.class);
+    /**
+     * Obtains a prepared statement for the safe SQL without binding any of the
+     * parameters so that it can be bound repeatedly, such as for batches.
+     */
+    protected PreparedStatement createPreparedStatement(Connection c) throws SQLException {
+        return prepare(c, safeSQL);
+    }
 
-        // The SQL annotation can either be on the subclass or the parent class
-        if (sql == null || sql.length == 0) {
-            AnnotatedType type = c.getAnnotatedSuperclass();
-            sql = type.getAnnotationsByType(SQL.class);
-        }
+    /**
+     * Obtains a prepared statement for some SQL with the hints applied.
+     */
+    PreparedStatement prepare(Connection c, String sql) throws SQLException {
+        return prepare(c, sql, null);
+    }
 
-        if (sql == null || sql.length != 1) {
-            throw new IllegalArgumentException("All NormStatements must have a single SQL annotation with the SQL statement on either the base class or its immediate superclass.");
+    /**
+     * Obtains a prepared statement that returns the generated keys, unless the
+     * keys are null.
+     */
+    PreparedStatement prepare(Connection c, String sql, String[] keys) throws SQLException {
+        PreparedStatement pstmt = StatementCache.prepare(c, sql, keys);
+        if (!hints.isDefault()) {
+            try {
+                hints.apply(pstmt);
+            } catch (SQLException ex) {
+                StatementCache.release(c, sql, keys, pstmt, false);
+                throw ex;
+            }
         }
+        return pstmt;
+    }
 
-        String sqlStr = sql[0].value();
+    /**
+     * The SQL for executing with the parameters, which is different from the
+     * safe SQL when there are collections to expand.
+     */
+    @SuppressWarnings("unchecked")
+    String sql(P p) {
+        return p == null ? safeSQL : handler.getSafeSQL(p);
+    }
 
-        Set<String> dereferencedParms = new HashSet<>();
-        Set<String> referencedParms = new HashSet<>();
+    /**
+     * Gives back a statement from {@link #createPreparedStatement(Connection, Object)}
+     * once the execution is finished. Statements that are still reusable go
+     * back into the connection's statement cache, otherwise they are closed.
+     */
+    protected void releasePreparedStatement(Connection c, PreparedStatement pstmt, boolean reusable) {
+        release(c, safeSQL, pstmt, reusable);
+    }
 
-        try {
-            Statement sqlParsed = CCJSqlParserUtil.parse(sqlStr);
-            Util.visitJdbcParameters(sqlParsed, (JdbcNamedParameter p) -> {
-                referencedParms.add(p.getName());
-
-                // Generate a very unique token for discovering slots later on
-                return "@@@" + p.getName() + "@@@";
-            });
-            sqlStr = Util.statementToString(sqlParsed);
-        } catch (JSQLParserException ex) {
-            throw new IllegalArgumentException(
-                    "@SQL annotation has a bad SQL statement: " + ex.getMessage(),
-                    ex);
-        }
+    /**
+     * Gives back a statement that was created for the parameters.
+     */
+    void releasePreparedStatement(Connection c, P p, PreparedStatement pstmt, boolean reusable) {
+        release(c, sql(p), pstmt, reusable);
+    }
 
-        for (Field f : paramsClass.getDeclaredFields()) {
-            if (f.isSynthetic()) {
-                continue;
-            }
+    /**
+     * Gives back a statement from {@link #prepare(java.sql.Connection, java.lang.String)}.
+     */
+    void release(Connection c, String sql, PreparedStatement pstmt, boolean reusable) {
+        release(c, sql, null, pstmt, reusable);
+    }
 
-            if (!referencedParms.contains(f.getName())) {
-                Logger.getLogger(AbstractStatement.class.getName()).warning(
-                        "The statement parameter type " + paramsClass.getTypeName() + " has a field with name "
-                        + f.getName() + " but the @SQL query doesn't have a matching variable in " + getClass().getTypeName());
-            } else {
-                dereferencedParms.add(f.getName());
+    void release(Connection c, String sql, String[] keys, PreparedStatement pstmt, boolean reusable) {
+        if (reusable && !hints.isDefault()) {
+            try {
+                hints.reset(pstmt);
+            } catch (SQLException ex) {
+                reusable = false;
             }
+        }
+        StatementCache.release(c, sql, keys, pstmt, reusable);
+    }
 
-            if (f.getType().isArray()) {
-                Type[] t = f.getAnnotationsByType(Type.class);
-                if (t == null || t.length != 1) {
-                    throw new IllegalArgumentException("Parameters class field " + f.getName() + " is an array and must have a @Type annotation to set the database type of the ARRAY");
-                }
-            }
+    /**
+     * Turns off autocommit for statements that read through a server side
+     * cursor.
+     *
+     * @return whether autocommit has to be turned back on with
+     * {@link #endCursor(Connection, boolean, boolean)}
+     */
+    boolean beginCursor(Connection c) throws SQLException {
+        if (!hints.cursor || !c.getAutoCommit()) {
+            return false;
         }
 
-        referencedParms.removeAll(dereferencedParms);
-        if (!referencedParms.isEmpty()) {
-            throw new IllegalArgumentException(
-                    "SQL statement references the following variables from parameters class that do not exist: " + referencedParms);
+        c.setAutoCommit(false);
+        return true;
+    }
+
+    void endCursor(Connection c, boolean cursor, boolean succeeded) {
+        if (!cursor) {
+            return;
         }
 
-        Matcher m = VARIABLE_PATTERN.matcher(sqlStr);
-        slots = new ArrayList<>();
-        while (m.find()) {
-            try {
-                slots.add(paramsClass.getDeclaredField(m.group(1)));
-            } catch (NoSuchFieldException ignored) {
-                // This should not happen because an exception would have been thrown above
+        try {
+            if (!succeeded) {
+                c.rollback();
             }
-            sqlStr = m.replaceFirst("?");
-            m = VARIABLE_PATTERN.matcher(sqlStr);
+            c.setAutoCommit(true);
+        } catch (SQLException ex) {
+            Logger.getLogger(AbstractStatement.class.getName()).log(Level.WARNING, "Unable to turn autocommit back on", ex);
+        }
+    }
+
+    /**
+     * Reads the results with an adaptive fetch size when the hints ask for
+     * one.
+     *
+     * @return null when the fetch size is left alone
+     */
+    AdaptiveFetchSize adaptiveFetch(ResultSet rs) throws SQLException {
+        if (!hints.adaptiveFetch) {
+            return null;
         }
+        return new AdaptiveFetchSize(rs, hints.initialFetchSize(), hints.fetchMemory);
+    }
 
-        safeSQL = sqlStr;
+    @SuppressWarnings("unchecked")
+    protected void bindParameters(Connection c, PreparedStatement pstmt, P p) throws IllegalArgumentException, IllegalAccessException, SQLException {
+        handler.setParameters(p, pstmt, c);
     }
 
 }
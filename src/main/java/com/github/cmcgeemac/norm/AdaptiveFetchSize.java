@@ -0,0 +1,114 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves through a result set while adjusting its fetch size. After every
+ * fetch worth of rows, the time spent waiting on the driver is compared with
+ * the time spent by the consumer between rows. When the driver is slower, the
+ * fetch size doubles so that there are fewer round trips. When the consumer is
+ * much slower, the fetch size halves so that fewer rows sit in memory waiting.
+ * The fetch size never goes above the number of rows that fit in the memory
+ * limit according to the declared sizes of the columns.
+ */
+final class AdaptiveFetchSize {
+
+    static final int MIN_FETCH_SIZE = 10;
+    static final int MAX_FETCH_SIZE = 10_000;
+
+    /**
+     * The width assumed for columns without a usable size, such as text and
+     * binary columns, and the most that any one column is assumed to take.
+     */
+    private static final int MAX_COLUMN_WIDTH = 1024;
+
+    /**
+     * The overhead of holding a value in the driver on top of its width.
+     */
+    private static final int COLUMN_OVERHEAD = 16;
+
+    private final ResultSet rs;
+    private final int limit;
+
+    private int fetchSize;
+    private int rows;
+    private long fetchNanos;
+    private long consumeNanos;
+    private long returned;
+
+    AdaptiveFetchSize(ResultSet rs, int fetchSize, long memory) throws SQLException {
+        this.rs = rs;
+        this.limit = (int) Math.max(MIN_FETCH_SIZE, Math.min(MAX_FETCH_SIZE, memory / rowWidth(rs.getMetaData())));
+        this.fetchSize = Math.max(MIN_FETCH_SIZE, Math.min(fetchSize, limit));
+
+        if (this.fetchSize != fetchSize) {
+            setFetchSize();
+        }
+    }
+
+    static int rowWidth(ResultSetMetaData md) throws SQLException {
+        int width = 0;
+        for (int i = 1; i <= md.getColumnCount(); i++) {
+            int s = md.getColumnDisplaySize(i);
+            width += (s <= 0 || s > MAX_COLUMN_WIDTH ? MAX_COLUMN_WIDTH : s) + COLUMN_OVERHEAD;
+        }
+        return Math.max(width, 1);
+    }
+
+    int getFetchSize() {
+        return fetchSize;
+    }
+
+    boolean next() throws SQLException {
+        long start = System.nanoTime();
+        if (returned != 0) {
+            consumeNanos += start - returned;
+        }
+
+        boolean more = rs.next();
+
+        returned = System.nanoTime();
+        fetchNanos += returned - start;
+
+        if (more && ++rows == fetchSize) {
+            adjust();
+        }
+        return more;
+    }
+
+    private void adjust() {
+        int next = fetchSize;
+        if (fetchNanos > consumeNanos) {
+            next = fetchSize * 2;
+        } else if (consumeNanos > fetchNanos * 4) {
+            next = fetchSize / 2;
+        }
+        next = Math.max(MIN_FETCH_SIZE, Math.min(next, limit));
+
+        rows = 0;
+        fetchNanos = 0;
+        consumeNanos = 0;
+
+        if (next != fetchSize) {
+            fetchSize = next;
+            setFetchSize();
+        }
+    }
+
+    private void setFetchSize() {
+        try {
+            rs.setFetchSize(fetchSize);
+        } catch (SQLException ex) {
+            Logger.getLogger(AdaptiveFetchSize.class.getName()).log(Level.FINE, "Unable to set the fetch size", ex);
+        }
+    }
+}
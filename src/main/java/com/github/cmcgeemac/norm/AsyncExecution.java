@@ -0,0 +1,91 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the asynchronous statement executions, such as
+ * {@link NormStatement#executeQueryAsync(javax.sql.DataSource, NoP)}. Unless
+ * another executor is given each execution gets a virtual thread when the
+ * JVM has them, otherwise a thread from a pool that grows as needed, because
+ * the executions spend most of their time blocked on JDBC.
+ */
+public final class AsyncExecution {
+
+    interface SQLTask<T> {
+
+        T call() throws SQLException;
+    }
+
+    private static volatile Executor defaultExecutor;
+
+    private AsyncExecution() {
+    }
+
+    /**
+     * Replaces the executor that is used when none is given to the
+     * asynchronous methods. A null executor goes back to the built-in one.
+     */
+    public static void setDefaultExecutor(Executor executor) {
+        defaultExecutor = executor;
+    }
+
+    public static Executor getDefaultExecutor() {
+        Executor e = defaultExecutor;
+        return e != null ? e : BuiltIn.EXECUTOR;
+    }
+
+    static <T> CompletableFuture<T> supply(Executor executor, SQLTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(task.call());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Rejected by the executor
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private static final class BuiltIn {
+
+        static final Executor EXECUTOR = create();
+
+        private static Executor create() {
+            try {
+                // Java 21 and later, looked up reflectively to keep running on Java 8
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                Logger.getLogger(AsyncExecution.class.getName()).log(Level.FINE,
+                        "Virtual threads are not available, using a thread pool", e);
+            }
+
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = r -> {
+                Thread t = new Thread(r, "norm-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            };
+            return Executors.newCachedThreadPool(factory);
+        }
+    }
+}
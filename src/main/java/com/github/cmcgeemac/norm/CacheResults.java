@@ -0,0 +1,59 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the results of a query statement, placed next to its {@link SQL}
+ * annotation. Results are kept for each distinct set of parameter values and
+ * are dropped when NORM executes a statement that writes to one of the tables
+ * that the query reads. Writes that don't go through NORM aren't seen, so the
+ * time to live bounds how stale the results can get. The cache is only used,
+ * and writes only reliably invalidate it, in auto-commit mode. See
+ * {@link ResultCache}.
+ *
+ * <pre>
+ * &#64;SQL("SELECT name FROM countries WHERE code = :code")
+ * &#64;CacheResults(maxEntries = 500, ttl = 10, unit = TimeUnit.MINUTES)
+ * class CountryName extends NormStatement&lt;CountryParams, Country&gt; {}
+ * </pre>
+ */
+@Retention(value = RetentionPolicy.RUNTIME)
+@Target(value = ElementType.TYPE_USE)
+public @interface CacheResults {
+
+    enum Eviction {
+        /**
+         * Evicts the least recently used results.
+         */
+        LRU,
+        /**
+         * Evicts the least frequently used results of a sample of the least
+         * recently used ones.
+         */
+        LFU
+    }
+
+    /**
+     * The most sets of results kept for the statement.
+     */
+    int maxEntries() default 1000;
+
+    /**
+     * How long results are kept, or 0 to keep them until they are evicted or
+     * invalidated.
+     */
+    long ttl() default 60;
+
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    Eviction eviction() default Eviction.LRU;
+}
@@ -0,0 +1,28 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field of a parameters class that is filled in with a key generated
+ * by the database when the statement is run with
+ * {@link NormStatement#executeInsert(java.sql.Connection, com.github.cmcgeemac.norm.NoP)}.
+ * The keys are read in the order of the fields, so that drivers that don't
+ * name the key columns work too.
+ */
+@Retention(value = RetentionPolicy.RUNTIME)
+@Target(value = ElementType.FIELD)
+public @interface GeneratedKey {
+
+    /**
+     * The column with the key, or the name of the field if it is empty.
+     */
+    String value() default "";
+}
@@ -0,0 +1,84 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fields of a parameters class marked with {@link GeneratedKey}, and how
+ * to fill them in from the generated keys of an insert.
+ */
+final class GeneratedKeys {
+
+    // The columns to ask the driver for, empty to let it choose
+    final String[] columns;
+
+    private final Field[] fields;
+
+    private GeneratedKeys(String[] columns, Field[] fields) {
+        this.columns = columns;
+        this.fields = fields;
+    }
+
+    static GeneratedKeys of(Class<?> paramsClass) {
+        List<String> columns = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        for (Field f : paramsClass.getDeclaredFields()) {
+            GeneratedKey key = f.getAnnotation(GeneratedKey.class);
+            if (key == null) {
+                continue;
+            }
+            if (Modifier.isStatic(f.getModifiers()) || Modifier.isFinal(f.getModifiers())) {
+                throw new IllegalArgumentException("The generated key field " + f.getName() + " of " + paramsClass.getTypeName() + " must not be static or final");
+            }
+
+            f.setAccessible(true);
+            fields.add(f);
+            columns.add(key.value().isEmpty() ? f.getName() : key.value());
+        }
+        return new GeneratedKeys(columns.toArray(new String[columns.size()]), fields.toArray(new Field[fields.size()]));
+    }
+
+    /**
+     * Fills in the fields of the parameters from the current row of the keys,
+     * a column for each field in order.
+     */
+    void read(ResultSet rs, Object p) throws SQLException {
+        for (int i = 0; i < fields.length; i++) {
+            Field f = fields[i];
+            Class<?> t = f.getType();
+            int column = i + 1;
+
+            Object v;
+            if (t == long.class) {
+                v = rs.getLong(column);
+            } else if (t == int.class) {
+                v = rs.getInt(column);
+            } else if (t == Long.class) {
+                long l = rs.getLong(column);
+                v = rs.wasNull() ? null : l;
+            } else if (t == Integer.class) {
+                int n = rs.getInt(column);
+                v = rs.wasNull() ? null : n;
+            } else if (t == String.class) {
+                v = rs.getString(column);
+            } else {
+                v = rs.getObject(column, t);
+            }
+
+            try {
+                f.set(p, v);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Unable to set the generated key " + f.getName(), ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Folds consecutive rows with the same key into one parent, for the results
+ * of a join that are ordered by the key of the parent. Only the rows of the
+ * current parent are read ahead, plus the first row of the next one, which is
+ * held until the parent after it is asked for.
+ */
+final class GroupedSpliterator<R, G> extends Spliterators.AbstractSpliterator<G> {
+
+    private final Spliterator<R> rows;
+    private final Function<? super R, ?> key;
+    private final Function<? super R, ? extends G> parent;
+    private final BiConsumer<? super G, ? super R> child;
+
+    // The first row of the next parent
+    private R pending;
+    private R last;
+
+    GroupedSpliterator(Spliterator<R> rows, Function<? super R, ?> key, Function<? super R, ? extends G> parent, BiConsumer<? super G, ? super R> child) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.rows = rows;
+        this.key = key;
+        this.parent = parent;
+        this.child = child;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super G> action) {
+        R first = pending;
+        if (first == null) {
+            if (!next()) {
+                return false;
+            }
+            first = last;
+        }
+        pending = null;
+
+        Object k = key.apply(first);
+        G g = parent.apply(first);
+        if (g == null) {
+            throw new IllegalStateException("The parent of the rows with key " + k + " is null");
+        }
+        child.accept(g, first);
+
+        while (next()) {
+            if (!Objects.equals(k, key.apply(last))) {
+                pending = last;
+                break;
+            }
+            child.accept(g, last);
+        }
+
+        action.accept(g);
+        return true;
+    }
+
+    private boolean next() {
+        return rows.tryAdvance(r -> last = r);
+    }
+}
@@ -0,0 +1,20 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+/**
+ * Internal use only. Implemented by the code generated for each package of
+ * statements, which creates their handlers without reflection. External
+ * classes should neither implement this interface nor use it.
+ */
+public interface HandlerFactory {
+
+    /**
+     * Creates the handler for the statement with the binary class name, or
+     * gives null if it isn't one of this factory's statements.
+     */
+    StatementHandler<?, ?> create(String statementClass);
+}
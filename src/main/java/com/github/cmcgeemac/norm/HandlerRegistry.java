@@ -0,0 +1,176 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds the generated handlers of the statements. The annotation processor
+ * writes an index of its statements to {@value #INDEX}, which is read once
+ * for each class loader, and the handlers are created by the generated
+ * factories of each package. Handlers that are missing from the index, such
+ * as after an incremental build, are still found by their name.
+ *
+ * <p>
+ * Statements without a generated handler fall back to reflection, which is
+ * slower to start and to run. The fallbacks are counted, and strict mode
+ * turns them into errors so that a build with the annotation processor
+ * switched off is noticed straight away.
+ * </p>
+ */
+public final class HandlerRegistry {
+
+    private static final Logger LOGGER = Logger.getLogger(HandlerRegistry.class.getName());
+
+    /**
+     * The resource with a line for each statement that has a generated
+     * handler, mapping its binary class name to its factory.
+     */
+    public static final String INDEX = "META-INF/norm/handlers";
+
+    // Only names are kept, so the class loaders can still be collected
+    private static final Map<ClassLoader, Map<String, String>> INDEXES = new WeakHashMap<>();
+
+    // A lock rather than a monitor so that virtual threads waiting on it don't pin their carrier
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private static final ClassValue<HandlerFactory> FACTORIES = new ClassValue<HandlerFactory>() {
+        @Override
+        protected HandlerFactory computeValue(Class<?> type) {
+            try {
+                return (HandlerFactory) type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                throw new IllegalStateException("Unable to create the handler factory " + type.getName(), ex);
+            }
+        }
+    };
+
+    private static final AtomicLong FALLBACKS = new AtomicLong();
+
+    private static volatile boolean strict;
+
+    private HandlerRegistry() {
+    }
+
+    /**
+     * Turns strict mode on or off. In strict mode creating a statement that
+     * has no generated handler throws an {@link IllegalStateException}.
+     */
+    public static void setStrict(boolean on) {
+        strict = on;
+    }
+
+    public static boolean isStrict() {
+        return strict;
+    }
+
+    /**
+     * The number of statement classes that fell back to reflection because
+     * they have no generated handler.
+     */
+    public static long getReflectionFallbackCount() {
+        return FALLBACKS.get();
+    }
+
+    /**
+     * The generated handler of the statement class, or null if it has none.
+     */
+    static StatementHandler<?, ?> find(Class<?> c) {
+        ClassLoader loader = c.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+
+        String factory = index(loader).get(c.getName());
+        if (factory != null) {
+            try {
+                StatementHandler<?, ?> h = FACTORIES.get(Class.forName(factory, true, loader)).create(c.getName());
+                if (h != null) {
+                    return h;
+                }
+            } catch (ClassNotFoundException ex) {
+                LOGGER.log(Level.FINE, "The handler factory {0} in the index is missing", factory);
+            }
+        }
+
+        // Look for the class file first so that a missing handler doesn't cost an exception
+        Class<?> ec = c.getEnclosingClass();
+        String name = c.getPackage().getName() + "." + (ec != null ? ec.getSimpleName() : "") + c.getSimpleName() + "NormHandler";
+        if (loader.getResource(name.replace('.', '/') + ".class") == null) {
+            return null;
+        }
+
+        try {
+            return (StatementHandler<?, ?>) Class.forName(name, true, loader).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException ex) {
+            LOGGER.log(Level.WARNING, "Unable to create the handler " + name, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Records that the statement class falls back to reflection.
+     */
+    static void fallback(Class<?> c) {
+        FALLBACKS.incrementAndGet();
+        if (strict) {
+            throw new IllegalStateException("Statement " + c.getName() + " has no generated handler and reflection isn't allowed in strict mode. Check the compiler settings that permit annotation processor.");
+        }
+        LOGGER.log(Level.FINE, "No handler found for {0} proceeding with reflection", c.getName());
+    }
+
+    private static Map<String, String> index(ClassLoader loader) {
+        LOCK.lock();
+        try {
+            Map<String, String> index = INDEXES.get(loader);
+            if (index == null) {
+                index = read(loader);
+                INDEXES.put(loader, index);
+            }
+            return index;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static Map<String, String> read(ClassLoader loader) {
+        Map<String, String> index = new HashMap<>();
+        try {
+            Enumeration<URL> urls = loader.getResources(INDEX);
+            while (urls.hasMoreElements()) {
+                URL url = urls.nextElement();
+                try (BufferedReader r = new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8))) {
+                    for (String line = r.readLine(); line != null; line = r.readLine()) {
+                        line = line.trim();
+                        int eq = line.indexOf('=');
+                        if (line.isEmpty() || line.startsWith("#") || eq < 0) {
+                            continue;
+                        }
+
+                        // The first index on the class path wins, as for the classes themselves
+                        index.putIfAbsent(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Unable to read the handler index " + INDEX, ex);
+        }
+        return index.isEmpty() ? Collections.emptyMap() : index;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.sql.ResultSet;
+
+/**
+ * JDBC hints for executing a statement, placed next to its {@link SQL}
+ * annotation. The defaults leave the driver settings alone. They can be
+ * changed for a single statement object with the setters on
+ * {@link NormStatement}.
+ *
+ * <pre>
+ * &#64;SQL("SELECT * FROM events WHERE day = :day")
+ * &#64;Hints(cursor = true, adaptiveFetch = true, queryTimeout = 30)
+ * class Events extends NormStatement&lt;EventParams, Event&gt; {}
+ * </pre>
+ */
+@Retention(value = RetentionPolicy.RUNTIME)
+@Target(value = ElementType.TYPE_USE)
+public @interface Hints {
+
+    /**
+     * The number of rows to fetch from the database at a time, or 0 for the
+     * driver's default.
+     */
+    int fetchSize() default 0;
+
+    /**
+     * The most rows that the query returns, or 0 for no limit.
+     */
+    int maxRows() default 0;
+
+    /**
+     * One of {@link ResultSet#FETCH_FORWARD}, {@link ResultSet#FETCH_REVERSE}
+     * or {@link ResultSet#FETCH_UNKNOWN}.
+     */
+    int fetchDirection() default ResultSet.FETCH_FORWARD;
+
+    /**
+     * The seconds that the statement can run before the driver cancels it, or
+     * 0 for no limit.
+     */
+    int queryTimeout() default 0;
+
+    /**
+     * Read the results through a server side cursor. Drivers such as
+     * PostgreSQL only do this with autocommit off and a fetch size, so
+     * autocommit is turned off while the results are read and turned back on
+     * afterwards, and a fetch size is used even when none is given.
+     */
+    boolean cursor() default false;
+
+    /**
+     * Grow or shrink the fetch size while the results are read, depending on
+     * the width of the rows and whether the database or the consumer is
+     * slower.
+     */
+    boolean adaptiveFetch() default false;
+
+    /**
+     * The most memory, in bytes, that an adaptive fetch size lets one fetch
+     * of rows take according to the declared sizes of the columns.
+     */
+    int fetchMemory() default 4 * 1024 * 1024;
+}
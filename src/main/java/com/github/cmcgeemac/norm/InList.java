@@ -0,0 +1,158 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Internal use only. Used for code generation and can change without notice.
+ *
+ * <p>
+ * Expands the placeholders of collection parameters, such as
+ * {@code WHERE id IN (:ids)}, into one placeholder for each value. The number
+ * of placeholders is rounded up to a power of two, and the last value is
+ * repeated to fill them, so that a handful of SQL texts covers every size of
+ * collection and the prepared statement and database plan caches keep being
+ * hit. An empty collection becomes a single NULL, which matches nothing.
+ * </p>
+ */
+public final class InList {
+
+    /**
+     * The most values bound for one collection in one execution, which stays
+     * under the limit of 1000 values in an Oracle IN list. Larger collections
+     * are rejected on every execution path rather than split, since only the
+     * caller knows whether running the statement for each part gives the same
+     * result, which it doesn't for NOT IN, aggregates, ORDER BY or LIMIT.
+     */
+    public static final int MAX_VALUES = 512;
+
+    // Up to 12 collections fit in the key of the cache, with 5 bits for the power of two of each
+    private static final int MAX_CACHED_LISTS = 12;
+
+    private final String safeSQL;
+    private final int[] positions;
+    private final String[] fields;
+    private final Map<Long, String> expanded = new ConcurrentHashMap<>();
+
+    /**
+     * @param safeSQL the SQL with a single placeholder for each parameter
+     * @param markers the zero based indexes of the placeholders that are for
+     * collections, in order
+     * @param fields the parameters field bound to each of those placeholders
+     */
+    public InList(String safeSQL, int[] markers, String[] fields) {
+        this.safeSQL = safeSQL;
+        this.positions = positions(safeSQL, markers);
+        this.fields = fields;
+    }
+
+    private static int[] positions(String sql, int[] markers) {
+        List<Integer> all = Util.placeholders(sql);
+
+        int[] positions = new int[markers.length];
+        for (int i = 0; i < markers.length; i++) {
+            if (markers[i] >= all.size()) {
+                throw new IllegalArgumentException("There is no placeholder " + markers[i] + " in " + sql);
+            }
+            positions[i] = all.get(markers[i]);
+        }
+        return positions;
+    }
+
+    /**
+     * The number of placeholders for a collection of the size.
+     */
+    static int bucket(int size) {
+        return size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+    }
+
+    /**
+     * The names of the fields with collections, one for each of the expanded
+     * placeholders.
+     */
+    String[] getFields() {
+        return fields;
+    }
+
+    /**
+     * The SQL with the placeholders expanded for the collections, which are
+     * given in the order of their placeholders.
+     */
+    public String sql(Collection<?>... lists) {
+        if (lists.length > MAX_CACHED_LISTS) {
+            return expand(lists);
+        }
+
+        long key = 0;
+        for (int i = 0; i < lists.length; i++) {
+            int size = lists[i] != null ? lists[i].size() : 0;
+            key |= (long) Integer.numberOfTrailingZeros(bucket(Math.min(size, MAX_VALUES))) << (5 * i);
+        }
+        return expanded.computeIfAbsent(key, k -> expand(lists));
+    }
+
+    private String expand(Collection<?>... lists) {
+        StringBuilder sql = new StringBuilder(safeSQL.length() + 16 * positions.length);
+        int last = 0;
+        for (int i = 0; i < positions.length; i++) {
+            sql.append(safeSQL, last, positions[i]);
+            // Oversize collections are rejected when they are bound
+            int n = bucket(lists[i] != null ? Math.min(lists[i].size(), MAX_VALUES) : 0);
+            for (int j = 0; j < n; j++) {
+                sql.append(j == 0 ? "?" : ", ?");
+            }
+            last = positions[i] + 1;
+        }
+        sql.append(safeSQL, last, safeSQL.length());
+        return sql.toString();
+    }
+
+    /**
+     * Binds the values of a collection starting at a parameter index, filling
+     * the rest of the placeholders with the last value.
+     *
+     * @return the index of the next parameter
+     * @throws SQLException if the collection has more than
+     * {@link #MAX_VALUES} values
+     */
+    public static int bind(PreparedStatement pstmt, int idx, Collection<?> values) throws SQLException {
+        if (values == null || values.isEmpty()) {
+            pstmt.setNull(idx, Types.NULL);
+            return idx + 1;
+        }
+
+        if (values.size() > MAX_VALUES) {
+            throw new SQLException("A collection parameter has " + values.size() + " values, more than the " + MAX_VALUES
+                    + " that can be bound in one execution. Split it and execute the statement for each part where that gives the same result.");
+        }
+
+        Object v = null;
+        for (Object value : values) {
+            v = value;
+            setValue(pstmt, idx++, v);
+        }
+
+        for (int i = values.size(); i < bucket(values.size()); i++) {
+            setValue(pstmt, idx++, v);
+        }
+        return idx;
+    }
+
+    private static void setValue(PreparedStatement pstmt, int idx, Object v) throws SQLException {
+        if (v == null) {
+            pstmt.setNull(idx, Types.NULL);
+        } else {
+            pstmt.setObject(idx, v);
+        }
+    }
+}
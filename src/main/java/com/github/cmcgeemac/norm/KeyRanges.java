@@ -0,0 +1,126 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Splits the values of a numeric or time key column into ranges that don't
+ * overlap, for running a query over each range at the same time with
+ * {@link NormStatement#executeQueryPartitioned(javax.sql.DataSource,
+ * com.github.cmcgeemac.norm.NoP, com.github.cmcgeemac.norm.KeyRanges)}.
+ *
+ * <p>
+ * The ranges cover the keys from the minimum to the maximum, both included.
+ * Rows with keys outside of them, or with no key, are left out. The ranges
+ * are the same size, so keys that are spread evenly give each range about the
+ * same amount of work.
+ * </p>
+ */
+public final class KeyRanges {
+
+    private final String column;
+    private final Object[] bounds;
+    private final boolean ordered;
+
+    private KeyRanges(String column, Object[] bounds, boolean ordered) {
+        this.column = column;
+        this.bounds = bounds;
+        this.ordered = ordered;
+    }
+
+    /**
+     * Ranges of a numeric key, such as an id.
+     *
+     * @param column the column in the query, which can be qualified with the
+     * table
+     * @param partitions the number of ranges, which is lowered when there are
+     * fewer keys
+     */
+    public static KeyRanges of(String column, long min, long max, int partitions) {
+        check(column, min <= max, partitions);
+
+        BigInteger lo = BigInteger.valueOf(min);
+        BigInteger span = BigInteger.valueOf(max).subtract(lo).add(BigInteger.ONE);
+        int n = span.compareTo(BigInteger.valueOf(partitions)) < 0 ? span.intValue() : partitions;
+
+        Object[] bounds = new Object[n + 1];
+        for (int i = 0; i < n; i++) {
+            bounds[i] = lo.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(n))).longValue();
+        }
+        bounds[n] = max;
+        return new KeyRanges(column, bounds, false);
+    }
+
+    /**
+     * Ranges of a time key, which is bound as a timestamp. The ranges are split
+     * on whole milliseconds.
+     *
+     * @param column the column in the query, which can be qualified with the
+     * table
+     * @param partitions the number of ranges, which is lowered when there are
+     * fewer milliseconds
+     */
+    public static KeyRanges of(String column, Instant min, Instant max, int partitions) {
+        check(column, !min.isAfter(max), partitions);
+
+        KeyRanges millis = of(column, min.toEpochMilli(), max.toEpochMilli(), partitions);
+        Object[] bounds = new Object[millis.bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = new Timestamp((Long) millis.bounds[i]);
+        }
+
+        // The ends keep any precision finer than milliseconds
+        bounds[0] = Timestamp.from(min);
+        bounds[bounds.length - 1] = Timestamp.from(max);
+        return new KeyRanges(column, bounds, false);
+    }
+
+    private static void check(String column, boolean minNotAfterMax, int partitions) {
+        if (column == null || column.isEmpty()) {
+            throw new IllegalArgumentException("A key column is required");
+        }
+        if (!minNotAfterMax) {
+            throw new IllegalArgumentException("The minimum key is after the maximum");
+        }
+        if (partitions < 1) {
+            throw new IllegalArgumentException("There must be at least one partition: " + partitions);
+        }
+    }
+
+    /**
+     * The same ranges, with the results in the order of the ranges. Results
+     * come as soon as any range has some otherwise.
+     */
+    public KeyRanges ordered() {
+        return new KeyRanges(column, bounds, true);
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * The number of ranges.
+     */
+    public int size() {
+        return bounds.length - 1;
+    }
+
+    /**
+     * The lowest key of the range, or for the number of ranges the highest key
+     * of the last one.
+     */
+    Object bound(int i) {
+        return bounds[i];
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.insert.Insert;
+
+/**
+ * Rewrites a single row {@code INSERT ... VALUES (?, ?)} into one that inserts
+ * many rows with {@code VALUES (?, ?), (?, ?), ...}, so that a chunk of rows
+ * goes to the database as one statement even with drivers that send each
+ * member of a JDBC batch separately.
+ */
+final class MultiRowInsert {
+
+    /**
+     * The most rows inserted by one statement. SQL Server doesn't allow more
+     * than 1000 rows in a VALUES list.
+     */
+    static final int MAX_ROWS = 1000;
+
+    private final String prefix;
+    private final String row;
+    private final String suffix;
+
+    // The number of placeholders in each row
+    final int width;
+
+    private final Map<Integer, String> sql = new ConcurrentHashMap<>();
+
+    private MultiRowInsert(String prefix, String row, String suffix, int width) {
+        this.prefix = prefix;
+        this.row = row;
+        this.suffix = suffix;
+        this.width = width;
+    }
+
+    /**
+     * Works out how to repeat the row of the statement.
+     *
+     * @return null when the statement isn't an INSERT of a single row of
+     * values, or if it has placeholders outside of that row, such as in an
+     * ON DUPLICATE KEY UPDATE
+     */
+    static MultiRowInsert of(String safeSQL) {
+        if (!safeSQL.trim().toUpperCase(Locale.ROOT).startsWith("INSERT")) {
+            return null;
+        }
+
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(safeSQL);
+        } catch (JSQLParserException ex) {
+            return null;
+        }
+
+        if (!(statement instanceof Insert)) {
+            return null;
+        }
+
+        Insert insert = (Insert) statement;
+        if (insert.getSelect() != null || !(insert.getItemsList() instanceof ExpressionList)) {
+            return null;
+        }
+
+        String sql = insert.toString();
+        String row = insert.getItemsList().toString();
+        int width = Util.placeholders(row).size();
+        int start = sql.indexOf(row);
+        if (width == 0 || start < 0 || Util.placeholders(sql).size() != width) {
+            return null;
+        }
+
+        return new MultiRowInsert(sql.substring(0, start), row, sql.substring(start + row.length()), width);
+    }
+
+    /**
+     * The SQL that inserts the number of rows.
+     */
+    String sql(int rows) {
+        return sql.computeIfAbsent(rows, n -> {
+            StringBuilder b = new StringBuilder(prefix.length() + n * (row.length() + 2) + suffix.length());
+            b.append(prefix);
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    b.append(", ");
+                }
+                b.append(row);
+            }
+            return b.append(suffix).toString();
+        });
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Runs statements on connections from a data source, so that call sites don't
+ * need to borrow and give back connections themselves.
+ *
+ * <p>
+ * A connection pool hands out whichever connection is free, so the statements
+ * prepared on one borrow are rarely there on the next. The executor instead
+ * keeps a few of the connections it has used, along with their cached
+ * statements, and runs each statement on one that already has it prepared
+ * when it can. Connections kept longer than the idle timeout, and any
+ * connection used by an execution that failed, go back to the data source.
+ * </p>
+ *
+ * <p>
+ * The idle timeout is checked whenever a statement starts or finishes. If the
+ * executor stops being used, the kept connections stay out of the data source
+ * until {@link #releaseIdle()} or {@link #close()} is called, so call
+ * releaseIdle() from a scheduler where traffic can stop for long periods.
+ * </p>
+ *
+ * <pre>
+ * NormExecutor db = new NormExecutor(dataSource);
+ * List&lt;Order&gt; orders = db.executeQuery(ORDERS_BY_CUSTOMER, params);
+ * </pre>
+ *
+ * <p>
+ * The statements run with auto-commit as the data source gives it. Borrow a
+ * connection from the data source for statements that have to run in one
+ * transaction. Close the executor to give back the connections it keeps.
+ * </p>
+ */
+public final class NormExecutor implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(NormExecutor.class.getName());
+
+    private interface Task<T> {
+
+        T run(Connection c) throws SQLException;
+    }
+
+    private static final class Idle {
+
+        final Connection connection;
+        final long since;
+
+        Idle(Connection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+
+    private final DataSource ds;
+
+    // Most recently used first
+    private final Deque<Idle> idle = new ArrayDeque<>();
+
+    // A lock rather than a monitor so that virtual threads waiting on it don't pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong affinityHits = new AtomicLong();
+    private final AtomicLong borrows = new AtomicLong();
+
+    private volatile int maxIdle = 8;
+    private volatile long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    private boolean closed;
+
+    public NormExecutor(DataSource ds) {
+        this.ds = ds;
+    }
+
+    /**
+     * Sets the most connections kept between executions. Zero gives every
+     * connection back to the data source straight away.
+     */
+    public void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("The maximum idle connections cannot be negative: " + maxIdle);
+        }
+        this.maxIdle = maxIdle;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    /**
+     * Sets how long a connection is kept without being used before it goes
+     * back to the data source.
+     */
+    public void setIdleTimeout(long timeout, TimeUnit unit) {
+        idleTimeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * The number of executions that found their statement already prepared on
+     * one of the kept connections.
+     */
+    public long getAffinityHitCount() {
+        return affinityHits.get();
+    }
+
+    /**
+     * The number of connections borrowed from the data source.
+     */
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public <P extends NoP, R extends NoR> boolean execute(NormStatement<P, R> statement) throws SQLException {
+        return run(statement.safeSQL, statement::execute);
+    }
+
+    public <P extends NoP, R extends NoR> boolean execute(NormStatement<P, R> statement, P p) throws SQLException {
+        return run(statement.sql(p), c -> statement.execute(c, p));
+    }
+
+    public <P extends NoP, R extends NoR> List<R> executeQuery(NormStatement<P, R> statement) throws SQLException {
+        return run(statement.safeSQL, statement::executeQuery);
+    }
+
+    public <P extends NoP, R extends NoR> List<R> executeQuery(NormStatement<P, R> statement, P p) throws SQLException {
+        return run(statement.sql(p), c -> statement.executeQuery(c, p));
+    }
+
+    public <P extends NoP, R extends NoR> int executeQuery(NormStatement<P, R> statement, P p, RowConsumer<? super R> consumer) throws SQLException {
+        return run(statement.sql(p), c -> statement.executeQuery(c, p, consumer));
+    }
+
+    public <P extends NoP, R extends NoR> int executeUpdate(NormStatement<P, R> statement) throws SQLException {
+        return run(statement.safeSQL, statement::executeUpdate);
+    }
+
+    public <P extends NoP, R extends NoR> int executeUpdate(NormStatement<P, R> statement, P p) throws SQLException {
+        return run(statement.sql(p), c -> statement.executeUpdate(c, p));
+    }
+
+    public <P extends NoP, R extends NoR> int[] executeBatch(NormStatement<P, R> statement, Iterable<P> params) throws SQLException {
+        return run(statement.safeSQL, c -> statement.executeBatch(c, params));
+    }
+
+    private <T> T run(String sql, Task<T> task) throws SQLException {
+        Connection c = borrow(sql);
+
+        boolean succeeded = false;
+        try {
+            T result = task.run(c);
+            succeeded = true;
+            return result;
+        } finally {
+            giveBack(c, succeeded);
+        }
+    }
+
+    /**
+     * Takes a kept connection that has the statement prepared, or else the one
+     * used most recently, or else a new one from the data source.
+     */
+    private Connection borrow(String sql) throws SQLException {
+        List<Connection> expired = new ArrayList<>();
+        Connection c = null;
+
+        lock.lock();
+        try {
+            expire(expired);
+
+            for (Iterator<Idle> it = idle.iterator(); it.hasNext();) {
+                Idle i = it.next();
+                if (StatementCache.isCached(i.connection, sql)) {
+                    it.remove();
+                    c = i.connection;
+                    affinityHits.incrementAndGet();
+                    break;
+                }
+            }
+
+            if (c == null && !idle.isEmpty()) {
+                c = idle.removeFirst().connection;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        expired.forEach(NormExecutor::release);
+
+        if (c != null) {
+            if (!c.isClosed()) {
+                return c;
+            }
+            release(c);
+        }
+
+        borrows.incrementAndGet();
+        return ds.getConnection();
+    }
+
+    private void giveBack(Connection c, boolean succeeded) {
+        List<Connection> expired = new ArrayList<>();
+        boolean kept = false;
+
+        lock.lock();
+        try {
+            expire(expired);
+            if (succeeded && !closed && idle.size() < maxIdle) {
+                idle.addFirst(new Idle(c, System.nanoTime()));
+                kept = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        expired.forEach(NormExecutor::release);
+
+        // The connection might be broken after a failure, so the data source gets to check it
+        if (!kept) {
+            release(c);
+        }
+    }
+
+    /**
+     * Takes out the kept connections that have been idle for longer than the
+     * timeout. Called with the lock held.
+     */
+    private void expire(List<Connection> expired) {
+        long now = System.nanoTime();
+        for (Iterator<Idle> it = idle.descendingIterator(); it.hasNext();) {
+            Idle i = it.next();
+            if (now - i.since > idleTimeoutNanos) {
+                expired.add(i.connection);
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gives back the kept connections that have been idle for longer than the
+     * timeout, without waiting for the next execution to do it.
+     */
+    public void releaseIdle() {
+        List<Connection> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            expire(expired);
+        } finally {
+            lock.unlock();
+        }
+
+        expired.forEach(NormExecutor::release);
+    }
+
+    private static void release(Connection c) {
+        StatementCache.close(c);
+        try {
+            c.close();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.WARNING, "Unable to close connection", ex);
+        }
+    }
+
+    /**
+     * Gives back the kept connections to the data source. The executor can
+     * still be used, but it doesn't keep connections anymore.
+     */
+    @Override
+    public void close() {
+        List<Idle> kept;
+        lock.lock();
+        try {
+            closed = true;
+            kept = new ArrayList<>(idle);
+            idle.clear();
+        } finally {
+            lock.unlock();
+        }
+
+        kept.forEach(i -> release(i.connection));
+    }
+}
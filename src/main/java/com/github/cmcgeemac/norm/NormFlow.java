@@ -0,0 +1,56 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+/**
+ * The reactive streams interfaces for publishing results with back pressure.
+ * They have the same methods and rules as those in java.util.concurrent.Flow,
+ * which NORM can't use while it still runs on Java 8, so adapting between them
+ * only takes a lambda or two.
+ *
+ * <pre>
+ * Flow.Publisher&lt;R&gt; publisher = s -&gt; norm.subscribe(new NormFlow.Subscriber&lt;R&gt;() {
+ *   public void onSubscribe(NormFlow.Subscription sub) {
+ *     s.onSubscribe(new Flow.Subscription() {
+ *       public void request(long n) { sub.request(n); }
+ *       public void cancel() { sub.cancel(); }
+ *     });
+ *   }
+ *   public void onNext(R item) { s.onNext(item); }
+ *   public void onError(Throwable t) { s.onError(t); }
+ *   public void onComplete() { s.onComplete(); }
+ * });
+ * </pre>
+ */
+public final class NormFlow {
+
+    private NormFlow() {
+    }
+
+    @FunctionalInterface
+    public interface Publisher<T> {
+
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+
+        void request(long n);
+
+        void cancel();
+    }
+}
@@ -5,25 +5,25 @@
  */
 package com.github.cmcgeemac.norm;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.math.BigDecimal;
-import java.net.URL;
-import java.sql.Array;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Time;
-import java.sql.Timestamp;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
 
 /**
  * NoORM statement with result represents a safe database statement that can
@@ -95,251 +95,1294 @@ import java.util.logging.Logger;
  */
 public class NormStatement<P extends NoP, R extends NoR> extends AbstractStatement<P> {
 
-    private final Class<R> resultClass;
-    private final Constructor<?> resultCtor;
+    /**
+     * The number of parameter sets sent to the database together by
+     * {@link #executeBatch(java.sql.Connection, java.lang.Iterable)}.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
 
-    @SuppressWarnings("unchecked")
-    public NormStatement() {
-        super();
+    /**
+     * The most placeholders in each statement sent by
+     * {@link #executeBulkInsert(java.sql.Connection, java.lang.Iterable)}. It
+     * stays under the lowest limit of the common drivers, which is 2100 for
+     * SQL Server.
+     */
+    public static final int DEFAULT_MAX_PARAMETERS = 2000;
 
-        java.lang.reflect.Type[] types = ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments();
+    /**
+     * Changes the number of rows fetched from the database at a time for this
+     * statement object, overriding {@link Hints#fetchSize()}.
+     */
+    public void setFetchSize(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("The fetch size can't be negative: " + rows);
+        }
+        changeHints().fetchSize = rows;
+    }
+
+    /**
+     * Limits the number of rows returned by this statement object, overriding
+     * {@link Hints#maxRows()}.
+     */
+    public void setMaxRows(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("The maximum rows can't be negative: " + rows);
+        }
+        changeHints().maxRows = rows;
+    }
 
-        resultClass = (Class<R>) types[1];
+    /**
+     * Overrides {@link Hints#fetchDirection()} for this statement object.
+     */
+    public void setFetchDirection(int direction) {
+        if (direction != ResultSet.FETCH_FORWARD && direction != ResultSet.FETCH_REVERSE && direction != ResultSet.FETCH_UNKNOWN) {
+            throw new IllegalArgumentException("Unknown fetch direction: " + direction);
+        }
+        changeHints().fetchDirection = direction;
+    }
 
-        // It could be the placeholder
-        if (NoR.class.equals(resultClass)) {
-            resultCtor = null;
-            return;
+    /**
+     * Overrides {@link Hints#queryTimeout()} for this statement object.
+     */
+    public void setQueryTimeout(int seconds) {
+        if (seconds < 0) {
+            throw new IllegalArgumentException("The query timeout can't be negative: " + seconds);
         }
+        changeHints().queryTimeout = seconds;
+    }
 
-        resultCtor
-                = Arrays.asList(resultClass.getDeclaredConstructors()).stream()
-                        .filter(ctor -> ctor.getParameterCount() == 0 || ctor.getParameterCount() == 1 && ctor.getParameterTypes()[0].isInstance(statementOuter))
-                        .findFirst()
-                        .get();
+    /**
+     * Overrides {@link Hints#cursor()} for this statement object.
+     */
+    public void setCursor(boolean cursor) {
+        changeHints().cursor = cursor;
+    }
 
-        // Force the constructor to be accessible
-        resultCtor.setAccessible(true);
+    /**
+     * Overrides {@link Hints#adaptiveFetch()} for this statement object.
+     */
+    public void setAdaptiveFetch(boolean adaptive) {
+        changeHints().adaptiveFetch = adaptive;
     }
 
     @SuppressWarnings("unchecked")
     private R constructResult() {
+        return (R) handler.createResult(statementOuter);
+    }
 
-        if (resultCtor == null) {
-            throw new IllegalStateException("No result class constructor could be found.");
+    @SuppressWarnings("unchecked")
+    private P constructParameters() {
+        return (P) handler.createParameters(statementOuter);
+    }
+
+    public boolean execute(Connection c) throws SQLException {
+        // It could be just the placeholder parameters class
+        if (NoP.class.equals(paramsClass)) {
+            return execute(c, null);
         }
 
+        return execute(c, constructParameters());
+    }
+
+    public boolean execute(Connection c, P p) throws SQLException {
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.EXECUTE, c, p);
+
         try {
-            if (resultCtor.getParameterCount() == 1) {
-                return (R) resultCtor.newInstance(statementOuter);
-            } else {
-                return (R) resultCtor.newInstance();
+            PreparedStatement pstmt;
+            try {
+                pstmt = super.createPreparedStatement(c, p, x);
+            } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
+                throw new SQLException("Error preparing statement", ex);
             }
-        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | InvocationTargetException e) {
-            throw new IllegalStateException("Unable to construct result instance", e);
+
+            boolean reusable = false;
+            try {
+                boolean result = pstmt.execute();
+                reusable = true;
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.EXECUTE);
+                }
+                return result;
+            } catch (SQLException e) {
+                throw new SQLException("Exception executing SQL statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                releasePreparedStatement(c, p, pstmt, reusable);
+            }
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
         }
     }
 
-    public boolean execute(Connection c) throws SQLException {
-        P params = null;
+    public List<R> executeQuery(Connection c) throws SQLException {
+        // It could be just the placeholder parameters class
+        if (NoP.class.equals(paramsClass)) {
+            return executeQuery(c, null);
+        }
+
+        return executeQuery(c, constructParameters());
+    }
+
+    /**
+     * Executes the query and reads all of the results into a list. Statements
+     * marked with {@link CacheResults} give back the cached results when there
+     * are some for the same parameter values, on connections in auto-commit
+     * mode.
+     */
+    public List<R> executeQuery(Connection c, P p) throws SQLException {
+        // Inside a transaction the rows may be uncommitted, or the versions bumped before the writes commit
+        ResultCache.Region cache = ResultCache.region(getClass());
+        if (cache == null || !c.getAutoCommit()) {
+            return query(c, p);
+        }
+
+        ResultCache.Key key = cache.key(p);
+        long version = cache.version();
+
+        List<R> results = cache.get(key, version);
+        if (results == null) {
+            results = query(c, p);
+            cache.put(key, results, version);
+        }
+        return results;
+    }
+
+    private List<R> query(Connection c, P p) throws SQLException {
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.QUERY, c, p);
+
+        try {
+            boolean cursor = beginCursor(c);
+
+            PreparedStatement pstmt;
+            try {
+                pstmt = super.createPreparedStatement(c, p, x);
+            } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
+                endCursor(c, cursor, false);
+                throw new SQLException("Error preparing statement", ex);
+            }
+
+            List<R> results = new ArrayList<>();
+            boolean reusable = false;
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.EXECUTE);
+                }
+
+                int[] columns = resultColumns(rs);
+                AdaptiveFetchSize fetch = adaptiveFetch(rs);
+
+                while (fetch != null ? fetch.next() : rs.next()) {
+                    results.add(mapRow(rs, columns));
+                }
+
+                reusable = true;
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.MAP);
+                    x.rows(results.size());
+                }
+            } catch (SQLException e) {
+                throw new SQLException("Exception execution update statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                releasePreparedStatement(c, p, pstmt, reusable);
+                endCursor(c, cursor, reusable);
+            }
+
+            return results;
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
+        }
+    }
+
+    /**
+     * Executes the query and hands each row to the consumer without keeping
+     * a list of the results. Only one result object is created. It is filled
+     * in again for each row, so nothing is allocated per row for consumers
+     * that copy or aggregate the fields straight away.
+     *
+     * <pre>
+     * long[] total = new long[1];
+     * SALES.executeQuery(dbConn, params, sale -&gt; total[0] += sale.amount);
+     * </pre>
+     *
+     * <p>
+     * An exception from the consumer stops the query. Statements without
+     * parameters pass null for them.
+     * </p>
+     *
+     * @return the number of rows
+     */
+    @SuppressWarnings("unchecked")
+    public int executeQuery(Connection c, P p, RowConsumer<? super R> consumer) throws SQLException {
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.QUERY, c, p);
+
+        try {
+            boolean cursor = beginCursor(c);
+
+            PreparedStatement pstmt;
+            try {
+                pstmt = super.createPreparedStatement(c, p, x);
+            } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
+                endCursor(c, cursor, false);
+                throw new SQLException("Error preparing statement", ex);
+            }
+
+            int rows = 0;
+            boolean reusable = false;
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.EXECUTE);
+                }
+
+                int[] columns = resultColumns(rs);
+                AdaptiveFetchSize fetch = adaptiveFetch(rs);
+
+                // Results that are filled in are reused for every row
+                boolean constructed = handler.isConstructed();
+                R r = constructed ? null : constructResult();
+
+                while (fetch != null ? fetch.next() : rs.next()) {
+                    if (constructed) {
+                        r = (R) handler.row(statementOuter, rs, columns);
+                    } else {
+                        handler.result(r, rs, columns);
+                    }
+                    consumer.accept(r);
+                    rows++;
+                }
 
+                reusable = true;
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.MAP);
+                    x.rows(rows);
+                }
+            } catch (SQLException e) {
+                throw new SQLException("Exception executing query statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                releasePreparedStatement(c, p, pstmt, reusable);
+                endCursor(c, cursor, reusable);
+            }
+
+            return rows;
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
+        }
+    }
+
+    /**
+     * Executes the query with a default constructed parameters object and
+     * reads the results a column at a time.
+     *
+     * @see #executeQueryColumns(java.sql.Connection,
+     * com.github.cmcgeemac.norm.NoP)
+     */
+    public ResultColumns<R> executeQueryColumns(Connection c) throws SQLException {
         // It could be just the placeholder parameters class
         if (NoP.class.equals(paramsClass)) {
-            return execute(c, null);
+            return executeQueryColumns(c, null);
+        }
+
+        return executeQueryColumns(c, constructParameters());
+    }
+
+    /**
+     * Executes the query and reads the results into primitive arrays, one for
+     * each field of the results class, instead of creating a result object for
+     * every row. Large numeric results take several times less memory this
+     * way, and there is nothing to collect for each row afterwards.
+     *
+     * @see ResultColumns
+     */
+    public ResultColumns<R> executeQueryColumns(Connection c, P p) throws SQLException {
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.QUERY, c, p);
+
+        try {
+            boolean cursor = beginCursor(c);
+
+            PreparedStatement pstmt;
+            try {
+                pstmt = super.createPreparedStatement(c, p, x);
+            } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
+                endCursor(c, cursor, false);
+                throw new SQLException("Error preparing statement", ex);
+            }
+
+            ResultColumns<R> results;
+            boolean reusable = false;
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.EXECUTE);
+                }
+
+                results = new ResultColumns<>(metadata.resultClass, handler, rs, hints.initialFetchSize());
+                AdaptiveFetchSize fetch = adaptiveFetch(rs);
+
+                while (fetch != null ? fetch.next() : rs.next()) {
+                    results.read(rs);
+                }
+
+                reusable = true;
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.MAP);
+                    x.rows(results.size());
+                }
+            } catch (SQLException e) {
+                throw new SQLException("Exception executing query statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                releasePreparedStatement(c, p, pstmt, reusable);
+                endCursor(c, cursor, reusable);
+            }
+
+            return results.finish();
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
+        }
+    }
+
+    /**
+     * Executes the query asynchronously with a default constructed parameters
+     * object.
+     *
+     * @see #executeQueryAsync(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<List<R>> executeQueryAsync(DataSource ds) {
+        return AsyncExecution.supply(AsyncExecution.getDefaultExecutor(), () -> {
+            try (Connection c = ds.getConnection()) {
+                return executeQuery(c);
+            }
+        });
+    }
+
+    /**
+     * Executes the query asynchronously on the default executor.
+     *
+     * @see #executeQueryAsync(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<List<R>> executeQueryAsync(DataSource ds, P p) {
+        return executeQueryAsync(ds, p, AsyncExecution.getDefaultExecutor());
+    }
+
+    /**
+     * Executes the query asynchronously on the executor. Getting a connection
+     * from the data source is part of the task, and the connection is closed
+     * again once the results have been read, so independent queries can run
+     * at the same time without the caller handling the connections.
+     *
+     * <pre>
+     * CompletableFuture&lt;List&lt;Order&gt;&gt; orders = ORDERS.executeQueryAsync(ds, orderParams);
+     * CompletableFuture&lt;List&lt;Item&gt;&gt; items = ITEMS.executeQueryAsync(ds, itemParams);
+     * render(orders.join(), items.join());
+     * </pre>
+     *
+     * <p>
+     * The future completes exceptionally with the {@link SQLException} if the
+     * query fails.
+     * </p>
+     */
+    public CompletableFuture<List<R>> executeQueryAsync(DataSource ds, P p, Executor executor) {
+        return AsyncExecution.supply(executor, () -> {
+            try (Connection c = ds.getConnection()) {
+                return executeQuery(c, p);
+            }
+        });
+    }
+
+    /**
+     * Executes the query with a default constructed parameters object and
+     * produces the results lazily.
+     *
+     * @see #executeQueryStream(java.sql.Connection,
+     * com.github.cmcgeemac.norm.NoP)
+     */
+    public Stream<R> executeQueryStream(Connection c) throws SQLException {
+        // It could be just the placeholder parameters class
+        if (NoP.class.equals(paramsClass)) {
+            return executeQueryStream(c, null);
         }
 
-        if (paramsCtor == null) {
-            throw new IllegalArgumentException("No default constructor found for parameters object. You must create a default constructor or provide a parameters object to the execute method.");
+        return executeQueryStream(c, constructParameters());
+    }
+
+    /**
+     * Executes the query and produces the results lazily as a stream. Rows are
+     * only read from the result set and mapped to result objects as the stream
+     * is consumed, so large results are never held in memory all at once.
+     *
+     * <p>
+     * The result set is closed and the prepared statement released once the
+     * last row has been consumed or when the stream is closed. Closing the stream before
+     * all of the rows have been read, such as after a
+     * {@link Stream#limit(long)} or {@link Stream#findFirst()}, cancels the
+     * statement so that the database stops sending rows. Use a
+     * try-with-resources block so that this always happens.
+     * </p>
+     *
+     * <pre>
+     * try (Stream&lt;r&gt; results = STATEMENT.executeQueryStream(dbConn, params)) {
+     *   results.limit(10).forEach( r -&gt; System.out.println(r.foo) );
+     * }
+     * </pre>
+     *
+     * <p>
+     * Errors reading rows are thrown from the stream operations as an
+     * {@link IllegalStateException} with the {@link SQLException} as the cause.
+     * </p>
+     */
+    public Stream<R> executeQueryStream(Connection c, P p) throws SQLException {
+        ResultSpliterator<R> results = openResults(c, p, 0);
+        return StreamSupport.stream(results, false).onClose(results::close);
+    }
+
+    /**
+     * Executes the query with a default constructed parameters object and
+     * folds the rows into parents with their children.
+     *
+     * @see #executeQueryGrouped(java.sql.Connection,
+     * com.github.cmcgeemac.norm.NoP, java.util.function.Function,
+     * java.util.function.Function, java.util.function.BiConsumer)
+     */
+    public <G> Stream<G> executeQueryGrouped(Connection c, Function<? super R, ?> key, Function<? super R, ? extends G> parent,
+            BiConsumer<? super G, ? super R> child) throws SQLException {
+        // It could be just the placeholder parameters class
+        if (NoP.class.equals(paramsClass)) {
+            return executeQueryGrouped(c, null, key, parent, child);
         }
+
+        return executeQueryGrouped(c, constructParameters(), key, parent, child);
+    }
+
+    /**
+     * Executes a query that joins parents to their children and produces the
+     * parents lazily as a stream, each with all of its children. The rows are
+     * mapped to result objects as usual, and consecutive rows with the same
+     * key are folded into one parent: the parent is created from the first of
+     * them and every one of them, the first included, is added to it as a
+     * child. The query has to be ordered by the key of the parent so that its
+     * rows come together.
+     *
+     * <pre>
+     * try (Stream&lt;Order&gt; orders = ORDERS_WITH_LINES.executeQueryGrouped(dbConn, params,
+     *         r -&gt; r.orderId,
+     *         r -&gt; new Order(r.orderId, r.customer),
+     *         (order, r) -&gt; order.lines.add(new Line(r.product, r.quantity)))) {
+     *   orders.forEach(writer::write);
+     * }
+     * </pre>
+     *
+     * <p>
+     * Only the rows of one parent are held at a time, so the results don't
+     * have to fit in memory. The stream is closed like the one from
+     * {@link #executeQueryStream(java.sql.Connection, com.github.cmcgeemac.norm.NoP)}.
+     * For a LEFT JOIN the child function gets the row of a parent without
+     * children too, with nulls in the columns of the child. The parent
+     * function must not return null, which fails the stream with an
+     * IllegalStateException.
+     * </p>
+     */
+    public <G> Stream<G> executeQueryGrouped(Connection c, P p, Function<? super R, ?> key, Function<? super R, ? extends G> parent,
+            BiConsumer<? super G, ? super R> child) throws SQLException {
+        ResultSpliterator<R> results = openResults(c, p, 0);
+        return StreamSupport.stream(new GroupedSpliterator<R, G>(results, key, parent, child), false).onClose(results::close);
+    }
+
+    /**
+     * Publishes the results of the query with a default constructed
+     * parameters object, on the default executor.
+     *
+     * @see #executeQueryPublisher(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public NormFlow.Publisher<R> executeQueryPublisher(DataSource ds) {
+        return executeQueryPublisher(ds, NoP.class.equals(paramsClass) ? null : constructParameters());
+    }
+
+    /**
+     * Publishes the results of the query on the default executor.
+     *
+     * @see #executeQueryPublisher(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public NormFlow.Publisher<R> executeQueryPublisher(DataSource ds, P p) {
+        return executeQueryPublisher(ds, p, AsyncExecution.getDefaultExecutor());
+    }
+
+    /**
+     * Publishes the results of the query with back pressure. Every
+     * subscription gets a connection from the data source and runs the query
+     * on the executor, then reads and maps only as many rows as the
+     * subscriber has requested. The JDBC fetch size follows the requests, up
+     * to {@value ResultPublisher#MAX_FETCH_SIZE} rows, so a subscriber asking
+     * for a few rows at a time doesn't pull a large block from the database.
+     *
+     * <pre>
+     * ORDERS.executeQueryPublisher(ds, params).subscribe(new NormFlow.Subscriber&lt;Order&gt;() {
+     *   NormFlow.Subscription s;
+     *   public void onSubscribe(NormFlow.Subscription s) { this.s = s; s.request(100); }
+     *   public void onNext(Order o) { if (send(o)) s.request(1); else s.cancel(); }
+     *   public void onError(Throwable t) { log(t); }
+     *   public void onComplete() { done(); }
+     * });
+     * </pre>
+     *
+     * <p>
+     * Cancelling the subscription cancels the statement, so that the database
+     * stops sending rows, and closes the results and the connection. A failed
+     * query is signalled with the {@link SQLException}.
+     * </p>
+     *
+     * @see NormFlow
+     */
+    public NormFlow.Publisher<R> executeQueryPublisher(DataSource ds, P p, Executor executor) {
+        return new ResultPublisher<>(ds::getConnection, true, (c, fetchSize) -> openResults(c, p, fetchSize), executor);
+    }
+
+    /**
+     * Publishes the results of the query using a connection that the caller
+     * keeps open until the subscription completes, fails or is cancelled.
+     *
+     * @see #executeQueryPublisher(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public NormFlow.Publisher<R> executeQueryPublisher(Connection c, P p, Executor executor) {
+        return new ResultPublisher<>(() -> c, false, (conn, fetchSize) -> openResults(conn, p, fetchSize), executor);
+    }
+
+    /**
+     * Runs the query over each of the key ranges at once on the default
+     * executor.
+     *
+     * @see #executeQueryPartitioned(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, com.github.cmcgeemac.norm.KeyRanges,
+     * java.util.concurrent.Executor)
+     */
+    public Stream<R> executeQueryPartitioned(DataSource ds, P p, KeyRanges ranges) throws SQLException {
+        return executeQueryPartitioned(ds, p, ranges, AsyncExecution.getDefaultExecutor());
+    }
+
+    /**
+     * Runs the query over each of the key ranges at once, each on its own
+     * connection from the data source, and merges the results into one
+     * stream. The range of the key is added to the WHERE clause of the query,
+     * so only a single SELECT can be partitioned. Large extracts can then use
+     * several of the database's cores and disks instead of one.
+     *
+     * <pre>
+     * try (Stream&lt;Order&gt; orders = ORDERS.executeQueryPartitioned(ds, params,
+     *         KeyRanges.of("o.id", minId, maxId, 8))) {
+     *   orders.forEach(writer::write);
+     * }
+     * </pre>
+     *
+     * <p>
+     * The results come in whatever order the ranges produce them, or in the
+     * order of the ranges if they are {@link KeyRanges#ordered()}. An ORDER BY
+     * in the query only orders the results within each range. Closing the
+     * stream early cancels the queries that are still running. Use a
+     * try-with-resources block so that this always happens. Errors from any of
+     * the ranges are thrown from the stream operations as with
+     * {@link #executeQueryStream(java.sql.Connection, com.github.cmcgeemac.norm.NoP)}.
+     * </p>
+     */
+    public Stream<R> executeQueryPartitioned(DataSource ds, P p, KeyRanges ranges, Executor executor) throws SQLException {
+        PartitionedQuery.Rewrite rewrite = PartitionedQuery.rewrite(sql(p), ranges.getColumn());
+
+        int n = ranges.size();
+        List<ResultPublisher.Opener<R>> openers = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String sql = i == n - 1 ? rewrite.lastSQL : rewrite.sql;
+            Object lower = ranges.bound(i);
+            Object upper = ranges.bound(i + 1);
+            openers.add((c, fetchSize) -> openPartition(c, p, rewrite, sql, lower, upper));
+        }
+
+        PartitionedQuery<R> results = new PartitionedQuery<>(ds, openers, ranges.isOrdered(), executor);
+        int characteristics = Spliterator.NONNULL | (ranges.isOrdered() ? Spliterator.ORDERED : 0);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results, characteristics), false).onClose(results::close);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultSpliterator<R> openPartition(Connection c, P p, PartitionedQuery.Rewrite rewrite, String sql, Object lower, Object upper) throws SQLException {
+        boolean cursor = beginCursor(c);
+
+        PreparedStatement pstmt;
         try {
-            if (paramsCtor.getParameterCount() == 1) {
-                params = (P) paramsCtor.newInstance(statementOuter);
-            } else {
-                params = (P) paramsCtor.newInstance();
+            pstmt = prepare(c, sql);
+        } catch (SQLException ex) {
+            endCursor(c, cursor, false);
+            throw ex;
+        }
+
+        ResultSet rs = null;
+        int[] columns;
+        AdaptiveFetchSize fetch;
+        try {
+            handler.setParameters(p, rewrite.shifted ? PartitionedQuery.shift(pstmt, rewrite.offset) : pstmt, c);
+            pstmt.setObject(rewrite.offset + 1, lower);
+            pstmt.setObject(rewrite.offset + 2, upper);
+
+            rs = pstmt.executeQuery();
+            columns = resultColumns(rs);
+            fetch = adaptiveFetch(rs);
+        } catch (SQLException e) {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ex) {
+                    e.addSuppressed(ex);
+                }
             }
-        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | InvocationTargetException e) {
-            throw new IllegalStateException("Unable to construct parameters instance", e);
+            release(c, sql, pstmt, false);
+            endCursor(c, cursor, false);
+            throw new SQLException("Exception executing query statement: " + sql + "; " + e.getMessage(), e);
         }
 
-        return execute(c, params);
+        return new ResultSpliterator<>(pstmt, rs, fetch, r -> mapRow(r, columns), reusable -> {
+            release(c, sql, pstmt, reusable);
+            endCursor(c, cursor, reusable);
+        });
     }
 
-    public boolean execute(Connection c, P p) throws SQLException {
+    private ResultSpliterator<R> openResults(Connection c, P p, int fetchSize) throws SQLException {
+        boolean cursor = beginCursor(c);
+
         PreparedStatement pstmt;
         try {
             pstmt = super.createPreparedStatement(c, p);
         } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
+            endCursor(c, cursor, false);
             throw new SQLException("Error preparing statement", ex);
         }
 
+        ResultSet rs;
+        int[] columns;
+        AdaptiveFetchSize fetch;
+        try {
+            if (fetchSize > 0) {
+                pstmt.setFetchSize(fetchSize);
+            }
+            rs = pstmt.executeQuery();
+        } catch (SQLException e) {
+            releasePreparedStatement(c, p, pstmt, false);
+            endCursor(c, cursor, false);
+            throw new SQLException("Exception executing query statement: " + safeSQL + "; " + e.getMessage(), e);
+        }
+
         try {
-            return pstmt.execute();
+            columns = resultColumns(rs);
+
+            // A fetch size from the caller follows the caller's demand instead
+            fetch = fetchSize > 0 ? null : adaptiveFetch(rs);
         } catch (SQLException e) {
-            throw new SQLException("Exception executing SQL statement: " + safeSQL + "; " + e.getMessage(), e);
+            try {
+                rs.close();
+            } catch (SQLException ex) {
+                e.addSuppressed(ex);
+            }
+            releasePreparedStatement(c, p, pstmt, false);
+            endCursor(c, cursor, false);
+            throw new SQLException("Exception executing query statement: " + safeSQL + "; " + e.getMessage(), e);
         }
+
+        return new ResultSpliterator<>(pstmt, rs, fetch, r -> mapRow(r, columns), reusable -> {
+            // Cached statements shouldn't keep the fetch size of this query
+            if (fetchSize > 0 && reusable) {
+                try {
+                    pstmt.setFetchSize(0);
+                } catch (SQLException ex) {
+                    reusable = false;
+                }
+            }
+            releasePreparedStatement(c, p, pstmt, reusable);
+            endCursor(c, cursor, reusable);
+        });
     }
 
     @SuppressWarnings("unchecked")
-    public List<R> executeQuery(Connection c) throws SQLException {
-        P params = null;
+    private int[] resultColumns(ResultSet rs) throws SQLException {
+        return handler.columns(rs);
+    }
 
+    @SuppressWarnings("unchecked")
+    private R mapRow(ResultSet rs, int[] columns) {
+        R r;
+        try {
+            r = (R) handler.row(statementOuter, rs, columns);
+        } catch (SQLException ex) {
+            // TODO figure out exception strategy
+            Logger.getLogger(NormStatement.class.getName()).log(Level.SEVERE, null, ex);
+
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+
+        return r;
+    }
+
+    public int executeUpdate(Connection c) throws SQLException {
         // It could be just the placeholder parameters class
         if (NoP.class.equals(paramsClass)) {
-            return executeQuery(c, null);
+            return executeUpdate(c, null);
         }
 
-        if (paramsCtor == null) {
-            throw new IllegalArgumentException("No default constructor found for parameters object. You must create a default constructor or provide a parameters object to the execute method.");
-        }
+        return executeUpdate(c, constructParameters());
+    }
+
+    public int executeUpdate(Connection c, P p) throws SQLException {
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.UPDATE, c, p);
+
         try {
-            if (paramsCtor.getParameterCount() == 1) {
-                params = (P) paramsCtor.newInstance(statementOuter);
-            } else {
-                params = (P) paramsCtor.newInstance();
+            PreparedStatement pstmt;
+            try {
+                pstmt = createPreparedStatement(c, p, x);
+            } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
+                throw new SQLException("Error preparing statement", ex);
+            }
+
+            boolean reusable = false;
+            try {
+                int updates = pstmt.executeUpdate();
+                reusable = true;
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.EXECUTE);
+                    x.updates(updates);
+                }
+                return updates;
+            } catch (SQLException e) {
+                throw new SQLException("Exception execution update statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                releasePreparedStatement(c, p, pstmt, reusable);
             }
-        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | InvocationTargetException e) {
-            throw new IllegalStateException("Unable to construct parameters instance", e);
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
         }
+    }
 
-        return executeQuery(c, params);
+    /**
+     * Executes the update asynchronously with a default constructed parameters
+     * object.
+     *
+     * @see #executeUpdateAsync(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(DataSource ds) {
+        return AsyncExecution.supply(AsyncExecution.getDefaultExecutor(), () -> {
+            try (Connection c = ds.getConnection()) {
+                return executeUpdate(c);
+            }
+        });
     }
 
-    public List<R> executeQuery(Connection c, P p) throws SQLException {
+    /**
+     * Executes the update asynchronously on the default executor.
+     *
+     * @see #executeUpdateAsync(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(DataSource ds, P p) {
+        return executeUpdateAsync(ds, p, AsyncExecution.getDefaultExecutor());
+    }
 
-        PreparedStatement pstmt;
-        try {
-            pstmt = super.createPreparedStatement(c, p);
-        } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
-            throw new SQLException("Error preparing statement", ex);
+    /**
+     * Executes the update asynchronously on the executor with a connection
+     * from the data source, which is closed again afterwards.
+     *
+     * @return The future number of updated rows.
+     * @see #executeQueryAsync(javax.sql.DataSource,
+     * com.github.cmcgeemac.norm.NoP, java.util.concurrent.Executor)
+     */
+    public CompletableFuture<Integer> executeUpdateAsync(DataSource ds, P p, Executor executor) {
+        return AsyncExecution.supply(executor, () -> {
+            try (Connection c = ds.getConnection()) {
+                return executeUpdate(c, p);
+            }
+        });
+    }
+
+    /**
+     * Executes the statement once for each of the parameters objects using
+     * JDBC batches of {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @see #executeBatch(java.sql.Connection, java.lang.Iterable, int)
+     */
+    public int[] executeBatch(Connection c, Iterable<P> params) throws SQLException {
+        return executeBatch(c, params, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Executes the statement once for each of the parameters objects in the
+     * stream using JDBC batches of {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @see #executeBatch(java.sql.Connection, java.lang.Iterable, int)
+     */
+    public int[] executeBatch(Connection c, Stream<P> params) throws SQLException {
+        return executeBatch(c, params::iterator, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Executes the statement once for each of the parameters objects in the
+     * stream using JDBC batches of the provided size.
+     *
+     * @see #executeBatch(java.sql.Connection, java.lang.Iterable, int)
+     */
+    public int[] executeBatch(Connection c, Stream<P> params, int batchSize) throws SQLException {
+        return executeBatch(c, params::iterator, batchSize);
+    }
+
+    /**
+     * Executes the statement once for each of the parameters objects. The
+     * statement is prepared once and the parameters are sent to the database in
+     * batches of up to batchSize sets so that many rows can be inserted or
+     * updated with only a few round trips. The parameters are consumed as the
+     * batches are sent, so they can be produced lazily.
+     *
+     * <p>
+     * Batches that have already been sent are not rolled back if a later one
+     * fails. Use a transaction on the connection if all of them need to
+     * succeed together.
+     * </p>
+     *
+     * <p>
+     * Statements with collection parameters can't be batched.
+     * </p>
+     *
+     * @return The update counts for each of the parameters objects in order, as
+     * reported by the JDBC driver.
+     */
+    public int[] executeBatch(Connection c, Iterable<P> params, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        if (handler.getInList() != null) {
+            throw new SQLException("Statements with collection parameters can't be batched because the SQL depends on the collection sizes: " + safeSQL);
         }
 
-        List<R> results = new ArrayList<>();
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.BATCH, c, null);
 
-        try (ResultSet rs = pstmt.executeQuery()) {
+        try {
+            PreparedStatement pstmt = createPreparedStatement(c);
+            if (x != null) {
+                x.mark(StatementExecution.Phase.PREPARE);
+            }
 
-            while (rs.next()) {
-                R r = constructResult();
-                if (handler != null) {
-                    try {
-                        handler.result(r, rs);
-                    } catch (SQLException ex) {
-                        // TODO figure out exception strategy
-                        Logger.getLogger(NormStatement.class.getName()).log(Level.SEVERE, null, ex);
+            IntStream.Builder counts = IntStream.builder();
+            long updates = 0;
+            int pending = 0;
+            boolean reusable = false;
 
-                        throw new IllegalStateException(ex.getMessage(), ex);
+            try {
+                for (P p : params) {
+                    bindParameters(c, pstmt, p);
+                    pstmt.addBatch();
+                    if (x != null) {
+                        x.mark(StatementExecution.Phase.BIND);
                     }
-                } else {
-                    for (Field f : resultClass.getDeclaredFields()) {
-                        f.setAccessible(true);
-
-                        try {
-                            Object v;
-                            String name = f.getName();
-
-                            // TODO blobs, clobs
-                            if (f.getType() == int.class || f.getType() == Integer.class) {
-                                v = rs.getInt(name);
-                                if (rs.wasNull() && f.getType() == Integer.class) {
-                                    v = null;
-                                }
-                            } else if (f.getType() == float.class || f.getType() == Float.class) {
-                                v = rs.getFloat(name);
-                                if (rs.wasNull() && f.getType() == Float.class) {
-                                    v = null;
-                                }
-                            } else if (f.getType() == double.class || f.getType() == Double.class) {
-                                v = rs.getDouble(name);
-                                if (rs.wasNull() && f.getType() == Double.class) {
-                                    v = null;
-                                }
-                            } else if (f.getType() == boolean.class || f.getType() == Boolean.class) {
-                                v = rs.getBoolean(name);
-                                if (rs.wasNull() && f.getType() == Boolean.class) {
-                                    v = null;
-                                }
-                            } else if (f.getType() == String.class) {
-                                v = rs.getString(name);
-                            } else if (f.getType() == Date.class) {
-                                v = rs.getDate(name);
-                            } else if (f.getType() == Time.class) {
-                                v = rs.getTime(name);
-                            } else if (f.getType() == Timestamp.class) {
-                                v = rs.getTimestamp(name);
-                            } else if (f.getType() == BigDecimal.class) {
-                                v = rs.getBigDecimal(name);
-                            } else if (f.getType() == short.class || f.getType() == Short.class) {
-                                v = rs.getShort(name);
-                                if (rs.wasNull() && f.getType() == Short.class) {
-                                    v = null;
-                                }
-                            } else if (f.getType() == URL.class) {
-                                v = rs.getURL(name);
-                            } else if (f.getType().isArray()) {
-                                Array a = rs.getArray(name);
-                                v = a.getArray();
-                            } else {
-                                v = rs.getObject(name);
-                            }
-
-                            f.set(r, v);
-                        } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
-                            // TODO figure out exception strategy
-                            Logger.getLogger(NormStatement.class.getName()).log(Level.SEVERE, null, ex);
-
-                            throw new IllegalStateException(ex.getMessage(), ex);
+
+                    if (++pending == batchSize) {
+                        updates += addCounts(counts, pstmt.executeBatch());
+                        pending = 0;
+                        if (x != null) {
+                            x.mark(StatementExecution.Phase.EXECUTE);
                         }
                     }
                 }
 
-                results.add(r);
+                if (pending > 0) {
+                    updates += addCounts(counts, pstmt.executeBatch());
+                    if (x != null) {
+                        x.mark(StatementExecution.Phase.EXECUTE);
+                    }
+                }
 
+                reusable = true;
+                if (x != null) {
+                    x.updates(updates);
+                }
+            } catch (IllegalAccessException | IllegalArgumentException ex) {
+                throw new SQLException("Error preparing statement", ex);
+            } catch (SQLException e) {
+                throw new SQLException("Exception executing batch statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                releasePreparedStatement(c, pstmt, reusable);
             }
-        } catch (SQLException e) {
-            throw new SQLException("Exception execution update statement: " + safeSQL + "; " + e.getMessage(), e);
-        }
 
-        return results;
+            return counts.build().toArray();
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    public int executeUpdate(Connection c) throws SQLException {
+    /**
+     * Inserts a row for each of the parameters objects using statements of up
+     * to {@link #DEFAULT_MAX_PARAMETERS} placeholders.
+     *
+     * @see #executeBulkInsert(java.sql.Connection, java.lang.Iterable, int)
+     */
+    public int executeBulkInsert(Connection c, Iterable<P> params) throws SQLException {
+        return executeBulkInsert(c, params, DEFAULT_MAX_PARAMETERS);
+    }
 
-        P params = null;
+    /**
+     * Inserts a row for each of the parameters objects in the stream using
+     * statements of up to {@link #DEFAULT_MAX_PARAMETERS} placeholders.
+     *
+     * @see #executeBulkInsert(java.sql.Connection, java.lang.Iterable, int)
+     */
+    public int executeBulkInsert(Connection c, Stream<P> params) throws SQLException {
+        return executeBulkInsert(c, params::iterator, DEFAULT_MAX_PARAMETERS);
+    }
 
-        // It could be just the placeholder parameters class
-        if (NoP.class.equals(paramsClass)) {
-            return executeUpdate(c, null);
+    /**
+     * Inserts a row for each of the parameters objects. A statement that
+     * inserts a single row of values, such as
+     * {@code INSERT INTO foo (a, b) VALUES (:a, :b)}, is rewritten to insert
+     * many rows at once with {@code VALUES (?, ?), (?, ?), ...}. Each statement
+     * has as many rows as fit in maxParameters placeholders, up to 1000. The
+     * rows left over at the end are inserted in chunks of powers of two, so
+     * that only a few different statements are ever prepared.
+     *
+     * <p>
+     * Statements that can't be rewritten, such as an INSERT from a SELECT,
+     * fall back to {@link #executeBatch(java.sql.Connection, java.lang.Iterable)}.
+     * As with batches, the chunks that have already been inserted are not
+     * rolled back if a later one fails.
+     * </p>
+     *
+     * @return the number of rows inserted, as reported by the JDBC driver, or
+     * {@link Integer#MAX_VALUE} if that doesn't fit in an int
+     */
+    public int executeBulkInsert(Connection c, Iterable<P> params, int maxParameters) throws SQLException {
+        if (maxParameters < 1) {
+            throw new IllegalArgumentException("The maximum parameters must be at least 1: " + maxParameters);
         }
 
-        if (paramsCtor == null) {
-            throw new IllegalArgumentException("No default constructor found for parameters object. You must create a default constructor or provide a parameters object to the execute method.");
+        MultiRowInsert insert = metadata.multiRowInsert;
+        if (insert == null) {
+            return count(addCounts(IntStream.builder(), executeBatch(c, params)));
         }
 
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.BATCH, c, null);
+
         try {
-            if (paramsCtor.getParameterCount() == 1) {
-                params = (P) paramsCtor.newInstance(statementOuter);
-            } else {
-                params = (P) paramsCtor.newInstance();
+            int chunkSize = Math.max(1, Math.min(MultiRowInsert.MAX_ROWS, maxParameters / insert.width));
+            List<P> chunk = new ArrayList<>(Math.min(chunkSize, 64));
+            long updates = 0;
+
+            for (P p : params) {
+                chunk.add(p);
+                if (chunk.size() == chunkSize) {
+                    updates += insertRows(c, insert, chunk, 0, chunkSize, x);
+                    chunk.clear();
+                }
             }
-        } catch (IllegalAccessException | IllegalArgumentException | InstantiationException | InvocationTargetException e) {
-            throw new IllegalStateException("Unable to construct parameters instance", e);
+
+            for (int from = 0; from < chunk.size();) {
+                int rows = Integer.highestOneBit(chunk.size() - from);
+                updates += insertRows(c, insert, chunk, from, rows, x);
+                from += rows;
+            }
+
+            if (x != null) {
+                x.updates(updates);
+            }
+            return count(updates);
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
         }
+    }
 
-        return executeUpdate(c, params);
+    @SuppressWarnings("unchecked")
+    private int insertRows(Connection c, MultiRowInsert insert, List<P> chunk, int from, int rows, StatementExecution x) throws SQLException {
+        String sql = insert.sql(rows);
+        PreparedStatement pstmt = prepare(c, sql);
+        if (x != null) {
+            x.mark(StatementExecution.Phase.PREPARE);
+        }
+
+        boolean reusable = false;
+        try {
+            int idx = 1;
+            for (int i = from; i < from + rows; i++) {
+                idx = handler.setParameters(chunk.get(i), pstmt, c, idx);
+            }
+            if (x != null) {
+                x.mark(StatementExecution.Phase.BIND);
+            }
+
+            int count = pstmt.executeUpdate();
+            reusable = true;
+            if (x != null) {
+                x.mark(StatementExecution.Phase.EXECUTE);
+            }
+            return count;
+        } catch (SQLException e) {
+            throw new SQLException("Exception executing insert statement: " + sql + "; " + e.getMessage(), e);
+        } finally {
+            release(c, sql, pstmt, reusable);
+        }
     }
 
-    public int executeUpdate(Connection c, P p) throws SQLException {
-        PreparedStatement pstmt;
+    /**
+     * Executes an insert and reads back the keys that the database generated
+     * for it in the same round trip. The keys are written into the fields of
+     * the parameters marked with {@link GeneratedKey}, and each row of keys is
+     * also mapped into a result for statements with results.
+     *
+     * <pre>
+     * class ParentParams implements NoP { String name; &#64;GeneratedKey long id; }
+     *
+     * INSERT_PARENT.executeInsert(dbConn, parent);
+     * child.parentId = parent.id;
+     * </pre>
+     *
+     * <p>
+     * When none of the fields are marked, the driver chooses the key columns.
+     * </p>
+     *
+     * @return the generated keys mapped into results, which is empty for
+     * statements without results
+     */
+    public List<R> executeInsert(Connection c, P p) throws SQLException {
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.UPDATE, c, p);
+
         try {
-            pstmt = createPreparedStatement(c, p);
-        } catch (IllegalAccessException | IllegalArgumentException | SQLException ex) {
-            throw new SQLException("Error preparing statement", ex);
+            String sql = sql(p);
+            String[] keys = metadata.generatedKeys.columns;
+            PreparedStatement pstmt = prepare(c, sql, keys);
+            if (x != null) {
+                x.mark(StatementExecution.Phase.PREPARE);
+            }
+
+            List<R> results = new ArrayList<>();
+            boolean reusable = false;
+            try {
+                bindParameters(c, pstmt, p);
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.BIND);
+                }
+
+                int updates = pstmt.executeUpdate();
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.EXECUTE);
+                    x.updates(updates);
+                }
+
+                readKeys(pstmt, Collections.singletonList(p), results);
+                reusable = true;
+                if (x != null) {
+                    x.mark(StatementExecution.Phase.MAP);
+                    x.rows(results.size());
+                }
+            } catch (IllegalAccessException | IllegalArgumentException ex) {
+                throw new SQLException("Error preparing statement", ex);
+            } catch (SQLException e) {
+                throw new SQLException("Exception executing insert statement: " + sql + "; " + e.getMessage(), e);
+            } finally {
+                release(c, sql, keys, pstmt, reusable);
+            }
+
+            return results;
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
+        }
+    }
+
+    /**
+     * Executes an insert for each of the parameters objects using JDBC
+     * batches of {@link #DEFAULT_BATCH_SIZE}, reading back the generated keys.
+     *
+     * @see #executeInsertBatch(java.sql.Connection, java.lang.Iterable, int)
+     */
+    public List<R> executeInsertBatch(Connection c, Iterable<P> params) throws SQLException {
+        return executeInsertBatch(c, params, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Executes an insert for each of the parameters objects in JDBC batches of
+     * up to batchSize, reading back the keys that the database generated after
+     * each batch. The keys are written into the fields of the parameters
+     * marked with {@link GeneratedKey}, in the order of the parameters, and
+     * mapped into results for statements with results.
+     *
+     * <p>
+     * Not every driver gives back generated keys for batches. Those that
+     * don't give back fewer keys than there are parameters, leaving the
+     * fields of the rest alone.
+     * </p>
+     *
+     * @return the generated keys mapped into results, which is empty for
+     * statements without results
+     * @see #executeInsert(java.sql.Connection, com.github.cmcgeemac.norm.NoP)
+     */
+    public List<R> executeInsertBatch(Connection c, Iterable<P> params, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1: " + batchSize);
+        }
+        if (handler.getInList() != null) {
+            throw new SQLException("Statements with collection parameters can't be batched because the SQL depends on the collection sizes: " + safeSQL);
         }
 
+        StatementExecution x = StatementListeners.start(this, StatementExecution.Kind.BATCH, c, null);
+
         try {
-            return pstmt.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException("Exception execution update statement: " + safeSQL + "; " + e.getMessage(), e);
+            String[] keys = metadata.generatedKeys.columns;
+            PreparedStatement pstmt = prepare(c, safeSQL, keys);
+            if (x != null) {
+                x.mark(StatementExecution.Phase.PREPARE);
+            }
+
+            List<R> results = new ArrayList<>();
+            List<P> pending = new ArrayList<>(Math.min(batchSize, 64));
+            long updates = 0;
+            boolean reusable = false;
+
+            try {
+                for (P p : params) {
+                    bindParameters(c, pstmt, p);
+                    pstmt.addBatch();
+                    pending.add(p);
+                    if (x != null) {
+                        x.mark(StatementExecution.Phase.BIND);
+                    }
+
+                    if (pending.size() == batchSize) {
+                        updates += insertBatch(pstmt, pending, results, x);
+                    }
+                }
+
+                if (!pending.isEmpty()) {
+                    updates += insertBatch(pstmt, pending, results, x);
+                }
+
+                reusable = true;
+                if (x != null) {
+                    x.updates(updates);
+                    x.rows(results.size());
+                }
+            } catch (IllegalAccessException | IllegalArgumentException ex) {
+                throw new SQLException("Error preparing statement", ex);
+            } catch (SQLException e) {
+                throw new SQLException("Exception executing batch statement: " + safeSQL + "; " + e.getMessage(), e);
+            } finally {
+                release(c, safeSQL, keys, pstmt, reusable);
+            }
+
+            return results;
+        } catch (SQLException | RuntimeException | Error e) {
+            if (x != null) {
+                x.failed(e);
+            }
+            throw e;
+        } finally {
+            ResultCache.written(getClass());
+            StatementListeners.finish(x);
+        }
+    }
+
+    private long insertBatch(PreparedStatement pstmt, List<P> pending, List<R> results, StatementExecution x) throws SQLException {
+        long updates = addCounts(IntStream.builder(), pstmt.executeBatch());
+        if (x != null) {
+            x.mark(StatementExecution.Phase.EXECUTE);
+        }
+
+        readKeys(pstmt, pending, results);
+        pending.clear();
+        if (x != null) {
+            x.mark(StatementExecution.Phase.MAP);
+        }
+        return updates;
+    }
+
+    /**
+     * Reads the generated keys into the parameters, one row for each in
+     * order, and into results if there are any.
+     */
+    private void readKeys(PreparedStatement pstmt, List<P> params, List<R> results) throws SQLException {
+        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+            if (rs == null) {
+                return;
+            }
+
+            boolean mapped = metadata.resultCtor != null || handler.isConstructed();
+            int[] columns = mapped ? resultColumns(rs) : null;
+            for (int i = 0; rs.next(); i++) {
+                if (i < params.size()) {
+                    metadata.generatedKeys.read(rs, params.get(i));
+                }
+                if (mapped) {
+                    results.add(mapRow(rs, columns));
+                }
+            }
+        }
+    }
+
+    /**
+     * Narrows a count of rows that has already been written, where throwing
+     * would hide that the rows were inserted.
+     */
+    private static int count(long updates) {
+        return (int) Math.min(updates, Integer.MAX_VALUE);
+    }
+
+    private static long addCounts(IntStream.Builder counts, int[] batchCounts) {
+        long updates = 0;
+        for (int count : batchCounts) {
+            counts.add(count);
+
+            // Leave out SUCCESS_NO_INFO and EXECUTE_FAILED
+            if (count > 0) {
+                updates += count;
+            }
         }
+        return updates;
     }
 }
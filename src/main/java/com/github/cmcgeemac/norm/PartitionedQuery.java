@@ -0,0 +1,290 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.sql.DataSource;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+
+/**
+ * Runs a query over several key ranges at once, each on its own connection,
+ * and merges the rows into one iterator. The rows of each range are read and
+ * mapped on the executor, with up to {@link #BUFFER} of them waiting for the
+ * consumer, so a slow consumer holds back the queries rather than filling the
+ * memory.
+ */
+final class PartitionedQuery<R> implements Iterator<R>, AutoCloseable {
+
+    static final int BUFFER = 1024;
+
+    private static final String LOWER = "norm_range_lower";
+    private static final String UPPER = "norm_range_upper";
+
+    /**
+     * A query with a range of the key added to its WHERE clause.
+     */
+    static final class Rewrite {
+
+        // The upper bound is left out for all but the last range, which includes it
+        final String sql;
+        final String lastSQL;
+
+        // The number of placeholders before the ones for the range
+        final int offset;
+
+        // Whether there are placeholders after the ones for the range
+        final boolean shifted;
+
+        private Rewrite(String sql, String lastSQL, int offset, boolean shifted) {
+            this.sql = sql;
+            this.lastSQL = lastSQL;
+            this.offset = offset;
+            this.shifted = shifted;
+        }
+    }
+
+    static Rewrite rewrite(String safeSQL, String column) throws SQLException {
+        Statement statement;
+        Expression key;
+        try {
+            statement = CCJSqlParserUtil.parse(safeSQL);
+            key = CCJSqlParserUtil.parseExpression(column);
+        } catch (JSQLParserException ex) {
+            throw new SQLException("Unable to partition the query on " + column + ": " + ex.getMessage(), ex);
+        }
+
+        if (!(statement instanceof Select) || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+            throw new SQLException("Only a single SELECT can be partitioned: " + safeSQL);
+        }
+        if (!(key instanceof Column)) {
+            throw new SQLException("The partition key must be a column: " + column);
+        }
+
+        PlainSelect select = (PlainSelect) ((Select) statement).getSelectBody();
+        GreaterThanEquals lower = new GreaterThanEquals();
+        lower.setLeftExpression(key);
+        lower.setRightExpression(new JdbcNamedParameter(LOWER));
+        MinorThan upper = new MinorThan();
+        upper.setLeftExpression(key);
+        upper.setRightExpression(new JdbcNamedParameter(UPPER));
+        AndExpression range = new AndExpression(lower, upper);
+
+        Expression where = select.getWhere();
+        select.setWhere(where == null ? range : new AndExpression(new Parenthesis(where), range));
+        String sql = statement.toString();
+
+        MinorThanEquals last = new MinorThanEquals();
+        last.setLeftExpression(key);
+        last.setRightExpression(new JdbcNamedParameter(UPPER));
+        range.setRightExpression(last);
+        String lastSQL = statement.toString();
+
+        int at = sql.indexOf(":" + LOWER);
+        List<Integer> placeholders = Util.placeholders(sql);
+        int offset = 0;
+        while (offset < placeholders.size() && placeholders.get(offset) < at) {
+            offset++;
+        }
+
+        return new Rewrite(unmark(sql), unmark(lastSQL), offset, offset < placeholders.size());
+    }
+
+    private static String unmark(String sql) {
+        return sql.replace(":" + LOWER, "?").replace(":" + UPPER, "?");
+    }
+
+    /**
+     * Wraps the statement so that the parameters after the offset are bound
+     * after the two placeholders of the range, for handlers that bind all of
+     * the parameters one after the other.
+     */
+    static PreparedStatement shift(PreparedStatement pstmt, int offset) {
+        return (PreparedStatement) Proxy.newProxyInstance(PartitionedQuery.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+            if (method.getName().startsWith("set") && args != null && args.length > 1
+                    && method.getParameterTypes()[0] == int.class && (Integer) args[0] > offset) {
+                args[0] = (Integer) args[0] + 2;
+            }
+            try {
+                return method.invoke(pstmt, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        });
+    }
+
+    // Put in a queue when a range is finished
+    private static final class End {
+
+        final Throwable failure;
+
+        End(Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    private final int partitions;
+    private final boolean ordered;
+    private final BlockingQueue<Object>[] queues;
+    private final AtomicReferenceArray<ResultSpliterator<R>> open;
+
+    private volatile boolean closed;
+
+    private Object next;
+    private int current;
+    private int ended;
+
+    @SuppressWarnings("unchecked")
+    PartitionedQuery(DataSource ds, List<ResultPublisher.Opener<R>> openers, boolean ordered, Executor executor) {
+        this.partitions = openers.size();
+        this.ordered = ordered;
+        this.open = new AtomicReferenceArray<>(partitions);
+
+        // The rows of each range are kept apart when they have to be in order
+        queues = new BlockingQueue[ordered ? partitions : 1];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayBlockingQueue<>(BUFFER);
+        }
+
+        try {
+            for (int i = 0; i < partitions; i++) {
+                int partition = i;
+                executor.execute(() -> run(ds, partition, openers.get(partition)));
+            }
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    private void run(DataSource ds, int partition, ResultPublisher.Opener<R> opener) {
+        BlockingQueue<Object> queue = queues[ordered ? partition : 0];
+        Throwable failure = null;
+
+        try (Connection c = ds.getConnection()) {
+            ResultSpliterator<R> rows = opener.open(c, 0);
+            open.set(partition, rows);
+            try {
+                while (!closed && rows.tryAdvance(r -> put(queue, r))) {
+                    // The rows are all put in the queue
+                }
+            } finally {
+                open.set(partition, null);
+                rows.close();
+            }
+        } catch (SQLException | RuntimeException | Error e) {
+            failure = e;
+        }
+
+        put(queue, new End(failure));
+    }
+
+    private void put(BlockingQueue<Object> queue, Object o) {
+        try {
+            // Check now and then whether the consumer has gone away
+            while (!closed && !queue.offer(o, 100, TimeUnit.MILLISECONDS)) {
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (closed || ended == partitions) {
+                return false;
+            }
+
+            Object o;
+            try {
+                o = queues[ordered ? current : 0].take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Interrupted while waiting for rows", ex);
+            }
+
+            if (o instanceof End) {
+                Throwable failure = ((End) o).failure;
+                if (failure != null) {
+                    close();
+                    if (failure instanceof RuntimeException) {
+                        throw (RuntimeException) failure;
+                    }
+                    if (failure instanceof Error) {
+                        throw (Error) failure;
+                    }
+                    throw new IllegalStateException(failure.getMessage(), failure);
+                }
+
+                ended++;
+                current++;
+            } else {
+                next = o;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public R next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        R r = (R) next;
+        next = null;
+        return r;
+    }
+
+    /**
+     * Stops the queries that are still running. The connections are closed by
+     * the tasks on the executor as they notice.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        for (int i = 0; i < partitions; i++) {
+            ResultSpliterator<R> rows = open.get(i);
+            if (rows != null) {
+                rows.cancel();
+            }
+        }
+        for (BlockingQueue<Object> queue : queues) {
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,375 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Handler that is built at runtime for statements that don't have a handler
+ * generated by the {@link SQLStatementProcessor}, such as when annotation
+ * processing is turned off or for the inline statements that can't have one.
+ * Each slot and result field gets a typed setter or getter made from method
+ * handles when the handler is built, so that executing the statement doesn't
+ * need the slower reflective field access or box the primitive values.
+ */
+final class ReflectiveStatementHandler implements StatementHandler<Object, Object> {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    interface ParameterBinder {
+
+        void bind(Object p, PreparedStatement pstmt, Connection c, int idx) throws Throwable;
+    }
+
+    interface ValueSetter {
+
+        void set(PreparedStatement pstmt, Connection c, int idx, Object v) throws SQLException;
+    }
+
+    private final String safeSQL;
+    private final ParameterBinder[] binders;
+
+    // The getters of the collection parameters for each slot, or null if there are none
+    private final MethodHandle[] lists;
+    private final InList inList;
+    private final ResultMapping resultMapping;
+
+    // The fields that aren't set by the constructor of results created from each row
+    private final ResultMapping mutableMapping;
+
+    private final MethodHandle paramsFactory;
+    private final MethodHandle resultFactory;
+
+    ReflectiveStatementHandler(String safeSQL, List<Field> slots, Constructor<?> paramsCtor, Constructor<?> resultCtor, RowConstructor rowCtor) {
+        this.safeSQL = safeSQL;
+        this.paramsFactory = factory(paramsCtor);
+        this.resultFactory = factory(resultCtor);
+
+        binders = new ParameterBinder[slots.size()];
+        MethodHandle[] l = new MethodHandle[slots.size()];
+        List<Integer> markers = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < binders.length; i++) {
+            Field f = slots.get(i);
+            if (Collection.class.isAssignableFrom(f.getType())) {
+                l[i] = getter(f, Collection.class);
+                markers.add(i);
+                fields.add(f.getName());
+            } else {
+                binders[i] = binder(f);
+            }
+        }
+
+        if (markers.isEmpty()) {
+            lists = null;
+            inList = null;
+        } else {
+            lists = l;
+            inList = new InList(safeSQL, markers.stream().mapToInt(Integer::intValue).toArray(), fields.toArray(new String[fields.size()]));
+        }
+
+        if (rowCtor != null) {
+            Class<?> type = rowCtor.ctor.getDeclaringClass();
+            resultMapping = new ResultMapping(rowCtor);
+            mutableMapping = new ResultMapping(type, ResultMapping.mutableFields(type));
+        } else {
+            resultMapping = resultCtor != null ? new ResultMapping(resultCtor.getDeclaringClass()) : null;
+            mutableMapping = resultMapping;
+        }
+    }
+
+    private static MethodHandle factory(Constructor<?> ctor) {
+        if (ctor == null) {
+            return null;
+        }
+
+        try {
+            // Either a default constructor or one that takes the outer instance
+            MethodHandle mh = LOOKUP.unreflectConstructor(ctor);
+            if (ctor.getParameterCount() == 0) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            return mh.asType(MethodType.methodType(Object.class, Object.class));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Unable to use the constructor of " + ctor.getDeclaringClass().getTypeName(), ex);
+        }
+    }
+
+    private static Object create(MethodHandle factory, Object outer) throws Throwable {
+        return (Object) factory.invokeExact(outer);
+    }
+
+    @Override
+    public String getSafeSQL() {
+        return safeSQL;
+    }
+
+    @Override
+    public String getSafeSQL(Object p) {
+        if (inList == null) {
+            return safeSQL;
+        }
+
+        Collection<?>[] values = new Collection<?>[inList.getFields().length];
+        try {
+            int v = 0;
+            for (MethodHandle g : lists) {
+                if (g != null) {
+                    values[v++] = (Collection<?>) g.invokeExact(p);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to read the collection parameters", t);
+        }
+        return inList.sql(values);
+    }
+
+    @Override
+    public InList getInList() {
+        return inList;
+    }
+
+    @Override
+    public Object createParameters(Object outer) {
+        if (paramsFactory == null) {
+            throw new IllegalArgumentException("No default constructor found for parameters object. You must create a default constructor or provide a parameters object to the execute method.");
+        }
+
+        try {
+            return create(paramsFactory, outer);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to construct parameters instance", t);
+        }
+    }
+
+    @Override
+    public Object createResult(Object outer) {
+        if (resultFactory == null) {
+            throw new IllegalStateException("No result class constructor could be found.");
+        }
+
+        try {
+            return create(resultFactory, outer);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Unable to construct result instance", t);
+        }
+    }
+
+    @Override
+    public void setParameters(Object p, PreparedStatement pstmt, Connection conn) throws SQLException {
+        setParameters(p, pstmt, conn, 1);
+    }
+
+    @Override
+    public int setParameters(Object p, PreparedStatement pstmt, Connection conn, int idx) throws SQLException {
+        try {
+            if (lists == null) {
+                for (int i = 0; i < binders.length; i++) {
+                    binders[i].bind(p, pstmt, conn, idx + i);
+                }
+                return idx + binders.length;
+            }
+
+            // Collections take up a varying number of placeholders
+            for (int i = 0; i < binders.length; i++) {
+                if (lists[i] != null) {
+                    idx = InList.bind(pstmt, idx, (Collection<?>) lists[i].invokeExact(p));
+                } else {
+                    binders[i].bind(p, pstmt, conn, idx++);
+                }
+            }
+            return idx;
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException("Unable to bind parameters", t);
+        }
+    }
+
+    @Override
+    public int[] columns(ResultSet rs) throws SQLException {
+        if (resultMapping == null) {
+            return null;
+        }
+
+        return resultMapping.columns(rs);
+    }
+
+    @Override
+    public void result(Object r, ResultSet rs) throws SQLException {
+        mutableMapping.map(r, rs, mutableMapping.columns(rs));
+    }
+
+    @Override
+    public void result(Object r, ResultSet rs, int[] columns) throws SQLException {
+        if (isConstructed()) {
+            // The columns are those of the constructor
+            result(r, rs);
+            return;
+        }
+
+        resultMapping.map(r, rs, columns);
+    }
+
+    @Override
+    public boolean isConstructed() {
+        return resultMapping != null && resultMapping.isConstructed();
+    }
+
+    @Override
+    public Object row(Object outer, ResultSet rs, int[] columns) throws SQLException {
+        if (isConstructed()) {
+            return resultMapping.create(outer, rs, columns);
+        }
+
+        Object r = createResult(outer);
+        result(r, rs, columns);
+        return r;
+    }
+
+    static MethodHandle getter(Field f, Class<?> type) {
+        try {
+            return LOOKUP.unreflectGetter(f).asType(MethodType.methodType(type, Object.class));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Unable to read the field " + f.getName() + " of " + f.getDeclaringClass().getTypeName(), ex);
+        }
+    }
+
+    private static ParameterBinder binder(Field f) {
+        Class<?> type = f.getType();
+
+        if (type == int.class) {
+            MethodHandle g = getter(f, int.class);
+            return (p, pstmt, c, idx) -> pstmt.setInt(idx, (int) g.invokeExact(p));
+        } else if (type == long.class) {
+            MethodHandle g = getter(f, long.class);
+            return (p, pstmt, c, idx) -> pstmt.setLong(idx, (long) g.invokeExact(p));
+        } else if (type == short.class) {
+            MethodHandle g = getter(f, short.class);
+            return (p, pstmt, c, idx) -> pstmt.setShort(idx, (short) g.invokeExact(p));
+        } else if (type == float.class) {
+            MethodHandle g = getter(f, float.class);
+            return (p, pstmt, c, idx) -> pstmt.setFloat(idx, (float) g.invokeExact(p));
+        } else if (type == double.class) {
+            MethodHandle g = getter(f, double.class);
+            return (p, pstmt, c, idx) -> pstmt.setDouble(idx, (double) g.invokeExact(p));
+        } else if (type == boolean.class) {
+            MethodHandle g = getter(f, boolean.class);
+            return (p, pstmt, c, idx) -> pstmt.setBoolean(idx, (boolean) g.invokeExact(p));
+        }
+
+        ValueSetter setter = setter(f);
+        MethodHandle g = getter(f, Object.class);
+
+        // Nulls keep the type of the values so that the parameter types don't change between executions
+        int sqlType = SqlTypes.of(type.getTypeName(), f.getAnnotation(Type.class));
+        return (p, pstmt, c, idx) -> {
+            Object v = g.invokeExact(p);
+            if (v == null) {
+                pstmt.setNull(idx, sqlType);
+            } else {
+                setter.set(pstmt, c, idx, v);
+            }
+        };
+    }
+
+    private static ValueSetter setter(Field f) {
+        Class<?> type = f.getType();
+
+        // TODO blob, clob
+        if (type == Integer.class) {
+            return (pstmt, c, idx, v) -> pstmt.setInt(idx, (Integer) v);
+        } else if (type == Long.class) {
+            return (pstmt, c, idx, v) -> pstmt.setLong(idx, (Long) v);
+        } else if (type == Short.class) {
+            return (pstmt, c, idx, v) -> pstmt.setShort(idx, (Short) v);
+        } else if (type == Float.class) {
+            return (pstmt, c, idx, v) -> pstmt.setFloat(idx, (Float) v);
+        } else if (type == Double.class) {
+            return (pstmt, c, idx, v) -> pstmt.setDouble(idx, (Double) v);
+        } else if (type == Boolean.class) {
+            return (pstmt, c, idx, v) -> pstmt.setBoolean(idx, (Boolean) v);
+        } else if (type == String.class) {
+            return (pstmt, c, idx, v) -> pstmt.setString(idx, (String) v);
+        } else if (type == Date.class) {
+            return (pstmt, c, idx, v) -> pstmt.setDate(idx, (Date) v);
+        } else if (type == Time.class) {
+            return (pstmt, c, idx, v) -> pstmt.setTime(idx, (Time) v);
+        } else if (type == Timestamp.class) {
+            return (pstmt, c, idx, v) -> pstmt.setTimestamp(idx, (Timestamp) v);
+        } else if (type == BigDecimal.class) {
+            return (pstmt, c, idx, v) -> pstmt.setBigDecimal(idx, (BigDecimal) v);
+        } else if (type == URL.class) {
+            return (pstmt, c, idx, v) -> pstmt.setURL(idx, (URL) v);
+        } else if (Array.class.isAssignableFrom(type)) {
+            return (pstmt, c, idx, v) -> pstmt.setArray(idx, (Array) v);
+        } else if (type.isArray()) {
+            String dbType = f.getAnnotation(Type.class).value();
+            return (pstmt, c, idx, v) -> pstmt.setArray(idx, c.createArrayOf(dbType, (Object[]) v));
+        }
+
+        // The declared type doesn't say enough, so go by the value itself
+        Type t = f.getAnnotation(Type.class);
+        return (pstmt, c, idx, v) -> setDynamic(pstmt, c, idx, v, t);
+    }
+
+    private static void setDynamic(PreparedStatement pstmt, Connection c, int idx, Object v, Type t) throws SQLException {
+        if (v instanceof Integer) {
+            pstmt.setInt(idx, (Integer) v);
+        } else if (v instanceof Long) {
+            pstmt.setLong(idx, (Long) v);
+        } else if (v instanceof Date) {
+            pstmt.setDate(idx, (Date) v);
+        } else if (v instanceof BigDecimal) {
+            pstmt.setBigDecimal(idx, (BigDecimal) v);
+        } else if (v instanceof Float) {
+            pstmt.setFloat(idx, (Float) v);
+        } else if (v instanceof Double) {
+            pstmt.setDouble(idx, (Double) v);
+        } else if (v instanceof Short) {
+            pstmt.setShort(idx, (Short) v);
+        } else if (v instanceof String) {
+            pstmt.setString(idx, (String) v);
+        } else if (v instanceof Time) {
+            pstmt.setTime(idx, (Time) v);
+        } else if (v instanceof Timestamp) {
+            pstmt.setTimestamp(idx, (Timestamp) v);
+        } else if (v instanceof URL) {
+            pstmt.setURL(idx, (URL) v);
+        } else if (v instanceof Array) {
+            pstmt.setArray(idx, (Array) v);
+        } else if (v instanceof Boolean) {
+            pstmt.setBoolean(idx, (Boolean) v);
+        } else if (v instanceof Object[] && t != null) {
+            pstmt.setArray(idx, c.createArrayOf(t.value(), (Object[]) v));
+        } else {
+            pstmt.setObject(idx, v);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+/**
+ * Holds the results of the query statements marked with
+ * {@link CacheResults}. The tables that each statement uses are found by
+ * parsing its SQL. Every table has a version that goes up whenever a NORM
+ * statement that writes to it is executed, and cached results are only used
+ * while the versions of their tables are the same as when the results were
+ * read. Statements whose tables can't be worked out invalidate everything.
+ *
+ * <p>
+ * Only connections in auto-commit mode use the cache. Invalidation only
+ * covers writes in auto-commit mode too: a write inside a transaction bumps
+ * the versions when it is executed rather than when it commits, so a reader
+ * in between can cache the rows from before the commit. Call
+ * {@link #invalidate(String)} after committing such writes.
+ * </p>
+ *
+ * <p>
+ * Cached results are shared by everyone executing the statement with the
+ * same parameter values. The list is copied for each caller but the result
+ * objects are not, so they shouldn't be changed.
+ * </p>
+ */
+public final class ResultCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ResultCache.class.getName());
+
+    /**
+     * The number of the least recently used results that are compared for
+     * least frequently used eviction.
+     */
+    static final int LFU_SAMPLE = 16;
+
+    private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap<>();
+
+    // Goes up for writes to tables that aren't known, which every table depends on
+    private static final AtomicLong ANY_VERSION = new AtomicLong();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private static volatile boolean enabled = true;
+
+    private static final ClassValue<Region> REGIONS = new ClassValue<Region>() {
+        @Override
+        protected Region computeValue(Class<?> type) {
+            return new Region(type);
+        }
+    };
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Field f : type.getDeclaredFields()) {
+                if (f.isSynthetic() || Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+
+                f.setAccessible(true);
+                fields.add(f);
+            }
+            return fields.toArray(new Field[fields.size()]);
+        }
+    };
+
+    private ResultCache() {
+    }
+
+    /**
+     * Turns the result cache on or off for all statements. Turning it off
+     * doesn't stop writes from invalidating results, so nothing stale is used
+     * after turning it back on.
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Invalidates the results that read a table, for writes that don't go
+     * through NORM. The name is given without a schema or quotes.
+     */
+    public static void invalidate(String table) {
+        version(table.toLowerCase(Locale.ROOT)).incrementAndGet();
+    }
+
+    /**
+     * Invalidates all of the cached results.
+     */
+    public static void invalidateAll() {
+        ANY_VERSION.incrementAndGet();
+    }
+
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.get();
+    }
+
+    private static AtomicLong version(String table) {
+        return VERSIONS.computeIfAbsent(table, t -> new AtomicLong());
+    }
+
+    /**
+     * The cache for a statement class, or null if its results aren't cached.
+     */
+    static Region region(Class<?> statementClass) {
+        Region r = REGIONS.get(statementClass);
+        return enabled && r.entries != null ? r : null;
+    }
+
+    /**
+     * Invalidates the results that depend on the tables written by the
+     * statement, unless it is a query.
+     */
+    static void written(Class<?> statementClass) {
+        Region r = REGIONS.get(statementClass);
+        if (r.query) {
+            return;
+        }
+
+        if (r.versions == null) {
+            ANY_VERSION.incrementAndGet();
+            return;
+        }
+
+        for (AtomicLong v : r.versions) {
+            v.incrementAndGet();
+        }
+    }
+
+    static final class Region {
+
+        private final boolean query;
+        private final AtomicLong[] versions;
+
+        private final int maxEntries;
+        private final long ttlNanos;
+        private final CacheResults.Eviction eviction;
+        private final LinkedHashMap<Key, Entry> entries;
+
+        // A lock rather than a monitor so that virtual threads waiting on it don't pin their carrier
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private Region(Class<?> statementClass) {
+            String sql = StatementMetadata.of(statementClass).safeSQL;
+
+            Statement parsed;
+            try {
+                parsed = CCJSqlParserUtil.parse(sql);
+            } catch (JSQLParserException ex) {
+                LOGGER.log(Level.INFO, "Unable to find the tables of " + statementClass.getName() + ", its writes invalidate all cached results", ex);
+                parsed = null;
+            }
+
+            Set<String> tables = parsed != null ? Util.tableNames(parsed) : null;
+            query = parsed instanceof Select;
+            versions = tables == null ? null : tables.stream().map(ResultCache::version).toArray(AtomicLong[]::new);
+
+            CacheResults c = find(statementClass);
+            if (c != null && query && versions != null) {
+                maxEntries = c.maxEntries();
+                ttlNanos = c.unit().toNanos(c.ttl());
+                eviction = c.eviction();
+                entries = new LinkedHashMap<>(16, 0.75f, true);
+            } else {
+                if (c != null) {
+                    LOGGER.log(Level.WARNING, "The results of {0} can''t be cached because it isn''t a query with known tables", statementClass.getName());
+                }
+                maxEntries = 0;
+                ttlNanos = 0;
+                eviction = null;
+                entries = null;
+            }
+        }
+
+        /**
+         * Finds the annotation in the same places as the SQL annotation.
+         */
+        private static CacheResults find(Class<?> c) {
+            CacheResults[] cache = c.getAnnotationsByType(CacheResults.class);
+            if (cache.length == 0) {
+                cache = c.getAnnotatedSuperclass().getAnnotationsByType(CacheResults.class);
+            }
+            return cache.length != 0 ? cache[0] : null;
+        }
+
+        /**
+         * The sum of the versions of the tables that the results depend on.
+         * The versions only go up, so the sum changes whenever one does.
+         */
+        long version() {
+            long v = ANY_VERSION.get();
+            for (AtomicLong t : versions) {
+                v += t.get();
+            }
+            return v;
+        }
+
+        Key key(Object p) {
+            if (p == null) {
+                return new Key(new Object[0]);
+            }
+
+            Field[] fields = FIELDS.get(p.getClass());
+            Object[] values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                try {
+                    values[i] = fields[i].get(p);
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException("Unable to read the parameter " + fields[i].getName(), ex);
+                }
+            }
+            return new Key(values);
+        }
+
+        /**
+         * @return null if the results aren't cached or are no longer valid
+         */
+        <R> List<R> get(Key key, long version) {
+            Entry e;
+            lock.lock();
+            try {
+                e = entries.get(key);
+                if (e != null && (e.version != version || ttlNanos != 0 && System.nanoTime() - e.expires > 0)) {
+                    entries.remove(key);
+                    e = null;
+                } else if (e != null) {
+                    e.hits++;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (e == null) {
+                MISSES.incrementAndGet();
+                return null;
+            }
+
+            HITS.incrementAndGet();
+            @SuppressWarnings("unchecked")
+            List<R> rows = new ArrayList<>((List<R>) (List<?>) Arrays.asList(e.rows));
+            return rows;
+        }
+
+        /**
+         * Keeps the results read at the version, unless there has been a write
+         * since.
+         */
+        void put(Key key, List<?> rows, long version) {
+            if (version() != version) {
+                return;
+            }
+
+            Entry e = new Entry(rows.toArray(), version, ttlNanos != 0 ? System.nanoTime() + ttlNanos : 0);
+            lock.lock();
+            try {
+                entries.put(key, e);
+                while (entries.size() > maxEntries) {
+                    evict();
+                    EVICTIONS.incrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void evict() {
+            Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+            if (eviction == CacheResults.Eviction.LRU) {
+                it.next();
+                it.remove();
+                return;
+            }
+
+            Key coldest = null;
+            long fewest = Long.MAX_VALUE;
+            for (int i = 0; i < LFU_SAMPLE && it.hasNext(); i++) {
+                Map.Entry<Key, Entry> e = it.next();
+                if (e.getValue().hits < fewest) {
+                    coldest = e.getKey();
+                    fewest = e.getValue().hits;
+                }
+            }
+            entries.remove(coldest);
+        }
+    }
+
+    static final class Key {
+
+        private final Object[] values;
+        private final int hash;
+
+        Key(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.deepHashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && Arrays.deepEquals(values, ((Key) o).values);
+        }
+    }
+
+    private static final class Entry {
+
+        final Object[] rows;
+        final long version;
+        final long expires;
+        long hits;
+
+        Entry(Object[] rows, long version, long expires) {
+            this.rows = rows;
+            this.version = version;
+            this.expires = expires;
+        }
+    }
+}
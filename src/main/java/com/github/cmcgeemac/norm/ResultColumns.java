@@ -0,0 +1,309 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The results of a query held a column at a time instead of as one object per
+ * row. Each field of the results class becomes an array with one element per
+ * row: int, short and byte fields become an int[], long fields a long[], float
+ * and double fields a double[], and the boxed versions of these the same with
+ * a null bitmap. Any other field becomes an Object[].
+ *
+ * <pre>
+ * ResultColumns&lt;Sale&gt; sales = SALES.executeQueryColumns(dbConn, params);
+ * long[] ids = sales.getLongs("id");
+ * double[] amounts = sales.getDoubles("amount");
+ * BitSet noAmount = sales.getNulls("amount");
+ * for (int row = 0; row &lt; sales.size(); row++) {
+ *   if (!noAmount.get(row)) total += amounts[row];
+ * }
+ * </pre>
+ *
+ * <p>
+ * The arrays are the ones that hold the results, so they are not copied and
+ * shouldn't be changed.
+ * </p>
+ */
+public final class ResultColumns<R> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final ClassValue<List<Field>> FIELDS = new ClassValue<List<Field>>() {
+        @Override
+        protected List<Field> computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Field f : type.getDeclaredFields()) {
+                // Skip the outer instance and any constants
+                if (!f.isSynthetic() && !Modifier.isStatic(f.getModifiers())) {
+                    fields.add(f);
+                }
+            }
+            return Collections.unmodifiableList(fields);
+        }
+    };
+
+    private final Map<String, Column> columns = new LinkedHashMap<>();
+    private int size;
+
+    ResultColumns(Class<?> resultClass, StatementHandler<?, ?> handler, ResultSet rs, int capacity) throws SQLException {
+        capacity = Math.max(capacity, INITIAL_CAPACITY);
+        for (Field f : FIELDS.get(resultClass)) {
+            columns.put(f.getName(), column(f.getType(), handler.column(rs, f.getName()), capacity));
+        }
+    }
+
+    private static Column column(Class<?> type, int index, int capacity) {
+        if (type == int.class || type == Integer.class || type == short.class || type == Short.class
+                || type == byte.class || type == Byte.class) {
+            return new IntColumn(index, capacity);
+        } else if (type == long.class || type == Long.class) {
+            return new LongColumn(index, capacity);
+        } else if (type == double.class || type == Double.class || type == float.class || type == Float.class) {
+            return new DoubleColumn(index, capacity);
+        }
+        return new ObjectColumn(index, capacity, ResultMapping.reader(type));
+    }
+
+    /**
+     * Reads the current row of the result set into the next row of the
+     * columns.
+     */
+    void read(ResultSet rs) throws SQLException {
+        for (Column c : columns.values()) {
+            if (size == c.capacity()) {
+                c.resize(size * 2);
+            }
+            c.read(rs, size);
+        }
+        size++;
+    }
+
+    /**
+     * Trims the columns down to the rows that were read.
+     */
+    ResultColumns<R> finish() {
+        for (Column c : columns.values()) {
+            if (c.capacity() != size) {
+                c.resize(size);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * The number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The names of the fields, in the order that they are declared.
+     */
+    public Set<String> getFields() {
+        return Collections.unmodifiableSet(columns.keySet());
+    }
+
+    public int[] getInts(String field) {
+        return column(field, IntColumn.class).values;
+    }
+
+    public long[] getLongs(String field) {
+        return column(field, LongColumn.class).values;
+    }
+
+    public double[] getDoubles(String field) {
+        return column(field, DoubleColumn.class).values;
+    }
+
+    public Object[] getObjects(String field) {
+        return column(field, ObjectColumn.class).values;
+    }
+
+    /**
+     * The rows where the field is null. Primitive arrays hold a zero for these
+     * rows.
+     */
+    public BitSet getNulls(String field) {
+        Column c = column(field, Column.class);
+        return c.nulls != null ? c.nulls : new BitSet();
+    }
+
+    public boolean isNull(String field, int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+
+        Column c = column(field, Column.class);
+        return c.nulls != null && c.nulls.get(row);
+    }
+
+    private <C extends Column> C column(String field, Class<C> type) {
+        Column c = columns.get(field);
+        if (c == null) {
+            throw new IllegalArgumentException("There is no field " + field + " in the results, only " + columns.keySet());
+        }
+        if (!type.isInstance(c)) {
+            throw new IllegalArgumentException("The field " + field + " isn't held in a " + type.getSimpleName());
+        }
+        return type.cast(c);
+    }
+
+    private abstract static class Column {
+
+        final int index;
+        BitSet nulls;
+
+        Column(int index) {
+            this.index = index;
+        }
+
+        abstract int capacity();
+
+        abstract void resize(int capacity);
+
+        abstract void read(ResultSet rs, int row) throws SQLException;
+
+        void setNull(int row) {
+            if (nulls == null) {
+                nulls = new BitSet();
+            }
+            nulls.set(row);
+        }
+    }
+
+    private static final class IntColumn extends Column {
+
+        int[] values;
+
+        IntColumn(int index, int capacity) {
+            super(index);
+            values = new int[capacity];
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            int v = rs.getInt(index);
+            // Only a zero can be a null
+            if (v == 0 && rs.wasNull()) {
+                setNull(row);
+            }
+            values[row] = v;
+        }
+    }
+
+    private static final class LongColumn extends Column {
+
+        long[] values;
+
+        LongColumn(int index, int capacity) {
+            super(index);
+            values = new long[capacity];
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            long v = rs.getLong(index);
+            if (v == 0 && rs.wasNull()) {
+                setNull(row);
+            }
+            values[row] = v;
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+
+        double[] values;
+
+        DoubleColumn(int index, int capacity) {
+            super(index);
+            values = new double[capacity];
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            double v = rs.getDouble(index);
+            if (v == 0 && rs.wasNull()) {
+                setNull(row);
+            }
+            values[row] = v;
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+
+        private final ResultMapping.ColumnReader reader;
+        Object[] values;
+
+        ObjectColumn(int index, int capacity, ResultMapping.ColumnReader reader) {
+            super(index);
+            this.reader = reader;
+            values = new Object[capacity];
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            Object v = reader.read(rs, index);
+            if (v == null) {
+                setNull(row);
+            }
+            values[row] = v;
+        }
+    }
+}
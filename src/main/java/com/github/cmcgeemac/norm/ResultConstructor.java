@@ -0,0 +1,36 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the constructor of a results class that creates a result from each
+ * row, so that the class can have final fields. The columns are read into the
+ * parameters in order, and the result is created once they are all read.
+ *
+ * <p>
+ * A results class without a default constructor doesn't need the annotation
+ * if it has a constructor whose parameters are named after all of its fields,
+ * as records do. The parameter names are only known at runtime when the class
+ * is compiled with {@code -parameters}, so without it the statement needs a
+ * generated handler or the columns listed in the annotation.
+ * </p>
+ */
+@Retention(value = RetentionPolicy.RUNTIME)
+@Target(value = ElementType.CONSTRUCTOR)
+public @interface ResultConstructor {
+
+    /**
+     * The column of each parameter. If it is empty the columns are the names
+     * of the parameters, which needs the class to be compiled with
+     * {@code -parameters} unless the statement has a generated handler.
+     */
+    String[] value() default {};
+}
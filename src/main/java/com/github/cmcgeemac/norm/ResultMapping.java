@@ -0,0 +1,354 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the rows of a result set onto the fields of a results class without a
+ * generated handler. The fields, and a typed setter made from method handles
+ * for each one, are worked out once for the class. The column index of each
+ * field is resolved from the result set metadata on the first execution and
+ * then only checked against the shape of later result sets, so rows are read
+ * by index instead of by name.
+ *
+ * <p>
+ * Results classes with a {@link RowConstructor} are created from each row
+ * instead, with the columns read in the order of the constructor parameters.
+ * </p>
+ */
+final class ResultMapping {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    interface ColumnMapper {
+
+        void map(Object r, ResultSet rs, int column) throws Throwable;
+    }
+
+    private final Class<?> resultClass;
+
+    // The columns of the fields, or of the constructor parameters
+    private final String[] names;
+    private final ColumnMapper[] mappers;
+
+    private final ColumnReader[] readers;
+    private final MethodHandle creator;
+
+    private volatile ColumnPlan plan;
+
+    ResultMapping(Class<?> resultClass) {
+        this(resultClass, fields(resultClass));
+    }
+
+    /**
+     * Fills in the given fields of the results class.
+     */
+    ResultMapping(Class<?> resultClass, Field[] fields) {
+        this.resultClass = resultClass;
+        names = new String[fields.length];
+        mappers = new ColumnMapper[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].setAccessible(true);
+            names[i] = fields[i].getName();
+            mappers[i] = mapper(fields[i]);
+        }
+        readers = null;
+        creator = null;
+    }
+
+    ResultMapping(RowConstructor rc) {
+        resultClass = rc.ctor.getDeclaringClass();
+        names = rc.columns;
+        mappers = null;
+
+        Class<?>[] params = RowConstructor.parameterTypes(rc.ctor, rc.inner);
+        readers = new ColumnReader[params.length];
+        for (int i = 0; i < params.length; i++) {
+            readers[i] = params[i].isPrimitive() ? primitiveReader(params[i]) : reader(params[i]);
+        }
+
+        try {
+            // Takes the outer instance, which is dropped unless it is an inner class, and the column values
+            MethodHandle mh = LOOKUP.unreflectConstructor(rc.ctor).asSpreader(Object[].class, params.length);
+            if (!rc.inner) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            creator = mh.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Unable to use the constructor of " + resultClass.getTypeName(), ex);
+        }
+    }
+
+    /**
+     * The fields of the results class that are mapped, in the order they are
+     * declared.
+     */
+    static Field[] fields(Class<?> resultClass) {
+        List<Field> f = new ArrayList<>();
+        for (Field field : resultClass.getDeclaredFields()) {
+            // Skip the outer instance and any constants
+            if (field.isSynthetic() || Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            f.add(field);
+        }
+
+        return f.toArray(new Field[f.size()]);
+    }
+
+    /**
+     * The fields of the results class that can be set after it is created.
+     */
+    static Field[] mutableFields(Class<?> resultClass) {
+        return Arrays.stream(fields(resultClass)).filter(f -> !Modifier.isFinal(f.getModifiers())).toArray(Field[]::new);
+    }
+
+    boolean isConstructed() {
+        return creator != null;
+    }
+
+    /**
+     * Provides the column index for each of the fields in the result set. The
+     * plan from an earlier execution is used as long as the result set still
+     * has the same columns.
+     */
+    int[] columns(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        ColumnPlan p = plan;
+
+        if (p == null || !p.matches(md)) {
+            p = new ColumnPlan(md, resultClass, names, creator != null);
+            plan = p;
+        }
+
+        return p.columns;
+    }
+
+    void map(Object r, ResultSet rs, int[] columns) throws SQLException {
+        try {
+            for (int i = 0; i < mappers.length; i++) {
+                mappers[i].map(r, rs, columns[i]);
+            }
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException("Unable to map the result", t);
+        }
+    }
+
+    /**
+     * Creates the result from the current row with the row constructor.
+     */
+    Object create(Object outer, ResultSet rs, int[] columns) throws SQLException {
+        Object[] values = new Object[readers.length];
+        try {
+            for (int i = 0; i < readers.length; i++) {
+                values[i] = readers[i].read(rs, columns[i]);
+            }
+            return (Object) creator.invokeExact(outer, values);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException("Unable to create the result", t);
+        }
+    }
+
+    private static MethodHandle setter(Field f, Class<?> type) {
+        try {
+            return LOOKUP.unreflectSetter(f).asType(MethodType.methodType(void.class, Object.class, type));
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Unable to set the field " + f.getName() + " of " + f.getDeclaringClass().getTypeName(), ex);
+        }
+    }
+
+    private static ColumnMapper mapper(Field f) {
+        Class<?> type = f.getType();
+
+        if (type == int.class) {
+            MethodHandle s = setter(f, int.class);
+            return (r, rs, col) -> {
+                s.invokeExact(r, rs.getInt(col));
+            };
+        } else if (type == long.class) {
+            MethodHandle s = setter(f, long.class);
+            return (r, rs, col) -> {
+                s.invokeExact(r, rs.getLong(col));
+            };
+        } else if (type == float.class) {
+            MethodHandle s = setter(f, float.class);
+            return (r, rs, col) -> {
+                s.invokeExact(r, rs.getFloat(col));
+            };
+        } else if (type == double.class) {
+            MethodHandle s = setter(f, double.class);
+            return (r, rs, col) -> {
+                s.invokeExact(r, rs.getDouble(col));
+            };
+        } else if (type == boolean.class) {
+            MethodHandle s = setter(f, boolean.class);
+            return (r, rs, col) -> {
+                s.invokeExact(r, rs.getBoolean(col));
+            };
+        } else if (type == short.class) {
+            MethodHandle s = setter(f, short.class);
+            return (r, rs, col) -> {
+                s.invokeExact(r, rs.getShort(col));
+            };
+        }
+
+        ColumnReader reader = reader(type);
+        MethodHandle s = setter(f, Object.class);
+        return (r, rs, col) -> {
+            s.invokeExact(r, reader.read(rs, col));
+        };
+    }
+
+    interface ColumnReader {
+
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    /**
+     * Reads a column for a primitive parameter, which takes the default value
+     * of the type for nulls like the primitive fields do.
+     */
+    private static ColumnReader primitiveReader(Class<?> type) {
+        if (type == int.class) {
+            return ResultSet::getInt;
+        } else if (type == long.class) {
+            return ResultSet::getLong;
+        } else if (type == float.class) {
+            return ResultSet::getFloat;
+        } else if (type == double.class) {
+            return ResultSet::getDouble;
+        } else if (type == boolean.class) {
+            return ResultSet::getBoolean;
+        } else if (type == short.class) {
+            return ResultSet::getShort;
+        } else if (type == byte.class) {
+            return ResultSet::getByte;
+        }
+        throw new IllegalArgumentException("The result column type " + type + " is not supported");
+    }
+
+    static ColumnReader reader(Class<?> type) {
+        // TODO blobs, clobs
+        if (type == int.class || type == Integer.class) {
+            return (rs, col) -> {
+                int v = rs.getInt(col);
+                return rs.wasNull() ? null : v;
+            };
+        } else if (type == long.class || type == Long.class) {
+            return (rs, col) -> {
+                long v = rs.getLong(col);
+                return rs.wasNull() ? null : v;
+            };
+        } else if (type == float.class || type == Float.class) {
+            return (rs, col) -> {
+                float v = rs.getFloat(col);
+                return rs.wasNull() ? null : v;
+            };
+        } else if (type == double.class || type == Double.class) {
+            return (rs, col) -> {
+                double v = rs.getDouble(col);
+                return rs.wasNull() ? null : v;
+            };
+        } else if (type == boolean.class || type == Boolean.class) {
+            return (rs, col) -> {
+                boolean v = rs.getBoolean(col);
+                return rs.wasNull() ? null : v;
+            };
+        } else if (type == short.class || type == Short.class) {
+            return (rs, col) -> {
+                short v = rs.getShort(col);
+                return rs.wasNull() ? null : v;
+            };
+        } else if (type == String.class) {
+            return ResultSet::getString;
+        } else if (type == Date.class) {
+            return ResultSet::getDate;
+        } else if (type == Time.class) {
+            return ResultSet::getTime;
+        } else if (type == Timestamp.class) {
+            return ResultSet::getTimestamp;
+        } else if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        } else if (type == URL.class) {
+            return ResultSet::getURL;
+        } else if (type.isArray()) {
+            return (rs, col) -> {
+                Array a = rs.getArray(col);
+                return a != null ? a.getArray() : null;
+            };
+        } else {
+            return ResultSet::getObject;
+        }
+    }
+
+    private static final class ColumnPlan {
+
+        private final String[] labels;
+        final int[] columns;
+
+        ColumnPlan(ResultSetMetaData md, Class<?> resultClass, String[] names, boolean constructed) throws SQLException {
+            int count = md.getColumnCount();
+            labels = new String[count];
+
+            // Column labels match case insensitively, the first one wins like ResultSet.findColumn()
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int i = 1; i <= count; i++) {
+                labels[i - 1] = md.getColumnLabel(i);
+                indexes.putIfAbsent(labels[i - 1].toLowerCase(Locale.ROOT), i);
+            }
+
+            columns = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                Integer idx = indexes.get(names[i].toLowerCase(Locale.ROOT));
+                if (idx == null) {
+                    throw new SQLException("The result class " + resultClass.getTypeName()
+                            + (constructed ? " has a constructor parameter for column " : " has a field with name ") + names[i]
+                            + " but there is no matching column in the results of the statement");
+                }
+                columns[i] = idx;
+            }
+        }
+
+        boolean matches(ResultSetMetaData md) throws SQLException {
+            if (md.getColumnCount() != labels.length) {
+                return false;
+            }
+
+            for (int i = 0; i < labels.length; i++) {
+                if (!labels[i].equals(md.getColumnLabel(i + 1))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the rows of a query as they are requested. Each subscription runs
+ * the query once on the executor and only reads and maps as many rows as the
+ * subscriber has asked for, with the JDBC fetch size following the size of the
+ * requests. All of the JDBC work and all of the signals for a subscription
+ * happen in one drain loop at a time, so the statement is never used by two
+ * threads at once.
+ */
+class ResultPublisher<R> implements NormFlow.Publisher<R> {
+
+    /**
+     * The largest fetch size asked of the driver, even when the subscriber
+     * requests more or everything.
+     */
+    static final int MAX_FETCH_SIZE = 1000;
+
+    interface Opener<R> {
+
+        ResultSpliterator<R> open(Connection c, int fetchSize) throws SQLException;
+    }
+
+    private final AsyncExecution.SQLTask<Connection> connector;
+    private final boolean closeConnection;
+    private final Opener<R> opener;
+    private final Executor executor;
+
+    ResultPublisher(AsyncExecution.SQLTask<Connection> connector, boolean closeConnection, Opener<R> opener, Executor executor) {
+        this.connector = connector;
+        this.closeConnection = closeConnection;
+        this.opener = opener;
+        this.executor = executor;
+    }
+
+    static int fetchSize(long demand) {
+        return (int) Math.max(1, Math.min(demand, MAX_FETCH_SIZE));
+    }
+
+    @Override
+    public void subscribe(NormFlow.Subscriber<? super R> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        ResultSubscription s = new ResultSubscription(subscriber);
+        subscriber.onSubscribe(s);
+    }
+
+    private class ResultSubscription implements NormFlow.Subscription {
+
+        private final NormFlow.Subscriber<? super R> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable invalid;
+        private volatile ResultSpliterator<R> results;
+
+        // Only used from the drain loop
+        private boolean done;
+        private Connection c;
+        private int fetchSize;
+
+        ResultSubscription(NormFlow.Subscriber<? super R> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalid = new IllegalArgumentException("Non-positive request: " + n);
+            } else {
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+
+            // Stop a long running query or fetch right away, the rest of the
+            // cleanup happens in the drain loop
+            ResultSpliterator<R> rs = results;
+            if (rs != null) {
+                rs.cancel();
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            try {
+                executor.execute(this::run);
+            } catch (RuntimeException e) {
+                done = true;
+                subscriber.onError(e);
+            }
+        }
+
+        private void run() {
+            int missed = 1;
+            do {
+                if (!done) {
+                    step();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void step() {
+            try {
+                if (cancelled) {
+                    finish();
+                    return;
+                }
+
+                if (invalid != null) {
+                    finish();
+                    subscriber.onError(invalid);
+                    return;
+                }
+
+                long requested = demand.get();
+                if (requested == 0) {
+                    return;
+                }
+
+                if (results == null) {
+                    c = connector.call();
+                    fetchSize = fetchSize(requested);
+                    results = opener.open(c, fetchSize);
+                } else if (fetchSize(requested) != fetchSize) {
+                    fetchSize = fetchSize(requested);
+                    results.setFetchSize(fetchSize);
+                }
+
+                long emitted = 0;
+                while (emitted != requested) {
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+
+                    if (!results.tryAdvance(subscriber::onNext)) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    emitted++;
+                }
+
+                if (requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-emitted);
+                }
+            } catch (SQLException | RuntimeException e) {
+                finish();
+                subscriber.onError(e instanceof IllegalStateException && e.getCause() instanceof SQLException ? e.getCause() : e);
+            }
+        }
+
+        private void finish() {
+            done = true;
+
+            if (results != null) {
+                results.close();
+            }
+
+            if (c != null && closeConnection) {
+                try {
+                    c.close();
+                } catch (SQLException ex) {
+                    Logger.getLogger(ResultPublisher.class.getName()).log(Level.FINE, "Unable to close connection", ex);
+                }
+            }
+            c = null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lazily walks a result set mapping one row at a time. The result set is closed
+ * and the statement released when the rows are exhausted, when reading fails or
+ * when the owner closes it early, in which case the statement is also cancelled
+ * and not reused.
+ */
+class ResultSpliterator<R> extends Spliterators.AbstractSpliterator<R> implements AutoCloseable {
+
+    private final PreparedStatement pstmt;
+    private final ResultSet rs;
+    private final Function<ResultSet, R> mapper;
+    private final Consumer<Boolean> release;
+    private final AdaptiveFetchSize fetch;
+
+    private boolean exhausted;
+    private boolean failed;
+    private boolean closed;
+
+    ResultSpliterator(PreparedStatement pstmt, ResultSet rs, Function<ResultSet, R> mapper, Consumer<Boolean> release) {
+        this(pstmt, rs, null, mapper, release);
+    }
+
+    ResultSpliterator(PreparedStatement pstmt, ResultSet rs, AdaptiveFetchSize fetch, Function<ResultSet, R> mapper, Consumer<Boolean> release) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.pstmt = pstmt;
+        this.rs = rs;
+        this.fetch = fetch;
+        this.mapper = mapper;
+        this.release = release;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        if (closed) {
+            return false;
+        }
+
+        R r;
+        try {
+            if (!(fetch != null ? fetch.next() : rs.next())) {
+                exhausted = true;
+                close();
+                return false;
+            }
+
+            r = mapper.apply(rs);
+        } catch (SQLException | RuntimeException ex) {
+            failed = true;
+            close();
+
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            throw new IllegalStateException(ex.getMessage(), ex);
+        }
+
+        action.accept(r);
+        return true;
+    }
+
+    /**
+     * Asks the database to stop the statement. Unlike the other methods this
+     * can be called from another thread while the rows are being read.
+     */
+    void cancel() {
+        try {
+            pstmt.cancel();
+        } catch (SQLException ex) {
+            Logger.getLogger(ResultSpliterator.class.getName()).log(Level.FINE, "Unable to cancel statement", ex);
+        }
+    }
+
+    /**
+     * Changes the number of rows fetched from the database at a time for the
+     * rest of the results. It is only a hint, so drivers that can't change it
+     * are ignored.
+     */
+    void setFetchSize(int rows) {
+        try {
+            rs.setFetchSize(rows);
+        } catch (SQLException ex) {
+            Logger.getLogger(ResultSpliterator.class.getName()).log(Level.FINE, "Unable to set the fetch size", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        // Ask the database to stop sending rows that nobody will read
+        if (!exhausted) {
+            cancel();
+        }
+
+        try {
+            rs.close();
+        } catch (SQLException ex) {
+            Logger.getLogger(ResultSpliterator.class.getName()).log(Level.WARNING, "Unable to close result set", ex);
+        }
+
+        // A cancelled or failed statement isn't trusted for another execution
+        release.accept(exhausted && !failed);
+    }
+}
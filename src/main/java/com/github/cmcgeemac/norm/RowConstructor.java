@@ -0,0 +1,132 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+
+/**
+ * The constructor that creates the results of a results class from each row,
+ * for classes with final fields. It is either the one marked with
+ * {@link ResultConstructor} or, for classes without a default constructor,
+ * one whose parameters are named after all of the fields. The columns come
+ * from the annotation or from the parameter names, which are only known when
+ * the class is compiled with -parameters. The order of the fields is never
+ * used, because it isn't guaranteed by reflection.
+ */
+final class RowConstructor {
+
+    final Constructor<?> ctor;
+
+    // The column of each parameter, after the outer instance of inner classes
+    final String[] columns;
+
+    final boolean inner;
+
+    private RowConstructor(Constructor<?> ctor, String[] columns, boolean inner) {
+        ctor.setAccessible(true);
+        this.ctor = ctor;
+        this.columns = columns;
+        this.inner = inner;
+    }
+
+    /**
+     * The row constructor of the results class, or null if it is filled in
+     * after being created with its default constructor.
+     */
+    static RowConstructor of(Class<?> type, boolean defaultCtor) {
+        boolean inner = type.isMemberClass() && !Modifier.isStatic(type.getModifiers());
+
+        Constructor<?> annotated = null;
+        for (Constructor<?> ct : type.getDeclaredConstructors()) {
+            if (ct.isAnnotationPresent(ResultConstructor.class)) {
+                if (annotated != null) {
+                    throw new IllegalArgumentException("The result class " + type.getTypeName() + " has more than one @ResultConstructor");
+                }
+                annotated = ct;
+            }
+        }
+
+        if (annotated != null) {
+            Class<?>[] params = parameterTypes(annotated, inner);
+            String[] columns = annotated.getAnnotation(ResultConstructor.class).value();
+            if (columns.length == 0) {
+                columns = names(annotated, inner);
+            }
+            if (columns == null) {
+                throw new IllegalArgumentException("The columns of the @ResultConstructor of " + type.getTypeName()
+                        + " aren't known. List them in the annotation or compile the class with -parameters.");
+            }
+            if (columns.length != params.length) {
+                throw new IllegalArgumentException("The @ResultConstructor of " + type.getTypeName() + " lists "
+                        + columns.length + " columns for " + params.length + " parameters");
+            }
+            return new RowConstructor(annotated, columns, inner);
+        }
+
+        if (defaultCtor) {
+            return null;
+        }
+
+        Field[] fields = ResultMapping.fields(type);
+        for (Constructor<?> ct : type.getDeclaredConstructors()) {
+            String[] names = names(ct, inner);
+            if (names != null && takesFields(parameterTypes(ct, inner), names, fields)) {
+                return new RowConstructor(ct, names, inner);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The parameter types, without the outer instance of inner classes.
+     */
+    static Class<?>[] parameterTypes(Constructor<?> ct, boolean inner) {
+        Class<?>[] params = ct.getParameterTypes();
+        return inner && params.length > 0 ? Arrays.copyOfRange(params, 1, params.length) : params;
+    }
+
+    /**
+     * The parameter names, without the outer instance of inner classes, or
+     * null if the class was compiled without them.
+     */
+    private static String[] names(Constructor<?> ct, boolean inner) {
+        Parameter[] params = ct.getParameters();
+        String[] names = new String[params.length - (inner ? 1 : 0)];
+        for (int i = 0; i < names.length; i++) {
+            Parameter param = params[i + (inner ? 1 : 0)];
+            if (!param.isNamePresent()) {
+                return null;
+            }
+            names[i] = param.getName();
+        }
+        return names;
+    }
+
+    private static boolean takesFields(Class<?>[] params, String[] names, Field[] fields) {
+        if (params.length != fields.length || fields.length == 0) {
+            return false;
+        }
+
+        for (int i = 0; i < params.length; i++) {
+            boolean found = false;
+            for (Field f : fields) {
+                if (f.getName().equals(names[i]) && f.getType() == params[i]) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a query one at a time. The same result object is
+ * filled in again for every row, so it is only valid until the consumer
+ * returns. Copy the fields out of it, rather than keeping the object itself.
+ * Results created with a {@link ResultConstructor} are new for every row and
+ * can be kept.
+ *
+ * @see NormStatement#executeQuery(java.sql.Connection,
+ * com.github.cmcgeemac.norm.NoP, com.github.cmcgeemac.norm.RowConsumer)
+ */
+@FunctionalInterface
+public interface RowConsumer<R> {
+
+    void accept(R row) throws SQLException;
+}
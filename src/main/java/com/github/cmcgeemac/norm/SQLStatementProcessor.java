@@ -8,8 +8,14 @@ package com.github.cmcgeemac.norm;
 import static com.github.cmcgeemac.norm.AbstractStatement.VARIABLE_PATTERN;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -22,7 +28,9 @@ import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -30,8 +38,10 @@ import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.NoType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
 import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 import net.sf.jsqlparser.JSQLParserException;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
@@ -45,6 +55,14 @@ import net.sf.jsqlparser.statement.Statement;
 @SupportedAnnotationTypes("com.github.cmcgeemac.norm.SQL")
 public class SQLStatementProcessor extends AbstractProcessor {
 
+    // The handlers generated in each package since its last factory was written
+    private final Map<String, Map<String, String>> pending = new TreeMap<>();
+
+    // The factory of each statement, for the index written in the last round
+    private final Map<String, String> index = new TreeMap<>();
+
+    private final Set<String> factories = new HashSet<>();
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
         Messager messager = processingEnv.getMessager();
@@ -63,9 +81,10 @@ public class SQLStatementProcessor extends AbstractProcessor {
                 Set<String> dereferencedParms = new HashSet<>();
 
                 String safeSQL = "";
+                Statement sqlParsed = null;
 
                 try {
-                    Statement sqlParsed = CCJSqlParserUtil.parse(sqlAnn.value());
+                    sqlParsed = CCJSqlParserUtil.parse(sqlAnn.value());
                     Util.visitJdbcParameters(sqlParsed, p -> {
                         referencedParms.add(p.getName());
                         return "@@@" + p.getName() + "@@@";
@@ -135,6 +154,14 @@ public class SQLStatementProcessor extends AbstractProcessor {
                                         paramsDeclType = null;
                                     }
 
+                                    if (!isPlaceholder && declTypeParamTypElem.getModifiers().contains(Modifier.PRIVATE)) {
+                                        messager.printMessage(Diagnostic.Kind.NOTE,
+                                                "The statement parameter type " + declTypeParamTypElem.getQualifiedName() + " is private, which makes it impossible to code generate. Falling back to runtime reflection.",
+                                                statementElement
+                                        );
+                                        codeGen = false;
+                                    }
+
                                     if (!isPlaceholder) {
                                         for (Element member : processingEnv.getElementUtils().getAllMembers(declTypeParamTypElem)) {
                                             if (member instanceof VariableElement) {
@@ -151,6 +178,10 @@ public class SQLStatementProcessor extends AbstractProcessor {
                                                 String vName = varMember.getSimpleName().toString();
 
                                                 if (!referencedParms.contains(vName)) {
+                                                    // Generated keys are filled in rather than bound
+                                                    if (member.getAnnotation(GeneratedKey.class) != null) {
+                                                        continue;
+                                                    }
                                                     messager.printMessage(Diagnostic.Kind.WARNING,
                                                             "The statement parameter type " + declTypeParamTypElem.getQualifiedName() + " has field with name " + member.getSimpleName() + " but the @SQL query doesn't have a matching variable :" + member.getSimpleName(),
                                                             statementElement
@@ -190,6 +221,14 @@ public class SQLStatementProcessor extends AbstractProcessor {
                                         resultsDeclType = null;
                                     }
 
+                                    if (!isPlaceholder && declTypeParamTypElem.getModifiers().contains(Modifier.PRIVATE)) {
+                                        messager.printMessage(Diagnostic.Kind.NOTE,
+                                                "The statement result type " + declTypeParamTypElem.getQualifiedName() + " is private, which makes it impossible to code generate. Falling back to runtime reflection.",
+                                                statementElement
+                                        );
+                                        codeGen = false;
+                                    }
+
                                     if (!isPlaceholder) {
                                         for (Element member : processingEnv.getElementUtils().getAllMembers(declTypeParamTypElem)) {
                                             if (member instanceof VariableElement) {
@@ -235,9 +274,9 @@ public class SQLStatementProcessor extends AbstractProcessor {
                         // Find the enclosing class, if any
                         Element cls = (statementElement.getEnclosingElement().getKind() == ElementKind.CLASS) ? statementElement.getEnclosingElement() : null;
 
-                        String fqParametersClass = paramsDeclType != null ? ((PackageElement) pkg).getQualifiedName() + "." + (cls != null ? cls.getSimpleName() + "." : "") + paramsDeclType.getSimpleName() : "com.github.cmcgeemac.norm.NoP";
+                        String fqParametersClass = paramsDeclType != null ? ((TypeElement) paramsDeclType).getQualifiedName().toString() : "com.github.cmcgeemac.norm.NoP";
 
-                        String fqResultsClass = resultsDeclType != null ? ((PackageElement) pkg).getQualifiedName() + "." + (cls != null ? cls.getSimpleName() + "." : "") + resultsDeclType.getSimpleName() : "com.github.cmcgeemac.norm.NoR";
+                        String fqResultsClass = resultsDeclType != null ? ((TypeElement) resultsDeclType).getQualifiedName().toString() : "com.github.cmcgeemac.norm.NoR";
 
                         String handlerClass = "" + (cls != null ? cls.getSimpleName() : "") + statementElement.getSimpleName() + "NormHandler";
                         String pkgName = ((PackageElement) pkg).getQualifiedName().toString();
@@ -258,6 +297,17 @@ public class SQLStatementProcessor extends AbstractProcessor {
                             continue;
                         }
 
+                        // Results with final fields are created from each row by a constructor
+                        List<String> rowColumns = new ArrayList<>();
+                        ExecutableElement rowCtor = resultsDeclType != null ? rowConstructor((TypeElement) resultsDeclType, rowColumns) : null;
+                        if (rowCtor != null && rowCtor.getModifiers().contains(Modifier.PRIVATE)) {
+                            messager.printMessage(Diagnostic.Kind.NOTE,
+                                    "The result constructor of " + ((TypeElement) resultsDeclType).getQualifiedName() + " is private, which makes it impossible to code generate. Falling back to runtime reflection.",
+                                    statementElement
+                            );
+                            codeGen = false;
+                        }
+
                         if (!codeGen) {
                             w.write("// Code generation is not possible for this type");
                             w.close();
@@ -273,11 +323,36 @@ public class SQLStatementProcessor extends AbstractProcessor {
                         w.write("\n");
                         w.write("public class " + handlerClass + " implements com.github.cmcgeemac.norm.StatementHandler<" + fqParametersClass + "," + fqResultsClass + "> {\n");
                         w.write("    @Override\n");
+                        w.write("    public " + fqParametersClass + " createParameters(Object outer) {\n");
+                        writeFactory(w, (TypeElement) paramsDeclType,
+                                "throw new IllegalArgumentException(\"No default constructor found for parameters object. You must create a default constructor or provide a parameters object to the execute method.\");",
+                                paramsDeclType == null ? "return null;" : null);
+                        w.write("    }\n");
+                        w.write("\n");
+                        w.write("    @Override\n");
+                        w.write("    public " + fqResultsClass + " createResult(Object outer) {\n");
+                        writeFactory(w, (TypeElement) resultsDeclType,
+                                "throw new IllegalStateException(\"No result class constructor could be found.\");",
+                                null);
+                        w.write("    }\n");
+                        w.write("\n");
+                        w.write("    @Override\n");
                         w.write("    public void setParameters(" + fqParametersClass + " p, PreparedStatement pstmt, Connection conn) throws SQLException {\n");
-                        w.write("        int idx = 1;\n");
+                        w.write("        setParameters(p, pstmt, conn, 1);\n");
+                        w.write("    }\n");
+                        w.write("\n");
+                        w.write("    @Override\n");
+                        w.write("    public int setParameters(" + fqParametersClass + " p, PreparedStatement pstmt, Connection conn, int idx) throws SQLException {\n");
+
+                        // The placeholders and fields of the collection parameters, which expand into IN lists
+                        List<Integer> listMarkers = new ArrayList<>();
+                        List<String> listFields = new ArrayList<>();
+                        TypeMirror collectionType = processingEnv.getTypeUtils().erasure(
+                                processingEnv.getElementUtils().getTypeElement("java.util.Collection").asType());
 
                         if (paramsDeclType != null) {
                             Matcher m = VARIABLE_PATTERN.matcher(safeSQL);
+                            int marker = 0;
                             while (m.find()) {
                                 for (Element member : this.processingEnv.getElementUtils().getAllMembers((TypeElement) paramsDeclType)) {
                                     if (!member.getSimpleName().toString().equals(m.group(1))) {
@@ -303,7 +378,8 @@ public class SQLStatementProcessor extends AbstractProcessor {
                                                     // FIXME what about primitive arrays
                                                     Type arrType = member.getAnnotation(Type.class);
                                                     if (arrType != null) {
-                                                        w.write("        pstmt.setArray(idx++, conn.createArrayOf(\"" + arrType.value() + "\", p." + member.getSimpleName() + "));\n");
+                                                        writeNullable(w, member, "java.sql.Types.ARRAY",
+                                                                "pstmt.setArray(idx++, conn.createArrayOf(\"" + arrType.value() + "\", p." + member.getSimpleName() + "));");
                                                     }
                                                     break;
                                                 case DOUBLE:
@@ -322,178 +398,126 @@ public class SQLStatementProcessor extends AbstractProcessor {
                                                     DeclaredType declType = (DeclaredType) varType;
                                                     Element varClassTypeElement = declType.asElement();
 
-                                                    if (varClassTypeElement instanceof TypeElement) {
+                                                    if (processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(varType), collectionType)) {
+                                                        w.write("        idx = com.github.cmcgeemac.norm.InList.bind(pstmt, idx, p." + member.getSimpleName() + ");\n");
+                                                        listMarkers.add(marker);
+                                                        listFields.add(member.getSimpleName().toString());
+                                                    } else if (varClassTypeElement instanceof TypeElement) {
                                                         TypeElement varClassType = (TypeElement) varClassTypeElement;
                                                         String fqClassType = varClassType.getQualifiedName().toString();
 
-                                                        if (null == fqClassType) {
-                                                            w.write("        pstmt.setObject(idx++, p." + member.getSimpleName() + ");\n");
-                                                        } else {
-                                                            switch (fqClassType) {
-                                                                case "java.sql.Date":
-                                                                    w.write("        pstmt.setDate(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.math.BigDecimal":
-                                                                    w.write("        pstmt.setBigDecimal(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.sql.Time":
-                                                                    w.write("        pstmt.setTime(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.String":
-                                                                    w.write("        pstmt.setString(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.sql.Timestamp":
-                                                                    w.write("        pstmt.setTimestamp(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.net.URL":
-                                                                    w.write("        pstmt.setURL(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.sql.Array":
-                                                                    w.write("        pstmt.setArray(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.Boolean":
-                                                                    w.write("        pstmt.setBoolean(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.Integer":
-                                                                    w.write("        pstmt.setInt(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.Double":
-                                                                    w.write("        pstmt.setDouble(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.Float":
-                                                                    w.write("        pstmt.setFloat(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.Long":
-                                                                    w.write("        pstmt.setLong(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                case "java.lang.Short":
-                                                                    w.write("        pstmt.setShort(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                                default:
-                                                                    w.write("        pstmt.setObject(idx++, p." + member.getSimpleName() + ");\n");
-                                                                    break;
-                                                            }
-                                                        }
-                                                    }
-                                                    break;
-                                                default:
-                                                    messager.printMessage(Diagnostic.Kind.ERROR,
-                                                            "SQL statement references the following variables from parameters class with a type that cannot be mapped to JDBC: " + member.getSimpleName(),
-                                                            statementElement);
-                                                    break;
-                                            }
-                                        }
-                                    }
-                                }
-
-                                safeSQL = m.replaceFirst("?");
-                                m = VARIABLE_PATTERN.matcher(safeSQL);
-                            }
-                        }
-                        w.write("    }\n");
-                        w.write("\n");
-                        w.write("    @Override\n");
-                        w.write("    public void result(" + fqResultsClass + " r, ResultSet rs) throws SQLException {\n");
-                        if (resultsDeclType != null) {
-                            for (Element member : this.processingEnv.getElementUtils().getAllMembers((TypeElement) resultsDeclType)) {
-                                if (member.getKind() == ElementKind.FIELD) {
-                                    TypeMirror varType = member.asType();
-
-                                    if (null != varType.getKind()) {
-                                        switch (varType.getKind()) {
-                                            case INT:
-                                                w.write("        r." + member.getSimpleName() + " = rs.getInt(\"" + member.getSimpleName() + "\");\n");
-                                                break;
-                                            case BOOLEAN:
-                                                w.write("        r." + member.getSimpleName() + " = rs.getBoolean(\"" + member.getSimpleName() + "\");\n");
-                                                break;
-                                            case ARRAY:
-                                                w.write("        r." + member.getSimpleName() + " = (" + varType.toString() + ")rs.getArray(\"" + member.getSimpleName() + "\").getArray();\n");
-                                                break;
-                                            case DOUBLE:
-                                                w.write("        r." + member.getSimpleName() + " = rs.getDouble(\"" + member.getSimpleName() + "\");\n");
-                                                break;
-                                            case FLOAT:
-                                                w.write("        r." + member.getSimpleName() + " = rs.getFloat(\"" + member.getSimpleName() + "\");\n");
-                                                break;
-                                            case LONG:
-                                                w.write("        r." + member.getSimpleName() + " = rs.getLong(\"" + member.getSimpleName() + "\");\n");
-                                                break;
-                                            case SHORT:
-                                                w.write("        r." + member.getSimpleName() + " = rs.getShort(\"" + member.getSimpleName() + "\");\n");
-                                                break;
-                                            case DECLARED:
-                                                DeclaredType declType = (DeclaredType) varType;
-                                                Element varClassTypeElement = declType.asElement();
-                                                if (varClassTypeElement instanceof TypeElement) {
-                                                    TypeElement varClassType = (TypeElement) varClassTypeElement;
-                                                    String fqClassType = varClassType.getQualifiedName().toString();
-
-                                                    if (null == fqClassType) {
-                                                        w.write("        r." + member.getSimpleName() + " = (" + varType + ")rs.getObject(\"" + member.getSimpleName() + "\");\n");
-                                                    } else {
+                                                        String setter;
                                                         switch (fqClassType) {
                                                             case "java.sql.Date":
-                                                                w.write("        r." + member.getSimpleName() + " = getDate(" + member.getSimpleName() + ");\n");
+                                                                setter = "setDate";
                                                                 break;
                                                             case "java.math.BigDecimal":
-                                                                w.write("        r." + member.getSimpleName() + " = getBigDecimal(" + member.getSimpleName() + ");\n");
+                                                                setter = "setBigDecimal";
                                                                 break;
                                                             case "java.sql.Time":
-                                                                w.write("        r." + member.getSimpleName() + " = getTime(" + member.getSimpleName() + ");\n");
+                                                                setter = "setTime";
                                                                 break;
                                                             case "java.lang.String":
-                                                                w.write("        r." + member.getSimpleName() + " = getString(" + member.getSimpleName() + ");\n");
+                                                                setter = "setString";
                                                                 break;
                                                             case "java.sql.Timestamp":
-                                                                w.write("        r." + member.getSimpleName() + " = getTimestamp(" + member.getSimpleName() + ");\n");
+                                                                setter = "setTimestamp";
                                                                 break;
                                                             case "java.net.URL":
-                                                                w.write("        r." + member.getSimpleName() + " = getURL(" + member.getSimpleName() + ");\n");
+                                                                setter = "setURL";
                                                                 break;
                                                             case "java.sql.Array":
-                                                                w.write("        r." + member.getSimpleName() + " = getArray(" + member.getSimpleName() + ");\n");
+                                                                setter = "setArray";
                                                                 break;
                                                             case "java.lang.Boolean":
-                                                                w.write("        r." + member.getSimpleName() + " = getBoolean(" + member.getSimpleName() + ");\n");
+                                                                setter = "setBoolean";
                                                                 break;
                                                             case "java.lang.Integer":
-                                                                w.write("        r." + member.getSimpleName() + " = getnt(" + member.getSimpleName() + ");\n");
+                                                                setter = "setInt";
                                                                 break;
                                                             case "java.lang.Double":
-                                                                w.write("        r." + member.getSimpleName() + " = getDouble(" + member.getSimpleName() + ");\n");
+                                                                setter = "setDouble";
                                                                 break;
                                                             case "java.lang.Float":
-                                                                w.write("        r." + member.getSimpleName() + " = getFloat(" + member.getSimpleName() + ");\n");
+                                                                setter = "setFloat";
                                                                 break;
                                                             case "java.lang.Long":
-                                                                w.write("        r." + member.getSimpleName() + " = getLong(" + member.getSimpleName() + ");\n");
+                                                                setter = "setLong";
                                                                 break;
                                                             case "java.lang.Short":
-                                                                w.write("        r." + member.getSimpleName() + " = getShort(" + member.getSimpleName() + ");\n");
+                                                                setter = "setShort";
                                                                 break;
                                                             default:
-                                                                w.write("        pstmt.setObject(idx++, p." + member.getSimpleName() + ");\n");
+                                                                setter = "setObject";
                                                                 break;
                                                         }
+
+                                                        // Nulls are bound with the type of the values so that the parameter types stay the same
+                                                        writeNullable(w, member, SqlTypes.name(SqlTypes.of(fqClassType, member.getAnnotation(Type.class))),
+                                                                "pstmt." + setter + "(idx++, p." + member.getSimpleName() + ");");
                                                     }
-                                                }
-                                                break;
-                                            default:
-                                                break;
+                                                    break;
+                                                default:
+                                                    messager.printMessage(Diagnostic.Kind.ERROR,
+                                                            "SQL statement references the following variables from parameters class with a type that cannot be mapped to JDBC: " + member.getSimpleName(),
+                                                            statementElement);
+                                                    break;
+                                            }
                                         }
                                     }
                                 }
+
+                                safeSQL = m.replaceFirst("?");
+                                m = VARIABLE_PATTERN.matcher(safeSQL);
+                                marker++;
                             }
                         }
+                        w.write("        return idx;\n");
                         w.write("    }\n");
+                        w.write("\n");
+                        w.write("    @Override\n");
+                        w.write("    public void result(" + fqResultsClass + " r, ResultSet rs) throws SQLException {\n");
+                        if (resultsDeclType != null) {
+                            Map<String, Integer> ordinals = Util.resultColumnOrdinals(sqlParsed);
+
+                            for (VariableElement member : ElementFilter.fieldsIn(this.processingEnv.getElementUtils().getAllMembers((TypeElement) resultsDeclType))) {
+                                if (member.getModifiers().contains(Modifier.STATIC)) {
+                                    continue;
+                                }
+
+                                // Results created by their constructor can only have the rest of their fields filled in
+                                if (rowCtor != null && member.getModifiers().contains(Modifier.FINAL)) {
+                                    continue;
+                                }
+
+                                // Columns are read by their position in the SELECT list when it is known at compile time
+                                String name = member.getSimpleName().toString();
+                                Integer ordinal = ordinals.get(name.toLowerCase(Locale.ROOT));
+                                String col = ordinal != null ? ordinal.toString() : "\"" + name + "\"";
+
+                                writeResultField(w, "r." + name, member.asType(), col);
+                            }
+                        }
+                        w.write("    }\n");
+                        if (rowCtor != null) {
+                            writeRow(w, (TypeElement) resultsDeclType, rowCtor, rowColumns, Util.resultColumnOrdinals(sqlParsed));
+                        }
+                        if (resultsDeclType != null) {
+                            writeResultColumns(w, (TypeElement) resultsDeclType, Util.resultColumnOrdinals(sqlParsed));
+                        }
                         w.write("    @Override\n");
                         w.write("    public String getSafeSQL() {\n");
-                        w.write("        return \"" + safeSQL.replaceAll("\"", "\\\"") + "\";\n");
+                        w.write("        return " + javaString(safeSQL) + ";\n");
                         w.write("    }\n");
+                        if (!listMarkers.isEmpty()) {
+                            writeInList(w, fqParametersClass, safeSQL, listMarkers, listFields);
+                        }
                         w.write("\n");
                         w.write("}\n");
                         w.close();
+
+                        pending.computeIfAbsent(pkgName, k -> new TreeMap<>())
+                                .put(processingEnv.getElementUtils().getBinaryName(statementElement).toString(), fqHandlerClass);
                     } catch (IOException ex) {
                         Logger.getLogger(SQLStatementProcessor.class.getName()).log(Level.SEVERE, null, ex);
                     }
@@ -501,7 +525,381 @@ public class SQLStatementProcessor extends AbstractProcessor {
             }
         }
 
+        writeFactories(filer);
+        if (env.processingOver()) {
+            writeIndex(filer);
+        }
+
         return false;
     }
 
+    /**
+     * Writes a factory for the handlers generated in each package, so that
+     * they are created without reflection.
+     */
+    private void writeFactories(Filer filer) {
+        for (Map.Entry<String, Map<String, String>> e : pending.entrySet()) {
+            // Statements of the same package can turn up in a later round
+            String factory = e.getKey() + ".NormHandlerFactory";
+            for (int i = 2; factories.contains(factory); i++) {
+                factory = e.getKey() + ".NormHandlerFactory" + i;
+            }
+            factories.add(factory);
+
+            try (Writer w = filer.createSourceFile(factory).openWriter()) {
+                w.write("package " + e.getKey() + ";\n");
+                w.write("\n");
+                w.write("public final class " + factory.substring(e.getKey().length() + 1) + " implements com.github.cmcgeemac.norm.HandlerFactory {\n");
+                w.write("    @Override\n");
+                w.write("    public com.github.cmcgeemac.norm.StatementHandler<?, ?> create(String statementClass) {\n");
+                w.write("        switch (statementClass) {\n");
+                for (Map.Entry<String, String> handler : e.getValue().entrySet()) {
+                    w.write("            case " + javaString(handler.getKey()) + ":\n");
+                    w.write("                return new " + handler.getValue() + "();\n");
+                }
+                w.write("            default:\n");
+                w.write("                return null;\n");
+                w.write("        }\n");
+                w.write("    }\n");
+                w.write("}\n");
+            } catch (IOException ex) {
+                Logger.getLogger(SQLStatementProcessor.class.getName()).log(Level.SEVERE, null, ex);
+                continue;
+            }
+
+            for (String statement : e.getValue().keySet()) {
+                index.put(statement, factory);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Writes the index of the statements with generated handlers, which the
+     * runtime reads instead of looking for each handler by name.
+     */
+    private void writeIndex(Filer filer) {
+        if (index.isEmpty()) {
+            return;
+        }
+
+        try (Writer w = filer.createResource(StandardLocation.CLASS_OUTPUT, "", HandlerRegistry.INDEX).openWriter()) {
+            w.write("# Statement classes and the factories of their generated handlers\n");
+            for (Map.Entry<String, String> e : index.entrySet()) {
+                w.write(e.getKey() + "=" + e.getValue() + "\n");
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(SQLStatementProcessor.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    /**
+     * Writes the binding of a field that can be null, which binds the null
+     * with the SQL type rather than passing it to the setter.
+     */
+    private static void writeNullable(Writer w, Element member, String sqlType, String set) throws IOException {
+        w.write("        if (p." + member.getSimpleName() + " == null) {\n");
+        w.write("            pstmt.setNull(idx++, " + sqlType + ");\n");
+        w.write("        } else {\n");
+        w.write("            " + set + "\n");
+        w.write("        }\n");
+    }
+
+    /**
+     * Finds the constructor that creates the results from each row in the
+     * same way as {@link RowConstructor}, and adds the column of each of its
+     * parameters. The parameter names are always known from the source, where
+     * at runtime they need the class to be compiled with -parameters.
+     */
+    private ExecutableElement rowConstructor(TypeElement type, List<String> columns) {
+        javax.lang.model.util.Types types = processingEnv.getTypeUtils();
+        List<VariableElement> fields = new ArrayList<>();
+        for (VariableElement f : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (!f.getModifiers().contains(Modifier.STATIC)) {
+                fields.add(f);
+            }
+        }
+
+        ExecutableElement annotated = null;
+        ExecutableElement allFields = null;
+        boolean defaultCtor = false;
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            List<? extends VariableElement> params = ctor.getParameters();
+            if (ctor.getAnnotation(ResultConstructor.class) != null) {
+                annotated = ctor;
+            }
+            if (params.isEmpty()) {
+                defaultCtor = true;
+            }
+
+            // Matched by name as at runtime, where reflection doesn't guarantee the order of the fields
+            boolean takesFields = !fields.isEmpty() && params.size() == fields.size();
+            for (int i = 0; takesFields && i < params.size(); i++) {
+                VariableElement param = params.get(i);
+                takesFields = fields.stream().anyMatch(f -> f.getSimpleName().contentEquals(param.getSimpleName())
+                        && types.isSameType(param.asType(), f.asType()));
+            }
+            if (takesFields && allFields == null) {
+                allFields = ctor;
+            }
+        }
+
+        ExecutableElement ctor = annotated != null ? annotated : defaultCtor ? null : allFields;
+        if (ctor == null) {
+            return null;
+        }
+
+        String[] listed = annotated != null ? annotated.getAnnotation(ResultConstructor.class).value() : new String[0];
+        if (listed.length != 0) {
+            columns.addAll(Arrays.asList(listed));
+        } else {
+            ctor.getParameters().forEach(p -> columns.add(p.getSimpleName().toString()));
+        }
+
+        if (columns.size() != ctor.getParameters().size()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "The @ResultConstructor lists " + columns.size() + " columns for " + ctor.getParameters().size() + " parameters", ctor);
+        }
+        return ctor;
+    }
+
+    /**
+     * Writes the creation of a result from a row with its constructor, with
+     * the columns read into locals first.
+     */
+    private void writeRow(Writer w, TypeElement type, ExecutableElement ctor, List<String> columns, Map<String, Integer> ordinals) throws IOException {
+        String fqType = type.getQualifiedName().toString();
+        StringBuilder args = new StringBuilder();
+
+        w.write("\n");
+        w.write("    @Override\n");
+        w.write("    public boolean isConstructed() {\n");
+        w.write("        return true;\n");
+        w.write("    }\n");
+        w.write("\n");
+        w.write("    @Override\n");
+        w.write("    public " + fqType + " row(Object outer, ResultSet rs, int[] columns) throws SQLException {\n");
+        for (int i = 0; i < columns.size() && i < ctor.getParameters().size(); i++) {
+            TypeMirror varType = ctor.getParameters().get(i).asType();
+            Integer ordinal = ordinals.get(columns.get(i).toLowerCase(Locale.ROOT));
+            String col = ordinal != null ? ordinal.toString() : javaString(columns.get(i));
+
+            String local = "c" + i;
+            w.write("        " + processingEnv.getTypeUtils().erasure(varType) + " " + local + " = "
+                    + (!varType.getKind().isPrimitive() ? "null" : varType.getKind() == TypeKind.BOOLEAN ? "false" : "0") + ";\n");
+            writeResultField(w, local, varType, col);
+            args.append(i == 0 ? "" : ", ").append(local);
+        }
+
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            String fqOuter = ((TypeElement) type.getEnclosingElement()).getQualifiedName().toString();
+            w.write("        if (!(outer instanceof " + fqOuter + ")) {\n");
+            w.write("            throw new IllegalStateException(\"An instance of " + fqOuter + " is needed to construct " + fqType + "\");\n");
+            w.write("        }\n");
+            w.write("        return ((" + fqOuter + ") outer).new " + type.getSimpleName() + "(" + args + ");\n");
+        } else {
+            w.write("        return new " + fqType + "(" + args + ");\n");
+        }
+        w.write("    }\n");
+    }
+
+    private static String javaString(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r") + "\"";
+    }
+
+    /**
+     * Writes the expansion of the placeholders for collection parameters.
+     */
+    private static void writeInList(Writer w, String fqParametersClass, String safeSQL, List<Integer> markers, List<String> fields) throws IOException {
+        StringBuilder m = new StringBuilder();
+        StringBuilder f = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < markers.size(); i++) {
+            String sep = i == 0 ? "" : ", ";
+            m.append(sep).append(markers.get(i));
+            f.append(sep).append(javaString(fields.get(i)));
+            values.append(sep).append("p.").append(fields.get(i));
+        }
+
+        w.write("\n");
+        w.write("    private static final com.github.cmcgeemac.norm.InList IN_LIST = new com.github.cmcgeemac.norm.InList(" + javaString(safeSQL)
+                + ", new int[]{" + m + "}, new String[]{" + f + "});\n");
+        w.write("\n");
+        w.write("    @Override\n");
+        w.write("    public com.github.cmcgeemac.norm.InList getInList() {\n");
+        w.write("        return IN_LIST;\n");
+        w.write("    }\n");
+        w.write("\n");
+        w.write("    @Override\n");
+        w.write("    public String getSafeSQL(" + fqParametersClass + " p) {\n");
+        w.write("        return IN_LIST.sql(" + values + ");\n");
+        w.write("    }\n");
+    }
+
+    /**
+     * Writes the column lookup for the fields whose position in the SELECT
+     * list is known at compile time.
+     */
+    private void writeResultColumns(Writer w, TypeElement resultsType, Map<String, Integer> ordinals) throws IOException {
+        StringBuilder cases = new StringBuilder();
+        for (VariableElement member : ElementFilter.fieldsIn(this.processingEnv.getElementUtils().getAllMembers(resultsType))) {
+            String name = member.getSimpleName().toString();
+            Integer ordinal = ordinals.get(name.toLowerCase(Locale.ROOT));
+            if (!member.getModifiers().contains(Modifier.STATIC) && ordinal != null) {
+                cases.append("            case \"").append(name).append("\":\n");
+                cases.append("                return ").append(ordinal).append(";\n");
+            }
+        }
+
+        if (cases.length() == 0) {
+            return;
+        }
+
+        w.write("\n");
+        w.write("    @Override\n");
+        w.write("    public int column(ResultSet rs, String field) throws SQLException {\n");
+        w.write("        switch (field) {\n");
+        w.write(cases.toString());
+        w.write("            default:\n");
+        w.write("                return rs.findColumn(field);\n");
+        w.write("        }\n");
+        w.write("    }\n");
+        w.write("\n");
+    }
+
+    private static void writeFactory(Writer w, TypeElement type, String noCtor, String placeholder) throws IOException {
+        if (placeholder != null) {
+            w.write("        " + placeholder + "\n");
+            return;
+        }
+
+        if (type == null) {
+            w.write("        " + noCtor + "\n");
+            return;
+        }
+
+        boolean defaultCtor = false;
+        for (ExecutableElement ctor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (ctor.getParameters().isEmpty() && !ctor.getModifiers().contains(Modifier.PRIVATE)) {
+                defaultCtor = true;
+            }
+        }
+
+        if (!defaultCtor || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            w.write("        " + noCtor + "\n");
+            return;
+        }
+
+        String fqType = type.getQualifiedName().toString();
+
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            // Inner classes are constructed with the instance enclosing the statement
+            String fqOuter = ((TypeElement) type.getEnclosingElement()).getQualifiedName().toString();
+            w.write("        if (!(outer instanceof " + fqOuter + ")) {\n");
+            w.write("            throw new IllegalStateException(\"An instance of " + fqOuter + " is needed to construct " + fqType + "\");\n");
+            w.write("        }\n");
+            w.write("        return ((" + fqOuter + ") outer).new " + type.getSimpleName() + "();\n");
+        } else {
+            w.write("        return new " + fqType + "();\n");
+        }
+    }
+
+    private static void writeResultField(Writer w, String target, TypeMirror varType, String col) throws IOException {
+
+        switch (varType.getKind()) {
+            case INT:
+                w.write("        " + target + " = rs.getInt(" + col + ");\n");
+                break;
+            case BOOLEAN:
+                w.write("        " + target + " = rs.getBoolean(" + col + ");\n");
+                break;
+            case ARRAY:
+                w.write("        {\n");
+                w.write("            java.sql.Array a = rs.getArray(" + col + ");\n");
+                w.write("            " + target + " = a != null ? (" + varType.toString() + ") a.getArray() : null;\n");
+                w.write("        }\n");
+                break;
+            case DOUBLE:
+                w.write("        " + target + " = rs.getDouble(" + col + ");\n");
+                break;
+            case FLOAT:
+                w.write("        " + target + " = rs.getFloat(" + col + ");\n");
+                break;
+            case LONG:
+                w.write("        " + target + " = rs.getLong(" + col + ");\n");
+                break;
+            case SHORT:
+                w.write("        " + target + " = rs.getShort(" + col + ");\n");
+                break;
+            case DECLARED:
+                String fqClassType = ((TypeElement) ((DeclaredType) varType).asElement()).getQualifiedName().toString();
+                String getter;
+                boolean boxed = false;
+
+                switch (fqClassType) {
+                    case "java.sql.Date":
+                        getter = "getDate";
+                        break;
+                    case "java.math.BigDecimal":
+                        getter = "getBigDecimal";
+                        break;
+                    case "java.sql.Time":
+                        getter = "getTime";
+                        break;
+                    case "java.lang.String":
+                        getter = "getString";
+                        break;
+                    case "java.sql.Timestamp":
+                        getter = "getTimestamp";
+                        break;
+                    case "java.net.URL":
+                        getter = "getURL";
+                        break;
+                    case "java.sql.Array":
+                        getter = "getArray";
+                        break;
+                    case "java.lang.Boolean":
+                        getter = "getBoolean";
+                        boxed = true;
+                        break;
+                    case "java.lang.Integer":
+                        getter = "getInt";
+                        boxed = true;
+                        break;
+                    case "java.lang.Double":
+                        getter = "getDouble";
+                        boxed = true;
+                        break;
+                    case "java.lang.Float":
+                        getter = "getFloat";
+                        boxed = true;
+                        break;
+                    case "java.lang.Long":
+                        getter = "getLong";
+                        boxed = true;
+                        break;
+                    case "java.lang.Short":
+                        getter = "getShort";
+                        boxed = true;
+                        break;
+                    default:
+                        getter = null;
+                        break;
+                }
+
+                if (getter == null) {
+                    w.write("        " + target + " = (" + fqClassType + ") rs.getObject(" + col + ");\n");
+                } else if (boxed) {
+                    w.write("        " + target + " = rs." + getter + "(" + col + ");\n");
+                    w.write("        if (rs.wasNull()) {\n");
+                    w.write("            " + target + " = null;\n");
+                    w.write("        }\n");
+                } else {
+                    w.write("        " + target + " = rs." + getter + "(" + col + ");\n");
+                }
+                break;
+            default:
+                break;
+        }
+    }
 }
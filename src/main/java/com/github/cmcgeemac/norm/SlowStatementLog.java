@@ -0,0 +1,307 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * A {@link StatementListener} that logs the statements that take longer than
+ * a threshold. Each entry is logged as a WARNING to the logger named after
+ * this class, with the {@link Entry} as the parameter of the log record for
+ * handlers that want the details one by one. The values of the parameters
+ * fields annotated with {@link Redact} are left out.
+ *
+ * <p>
+ * The log can also capture the plan of slow queries by running them again
+ * with an EXPLAIN prefix on the same connection, with the same parameters.
+ * Only queries are explained, and only on connections in auto-commit mode, so
+ * that a failed EXPLAIN can't abort the caller's transaction. Capturing plans
+ * puts more load on the database, so at most one plan is captured per
+ * interval no matter how many statements are slow.
+ * </p>
+ *
+ * <pre>
+ * SlowStatementLog slow = new SlowStatementLog(500, TimeUnit.MILLISECONDS);
+ * slow.setPlanCapture("EXPLAIN ", 1, TimeUnit.MINUTES);
+ * StatementListeners.add(slow);
+ * </pre>
+ */
+public final class SlowStatementLog implements StatementListener {
+
+    private static final Logger LOG = Logger.getLogger(SlowStatementLog.class.getName());
+
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Field f : type.getDeclaredFields()) {
+                if (f.isSynthetic() || Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+
+                f.setAccessible(true);
+                fields.add(f);
+            }
+            return fields.toArray(new Field[fields.size()]);
+        }
+    };
+
+    private final long thresholdNanos;
+
+    private volatile String explainPrefix;
+    private volatile long planIntervalNanos;
+    private final AtomicLong lastPlan = new AtomicLong();
+
+    public SlowStatementLog(long threshold, TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+        }
+
+        thresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Turns on capturing the plans of slow queries, at most once per
+     * interval. The prefix is put before the SQL of the statement to get the
+     * plan, such as "EXPLAIN " for PostgreSQL, MySQL and H2, and every row of
+     * the first column of the results becomes a line of the plan. The prefix
+     * must only plan the statement, never execute it, so "EXPLAIN ANALYZE "
+     * and the like don't belong here. A null prefix turns the plan capture
+     * off again.
+     */
+    public void setPlanCapture(String explainPrefix, long interval, TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval must not be negative: " + interval);
+        }
+
+        planIntervalNanos = unit.toNanos(interval);
+        lastPlan.set(System.nanoTime() - planIntervalNanos);
+        this.explainPrefix = explainPrefix;
+    }
+
+    @Override
+    public void executed(StatementExecution execution) {
+        if (execution.getTotalNanos() < thresholdNanos || !LOG.isLoggable(Level.WARNING)) {
+            return;
+        }
+
+        String plan = execution.getFailure() == null ? capturePlan(execution) : null;
+        Entry entry = new Entry(execution, parameters(execution.parameters), plan);
+
+        LogRecord r = new LogRecord(Level.WARNING, entry.toString());
+        r.setLoggerName(LOG.getName());
+        r.setParameters(new Object[]{entry});
+        LOG.log(r);
+    }
+
+    private boolean planAllowed() {
+        long interval = planIntervalNanos;
+        long now = System.nanoTime();
+        long last = lastPlan.get();
+
+        return now - last >= interval && lastPlan.compareAndSet(last, now);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String capturePlan(StatementExecution x) {
+        String prefix = explainPrefix;
+
+        // Only queries, since a prefix that executes as well would run a write twice
+        if (prefix == null || x.connection == null || x.getKind() != StatementExecution.Kind.QUERY) {
+            return null;
+        }
+
+        // A failed statement aborts the whole transaction on some databases, PostgreSQL among them
+        try {
+            if (!x.connection.getAutoCommit() || !planAllowed()) {
+                return null;
+            }
+        } catch (SQLException e) {
+            LOG.log(Level.FINE, "Unable to capture the plan of " + x.getSQL(), e);
+            return null;
+        }
+
+        try (PreparedStatement pstmt = x.connection.prepareStatement(prefix + x.getSQL())) {
+            if (x.parameters != null) {
+                x.statement.handler.setParameters(x.parameters, pstmt, x.connection);
+            }
+
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    if (plan.length() > 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        } catch (SQLException | RuntimeException e) {
+            LOG.log(Level.FINE, "Unable to capture the plan of " + x.getSQL(), e);
+            return null;
+        }
+    }
+
+    static Map<String, String> parameters(Object p) {
+        if (p == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Field f : FIELDS.get(p.getClass())) {
+            Object v;
+            try {
+                v = f.get(p);
+            } catch (IllegalAccessException e) {
+                v = "<unreadable>";
+            }
+
+            values.put(f.getName(), f.isAnnotationPresent(Redact.class) ? redact(v) : format(v));
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static String redact(Object v) {
+        if (v == null) {
+            return "null";
+        } else if (v instanceof CharSequence) {
+            return "<redacted " + v.getClass().getSimpleName() + "(" + ((CharSequence) v).length() + ")>";
+        } else if (v.getClass().isArray()) {
+            return "<redacted " + v.getClass().getComponentType().getSimpleName() + "[" + Array.getLength(v) + "]>";
+        } else {
+            return "<redacted " + v.getClass().getSimpleName() + ">";
+        }
+    }
+
+    private static String format(Object v) {
+        String s;
+        if (v == null) {
+            return "null";
+        } else if (v instanceof CharSequence) {
+            s = "'" + v + "'";
+        } else if (v.getClass().isArray()) {
+            StringBuilder b = new StringBuilder("[");
+            for (int i = 0; i < Array.getLength(v) && b.length() <= MAX_VALUE_LENGTH; i++) {
+                if (i > 0) {
+                    b.append(", ");
+                }
+                b.append(format(Array.get(v, i)));
+            }
+            s = b.append(']').toString();
+        } else {
+            s = v.toString();
+        }
+
+        return s.length() > MAX_VALUE_LENGTH ? s.substring(0, MAX_VALUE_LENGTH) + "..." : s;
+    }
+
+    /**
+     * The details of one slow statement execution.
+     */
+    public static final class Entry {
+
+        private final Class<?> statementClass;
+        private final String sql;
+        private final StatementExecution.Kind kind;
+        private final Map<String, String> parameters;
+        private final long rows;
+        private final long updates;
+        private final long elapsedNanos;
+        private final Throwable failure;
+        private final String plan;
+
+        Entry(StatementExecution x, Map<String, String> parameters, String plan) {
+            this.statementClass = x.getStatementClass();
+            this.sql = x.getSQL();
+            this.kind = x.getKind();
+            this.parameters = parameters;
+            this.rows = x.getRows();
+            this.updates = x.getUpdates();
+            this.elapsedNanos = x.getTotalNanos();
+            this.failure = x.getFailure();
+            this.plan = plan;
+        }
+
+        public Class<?> getStatementClass() {
+            return statementClass;
+        }
+
+        public String getSQL() {
+            return sql;
+        }
+
+        public StatementExecution.Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * The values of the parameters fields by name, as they would be shown
+         * in the log with the redacted ones replaced.
+         */
+        public Map<String, String> getParameters() {
+            return parameters;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getUpdates() {
+            return updates;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        /**
+         * The plan of the statement, or null if it wasn't captured.
+         */
+        public String getPlan() {
+            return plan;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder("Slow statement")
+                    .append(" class=").append(statementClass.getName())
+                    .append(" kind=").append(kind)
+                    .append(" elapsedMs=").append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                    .append(" rows=").append(rows)
+                    .append(" updates=").append(updates)
+                    .append(" sql=\"").append(sql).append('"')
+                    .append(" parameters=").append(parameters);
+            if (failure != null) {
+                b.append(" failure=\"").append(failure.getMessage()).append('"');
+            }
+            if (plan != null) {
+                b.append(" plan=\"").append(plan).append('"');
+            }
+            return b.toString();
+        }
+    }
+}
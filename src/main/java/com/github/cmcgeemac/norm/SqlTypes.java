@@ -0,0 +1,78 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.JDBCType;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Works out the SQL type that a parameter field binds its nulls with. A null
+ * bound with the same type as the values keeps the parameter types of the
+ * statement the same from one execution to the next, which some databases,
+ * such as PostgreSQL, need to keep using the plan they prepared for it.
+ */
+final class SqlTypes {
+
+    private static final Map<String, Integer> JAVA_TYPES = new HashMap<>();
+
+    private static final Map<String, Integer> JDBC_TYPES = new HashMap<>();
+
+    static {
+        JAVA_TYPES.put("java.lang.Integer", Types.INTEGER);
+        JAVA_TYPES.put("java.lang.Long", Types.BIGINT);
+        JAVA_TYPES.put("java.lang.Short", Types.SMALLINT);
+        JAVA_TYPES.put("java.lang.Float", Types.REAL);
+        JAVA_TYPES.put("java.lang.Double", Types.DOUBLE);
+        JAVA_TYPES.put("java.lang.Boolean", Types.BOOLEAN);
+        JAVA_TYPES.put("java.lang.String", Types.VARCHAR);
+        JAVA_TYPES.put("java.sql.Date", Types.DATE);
+        JAVA_TYPES.put("java.sql.Time", Types.TIME);
+        JAVA_TYPES.put("java.sql.Timestamp", Types.TIMESTAMP);
+        JAVA_TYPES.put("java.math.BigDecimal", Types.NUMERIC);
+        JAVA_TYPES.put("java.net.URL", Types.DATALINK);
+        JAVA_TYPES.put("java.sql.Array", Types.ARRAY);
+
+        for (JDBCType t : JDBCType.values()) {
+            JDBC_TYPES.put(t.getName(), t.getVendorTypeNumber());
+        }
+    }
+
+    private SqlTypes() {
+    }
+
+    /**
+     * The SQL type for a field of the Java type, given by its name as in
+     * {@link Class#getTypeName()}. A {@link Type} naming a JDBC type decides
+     * for fields that aren't arrays, where it names the type of the elements
+     * instead. Fields whose type can't be worked out give {@link Types#NULL},
+     * which leaves it to the driver.
+     */
+    static int of(String javaType, Type t) {
+        if (javaType.endsWith("[]")) {
+            return Types.ARRAY;
+        }
+
+        if (t != null) {
+            Integer named = JDBC_TYPES.get(t.value().trim().toUpperCase(Locale.ROOT));
+            if (named != null) {
+                return named;
+            }
+        }
+
+        Integer sqlType = JAVA_TYPES.get(javaType);
+        return sqlType != null ? sqlType : Types.NULL;
+    }
+
+    /**
+     * The name of the constant in {@link Types}, for generated code.
+     */
+    static String name(int sqlType) {
+        return "java.sql.Types." + JDBCType.valueOf(sqlType).getName();
+    }
+}
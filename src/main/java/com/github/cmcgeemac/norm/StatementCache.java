@@ -0,0 +1,301 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a bounded, least recently used, set of prepared statements for each
+ * connection so that statements with the same safe SQL don't need to be
+ * prepared by the database on every execution. Statements are shared by all
+ * NORM statement instances with the same SQL.
+ *
+ * <p>
+ * A cached statement is checked out of the cache while it is executing, so
+ * concurrent or nested executions of the same SQL on one connection each get
+ * their own statement. Statements evicted from the cache are closed. The
+ * statements of a connection are dropped when the connection is found to be
+ * closed, which is checked every {@value #SWEEP_INTERVAL} statements returned
+ * to the cache. They can also be released right away with
+ * {@link #close(Connection)} before closing the connection.
+ * </p>
+ */
+public final class StatementCache {
+
+    private static final Logger LOGGER = Logger.getLogger(StatementCache.class.getName());
+
+    /**
+     * How many statements are returned to the cache between checks for
+     * closed connections.
+     */
+    static final int SWEEP_INTERVAL = 1024;
+
+    // Not weak keys, since the prepared statements hold on to their connections
+    private static final Map<ConnectionKey, Statements> CACHES = new ConcurrentHashMap<>();
+
+    private static final AtomicLong RELEASES = new AtomicLong();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong EVICTIONS = new AtomicLong();
+
+    private static volatile int capacity = 32;
+
+    private StatementCache() {
+    }
+
+    /**
+     * Sets the maximum number of idle prepared statements kept for each
+     * connection. A capacity of zero disables the cache so that every
+     * execution prepares and then closes its own statement.
+     */
+    public static void setCapacity(int newCapacity) {
+        if (newCapacity < 0) {
+            throw new IllegalArgumentException("Statement cache capacity cannot be negative: " + newCapacity);
+        }
+
+        capacity = newCapacity;
+
+        List<PreparedStatement> evicted = new ArrayList<>();
+        for (Statements s : CACHES.values()) {
+            s.lock.lock();
+            try {
+                s.trim(evicted);
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        closeAll(evicted);
+    }
+
+    public static int getCapacity() {
+        return capacity;
+    }
+
+    public static long getHitCount() {
+        return HITS.get();
+    }
+
+    public static long getMissCount() {
+        return MISSES.get();
+    }
+
+    public static long getEvictionCount() {
+        return EVICTIONS.get();
+    }
+
+    /**
+     * Closes and forgets the cached statements for the connection. Call this
+     * before closing a connection to release the statements right away.
+     */
+    public static void close(Connection c) {
+        Statements s = CACHES.remove(new ConnectionKey(c));
+        if (s != null) {
+            closeAll(s.drop());
+        }
+    }
+
+    /**
+     * Whether there is an idle statement for the SQL cached for the
+     * connection.
+     */
+    static boolean isCached(Connection c, String safeSQL) {
+        Statements s = CACHES.get(new ConnectionKey(c));
+        if (s == null) {
+            return false;
+        }
+
+        s.lock.lock();
+        try {
+            return s.containsKey(safeSQL);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    static PreparedStatement prepare(Connection c, String safeSQL) throws SQLException {
+        return prepare(c, safeSQL, null);
+    }
+
+    /**
+     * Obtains a statement that returns generated keys.
+     *
+     * @param keys the columns with the keys, an empty array for the driver to
+     * choose them or null for no generated keys
+     */
+    static PreparedStatement prepare(Connection c, String safeSQL, String[] keys) throws SQLException {
+        if (capacity == 0) {
+            return create(c, safeSQL, keys);
+        }
+
+        PreparedStatement pstmt = null;
+        Statements s = CACHES.get(new ConnectionKey(c));
+        if (s != null) {
+            s.lock.lock();
+            try {
+                pstmt = s.remove(key(safeSQL, keys));
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        if (pstmt != null && !pstmt.isClosed()) {
+            HITS.incrementAndGet();
+            return pstmt;
+        }
+
+        MISSES.incrementAndGet();
+        return create(c, safeSQL, keys);
+    }
+
+    private static PreparedStatement create(Connection c, String safeSQL, String[] keys) throws SQLException {
+        if (keys == null) {
+            return c.prepareStatement(safeSQL);
+        }
+        return keys.length == 0 ? c.prepareStatement(safeSQL, Statement.RETURN_GENERATED_KEYS) : c.prepareStatement(safeSQL, keys);
+    }
+
+    // Statements that return generated keys are kept apart from the ones that don't
+    private static String key(String safeSQL, String[] keys) {
+        return keys == null ? safeSQL : safeSQL + "\n-- generated keys " + String.join(", ", keys);
+    }
+
+    static void release(Connection c, String safeSQL, PreparedStatement pstmt, boolean reusable) {
+        release(c, safeSQL, null, pstmt, reusable);
+    }
+
+    static void release(Connection c, String safeSQL, String[] keys, PreparedStatement pstmt, boolean reusable) {
+        if (!reusable || capacity == 0) {
+            closeAll(Collections.singletonList(pstmt));
+            return;
+        }
+
+        List<PreparedStatement> evicted = new ArrayList<>();
+        Statements s = CACHES.computeIfAbsent(new ConnectionKey(c), k -> new Statements());
+        s.lock.lock();
+        try {
+            if (s.dropped) {
+                // The connection was closed or swept while the statement was out
+                evicted.add(pstmt);
+            } else {
+                PreparedStatement previous = s.put(key(safeSQL, keys), pstmt);
+                if (previous != null && previous != pstmt) {
+                    evicted.add(previous);
+                }
+                s.trim(evicted);
+            }
+        } finally {
+            s.lock.unlock();
+        }
+        closeAll(evicted);
+
+        // Connections in a pool may live on long after others were closed without a word
+        if (RELEASES.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            sweep();
+        }
+    }
+
+    private static void sweep() {
+        // Checked on a snapshot so that no lock is held while asking the driver
+        List<PreparedStatement> stale = new ArrayList<>();
+        for (Map.Entry<ConnectionKey, Statements> e : new ArrayList<>(CACHES.entrySet())) {
+            boolean closed;
+            try {
+                closed = e.getKey().connection.isClosed();
+            } catch (SQLException ex) {
+                closed = true;
+            }
+
+            if (closed && CACHES.remove(e.getKey(), e.getValue())) {
+                stale.addAll(e.getValue().drop());
+            }
+        }
+        closeAll(stale);
+    }
+
+    private static void closeAll(List<PreparedStatement> pstmts) {
+        for (PreparedStatement pstmt : pstmts) {
+            try {
+                pstmt.close();
+            } catch (SQLException ex) {
+                LOGGER.log(Level.FINE, "Unable to close prepared statement", ex);
+            }
+        }
+    }
+
+    /**
+     * Compares connections by identity, since pools and drivers may override
+     * equals.
+     */
+    private static final class ConnectionKey {
+
+        final Connection connection;
+
+        ConnectionKey(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ConnectionKey && ((ConnectionKey) o).connection == connection;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(connection);
+        }
+    }
+
+    private static class Statements extends LinkedHashMap<String, PreparedStatement> {
+
+        private static final long serialVersionUID = 1L;
+
+        // A lock rather than a monitor so that virtual threads waiting on it don't pin their carrier
+        final transient ReentrantLock lock = new ReentrantLock();
+
+        // Set once the statements are no longer in the cache, guarded by the lock
+        boolean dropped;
+
+        Statements() {
+            super(16, 0.75f, true);
+        }
+
+        List<PreparedStatement> drop() {
+            lock.lock();
+            try {
+                dropped = true;
+                List<PreparedStatement> all = new ArrayList<>(values());
+                clear();
+                return all;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void trim(List<PreparedStatement> evicted) {
+            Iterator<PreparedStatement> it = values().iterator();
+            while (size() > capacity && it.hasNext()) {
+                evicted.add(it.next());
+                it.remove();
+                EVICTIONS.incrementAndGet();
+            }
+        }
+    }
+}
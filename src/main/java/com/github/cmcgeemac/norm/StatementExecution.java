@@ -0,0 +1,173 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+
+/**
+ * The timings and counts of a single statement execution that are given to
+ * the {@link StatementListener}s. The time of each phase is measured from the
+ * end of the previous one. The total time also includes releasing the prepared
+ * statement afterwards.
+ */
+public final class StatementExecution {
+
+    /**
+     * The execute method that was called.
+     */
+    public enum Kind {
+        EXECUTE, QUERY, UPDATE, BATCH
+    }
+
+    /**
+     * The phases of an execution.
+     */
+    public enum Phase {
+        /**
+         * Getting the prepared statement from the cache or the connection.
+         */
+        PREPARE,
+        /**
+         * Setting the parameters on the prepared statement. For batches this
+         * includes adding each set of parameters to the batch.
+         */
+        BIND,
+        /**
+         * Running the statement in the database.
+         */
+        EXECUTE,
+        /**
+         * Reading the rows from the result set and mapping them to result
+         * objects.
+         */
+        MAP
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    final StatementListener[] listeners;
+
+    // For the listeners in this package that need to look closer
+    final AbstractStatement<?> statement;
+    final Connection connection;
+    final Object parameters;
+
+    private final Class<?> statementClass;
+    private final String sql;
+    private final Kind kind;
+
+    private final long start;
+    private long last;
+    private long end;
+    private final long[] nanos = new long[PHASES.length];
+
+    private long rows;
+    private long updates;
+    private Throwable failure;
+
+    <P> StatementExecution(StatementListener[] listeners, AbstractStatement<P> statement, Kind kind, Connection connection, P parameters) {
+        this.listeners = listeners;
+        this.statement = statement;
+        this.statementClass = statement.getClass();
+        this.sql = statement.sql(parameters);
+        this.kind = kind;
+        this.connection = connection;
+        this.parameters = parameters;
+        this.start = System.nanoTime();
+        this.last = start;
+    }
+
+    /**
+     * Ends the phase, adding the time since the previous phase ended.
+     */
+    void mark(Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - last;
+        last = now;
+    }
+
+    void end() {
+        end = System.nanoTime();
+    }
+
+    void rows(long rows) {
+        this.rows = rows;
+    }
+
+    void updates(long updates) {
+        this.updates = updates;
+    }
+
+    void failed(Throwable failure) {
+        this.failure = failure;
+    }
+
+    public Class<?> getStatementClass() {
+        return statementClass;
+    }
+
+    /**
+     * The SQL that was sent to the database for the statement, with JDBC
+     * placeholders in place of the variables.
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The time spent in the phase in nanoseconds, which is zero for phases
+     * that didn't happen, such as MAP for updates or those after a failure.
+     */
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * The time of the whole execution in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return end - start;
+    }
+
+    /**
+     * The number of rows that were read from the results.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * The number of rows that the database reported as updated. For batches
+     * this is the sum over all of the parameters objects.
+     */
+    public long getUpdates() {
+        return updates;
+    }
+
+    /**
+     * The exception that the execution failed with, or null if it succeeded.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(statementClass.getName()).append(' ').append(kind);
+        for (Phase p : PHASES) {
+            b.append(' ').append(p).append('=').append(nanos[p.ordinal()]).append("ns");
+        }
+        b.append(" rows=").append(rows).append(" updates=").append(updates);
+        if (failure != null) {
+            b.append(" failure=").append(failure);
+        }
+        return b.toString();
+    }
+}
@@ -18,8 +18,91 @@ public interface StatementHandler<P, R> {
 
     String getSafeSQL();
 
+    /**
+     * The safe SQL for executing with the parameters, which only differs from
+     * {@link #getSafeSQL()} when collection parameters are expanded.
+     */
+    default String getSafeSQL(P p) {
+        return getSafeSQL();
+    }
+
+    /**
+     * The expansion of the collection parameters, or null if there are none.
+     */
+    default InList getInList() {
+        return null;
+    }
+
+    /**
+     * Creates a default parameters object. The outer is the instance enclosing
+     * the statement, for parameters classes that are inner classes.
+     */
+    P createParameters(Object outer);
+
+    /**
+     * Creates an empty result object to be filled in from a row. The outer is
+     * the instance enclosing the statement, for results classes that are inner
+     * classes. Results created by their constructor from each row are created
+     * with {@link #row(Object, ResultSet, int[])} instead.
+     */
+    R createResult(Object outer);
+
     void setParameters(P p, PreparedStatement pstmt, Connection conn) throws SQLException;
 
+    /**
+     * Binds the parameters from a placeholder other than the first, for
+     * statements that have them more than once, such as multi-row inserts.
+     *
+     * @return the placeholder after the last one that was bound
+     */
+    int setParameters(P p, PreparedStatement pstmt, Connection conn, int idx) throws SQLException;
+
+    /**
+     * Fills in the result from the current row. Only the fields that aren't
+     * final are filled in for results that are created by their constructor.
+     */
     void result(R r, ResultSet rs) throws SQLException;
 
+    /**
+     * Works out anything about the shape of the result set that can be reused
+     * for all of its rows, such as the column indexes.
+     */
+    default int[] columns(ResultSet rs) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Fills in the result from the current row using the columns that were
+     * worked out for the result set.
+     */
+    default void result(R r, ResultSet rs, int[] columns) throws SQLException {
+        result(r, rs);
+    }
+
+    /**
+     * Whether the results are created from each row by a constructor, rather
+     * than created empty and filled in.
+     */
+    default boolean isConstructed() {
+        return false;
+    }
+
+    /**
+     * Creates the result for the current row using the columns that were
+     * worked out for the result set.
+     */
+    default R row(Object outer, ResultSet rs, int[] columns) throws SQLException {
+        R r = createResult(outer);
+        result(r, rs, columns);
+        return r;
+    }
+
+    /**
+     * Finds the column that holds a field of the results, for reading the
+     * results a column at a time instead of into result objects.
+     */
+    default int column(ResultSet rs, String field) throws SQLException {
+        return rs.findColumn(field);
+    }
+
 }
@@ -0,0 +1,114 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The {@link Hints} of a statement in a form that can be changed for a single
+ * statement object. The ones from the annotation are shared by all of the
+ * statement objects of a class, so they are copied before they are changed.
+ */
+final class StatementHints {
+
+    /**
+     * The fetch size for cursors and adaptive fetching when none is given.
+     */
+    static final int DEFAULT_FETCH_SIZE = 100;
+
+    static final StatementHints NONE = new StatementHints();
+
+    int fetchSize;
+    int maxRows;
+    int fetchDirection = ResultSet.FETCH_FORWARD;
+    int queryTimeout;
+    boolean cursor;
+    boolean adaptiveFetch;
+    int fetchMemory = 4 * 1024 * 1024;
+
+    private StatementHints() {
+    }
+
+    static StatementHints of(Hints h) {
+        if (h == null) {
+            return NONE;
+        }
+
+        StatementHints s = new StatementHints();
+        s.fetchSize = h.fetchSize();
+        s.maxRows = h.maxRows();
+        s.fetchDirection = h.fetchDirection();
+        s.queryTimeout = h.queryTimeout();
+        s.cursor = h.cursor();
+        s.adaptiveFetch = h.adaptiveFetch();
+        s.fetchMemory = h.fetchMemory();
+        return s;
+    }
+
+    StatementHints copy() {
+        StatementHints s = new StatementHints();
+        s.fetchSize = fetchSize;
+        s.maxRows = maxRows;
+        s.fetchDirection = fetchDirection;
+        s.queryTimeout = queryTimeout;
+        s.cursor = cursor;
+        s.adaptiveFetch = adaptiveFetch;
+        s.fetchMemory = fetchMemory;
+        return s;
+    }
+
+    /**
+     * The fetch size to start with, since cursors and adaptive fetching need
+     * one.
+     */
+    int initialFetchSize() {
+        if (fetchSize > 0 || !(cursor || adaptiveFetch)) {
+            return fetchSize;
+        }
+        return DEFAULT_FETCH_SIZE;
+    }
+
+    boolean isDefault() {
+        return initialFetchSize() == 0 && maxRows == 0 && fetchDirection == ResultSet.FETCH_FORWARD && queryTimeout == 0;
+    }
+
+    void apply(PreparedStatement pstmt) throws SQLException {
+        int f = initialFetchSize();
+        if (f != 0) {
+            pstmt.setFetchSize(f);
+        }
+        if (maxRows != 0) {
+            pstmt.setMaxRows(maxRows);
+        }
+        if (fetchDirection != ResultSet.FETCH_FORWARD) {
+            pstmt.setFetchDirection(fetchDirection);
+        }
+        if (queryTimeout != 0) {
+            pstmt.setQueryTimeout(queryTimeout);
+        }
+    }
+
+    /**
+     * Puts back the driver defaults for the hints that were applied so that
+     * the next statement object to use a cached statement doesn't get them.
+     */
+    void reset(PreparedStatement pstmt) throws SQLException {
+        if (initialFetchSize() != 0) {
+            pstmt.setFetchSize(0);
+        }
+        if (maxRows != 0) {
+            pstmt.setMaxRows(0);
+        }
+        if (fetchDirection != ResultSet.FETCH_FORWARD) {
+            pstmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+        }
+        if (queryTimeout != 0) {
+            pstmt.setQueryTimeout(0);
+        }
+    }
+}
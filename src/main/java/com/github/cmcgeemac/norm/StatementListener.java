@@ -0,0 +1,28 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+/**
+ * Receives the details of each statement execution, such as how long each
+ * phase took and how many rows were read or updated. Listeners are registered
+ * with {@link StatementListeners#add(StatementListener)}. The execute,
+ * executeQuery, executeUpdate and executeBatch methods are reported, but not
+ * the streams from executeQueryStream, which are consumed at the caller's pace.
+ *
+ * <p>
+ * Listeners are called on the thread that executed the statement, after the
+ * prepared statement has been released and before the execute method returns
+ * or throws, so they should be quick. An exception thrown by a listener is
+ * logged and otherwise ignored.
+ * </p>
+ *
+ * @see StatementRecorder
+ */
+@FunctionalInterface
+public interface StatementListener {
+
+    void executed(StatementExecution execution);
+}
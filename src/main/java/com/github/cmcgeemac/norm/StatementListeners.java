@@ -0,0 +1,102 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link StatementListener}s that are told about every statement
+ * execution. When there are none the executions aren't timed at all, so
+ * leaving the support in place costs nothing more than reading a field.
+ */
+public final class StatementListeners {
+
+    private static final StatementListener[] NONE = new StatementListener[0];
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private static volatile StatementListener[] listeners = NONE;
+
+    private StatementListeners() {
+    }
+
+    public static void add(StatementListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+
+        LOCK.lock();
+        try {
+            StatementListener[] l = Arrays.copyOf(listeners, listeners.length + 1);
+            l[l.length - 1] = listener;
+            listeners = l;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * Removes the listener so that it isn't told about any executions that
+     * start afterwards.
+     *
+     * @return Whether the listener had been added.
+     */
+    public static boolean remove(StatementListener listener) {
+        LOCK.lock();
+        try {
+            StatementListener[] l = listeners;
+            for (int i = 0; i < l.length; i++) {
+                if (l[i] == listener) {
+                    StatementListener[] n = new StatementListener[l.length - 1];
+                    System.arraycopy(l, 0, n, 0, i);
+                    System.arraycopy(l, i + 1, n, i, l.length - i - 1);
+                    listeners = n.length == 0 ? NONE : n;
+                    return true;
+                }
+            }
+        } finally {
+            LOCK.unlock();
+        }
+
+        return false;
+    }
+
+    /**
+     * Starts timing an execution if there are any listeners.
+     *
+     * @return The execution to record the phases in, or null when there's
+     * nobody listening.
+     */
+    static <P> StatementExecution start(AbstractStatement<P> statement, StatementExecution.Kind kind, Connection c, P p) {
+        StatementListener[] l = listeners;
+        if (l.length == 0) {
+            return null;
+        }
+
+        return new StatementExecution(l, statement, kind, c, p);
+    }
+
+    static void finish(StatementExecution execution) {
+        if (execution == null) {
+            return;
+        }
+
+        execution.end();
+
+        for (StatementListener l : execution.listeners) {
+            try {
+                l.executed(execution);
+            } catch (RuntimeException e) {
+                Logger.getLogger(StatementListeners.class.getName()).log(Level.WARNING,
+                        "Statement listener " + l + " failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.lang.reflect.AnnotatedType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.statement.Statement;
+
+/**
+ * Everything about a statement class that doesn't change from one instance to
+ * the next. It is worked out once for each statement class, the first time that
+ * one is constructed, so that constructing statements inline stays cheap.
+ */
+final class StatementMetadata {
+
+    private static final ClassValue<StatementMetadata> METADATA = new ClassValue<StatementMetadata>() {
+        @Override
+        protected StatementMetadata computeValue(Class<?> type) {
+            return new StatementMetadata(type);
+        }
+    };
+
+    static StatementMetadata of(Class<?> statementClass) {
+        return METADATA.get(statementClass);
+    }
+
+    final Class<?> paramsClass;
+    final Constructor<?> paramsCtor;
+
+    final Class<?> resultClass;
+    final Constructor<?> resultCtor;
+
+    // The constructor that creates the results from each row, or null if they are filled in
+    final RowConstructor rowCtor;
+
+    final StatementHandler handler;
+    final boolean generated;
+    final String safeSQL;
+    final StatementHints hints;
+
+    // The rewrite into a multi-row insert, or null if the statement can't be rewritten
+    final MultiRowInsert multiRowInsert;
+
+    final GeneratedKeys generatedKeys;
+
+    private final Field outerThis;
+
+    private StatementMetadata(Class<?> c) {
+        java.lang.reflect.Type[] types = ((ParameterizedType) c.getGenericSuperclass()).getActualTypeArguments();
+        if (types == null || types.length > 2) {
+            throw new IllegalArgumentException("NormStatements must extend and provide actual types for the generic variables of the superclass.");
+        }
+
+        outerThis = findOuterThis(c);
+        Class<?> outerClass = outerThis != null ? outerThis.getType() : null;
+
+        paramsClass = (Class<?>) types[0];
+        paramsCtor = findConstructor(paramsClass, outerClass);
+
+        resultClass = types.length > 1 ? (Class<?>) types[1] : null;
+
+        // Check for a handler class to bypass the initialization
+        StatementHandler h = HandlerRegistry.find(c);
+
+        // It could be the placeholder
+        if (resultClass == null || NoR.class.equals(resultClass)) {
+            resultCtor = null;
+            rowCtor = null;
+        } else {
+            resultCtor = findConstructor(resultClass, outerClass);
+
+            // Generated handlers know the parameter names of the constructor from the source
+            rowCtor = h == null ? RowConstructor.of(resultClass, resultCtor != null) : null;
+            if (h == null && resultCtor == null && rowCtor == null) {
+                throw new IllegalArgumentException("No default constructor found for the result class " + resultClass.getTypeName()
+                        + ", nor a @ResultConstructor or a constructor with parameters named after all of its fields, which needs -parameters");
+            }
+        }
+
+        if (h == null) {
+            AssertCodeGen[] cg = c.getAnnotationsByType(AssertCodeGen.class);
+            if (cg.length != 0) {
+                throw new IllegalStateException("Statement is declared as @CodeGenerate but not code generated handler is present. Check the compiler settings that permit annotation processor.");
+            }
+
+            HandlerRegistry.fallback(c);
+        }
+
+        generated = h != null;
+
+        if (h == null) {
+            // Without a generated handler one is put together at runtime
+            List<Field> slots = new ArrayList<>();
+            String sql = initWithReflection(c, slots);
+            h = new ReflectiveStatementHandler(sql, slots, paramsCtor, resultCtor, rowCtor);
+        }
+
+        handler = h;
+        safeSQL = handler.getSafeSQL();
+        hints = StatementHints.of(findHints(c));
+        multiRowInsert = handler.getInList() == null ? MultiRowInsert.of(safeSQL) : null;
+        generatedKeys = GeneratedKeys.of(paramsClass);
+    }
+
+    /**
+     * Finds the hints in the same places as the SQL annotation.
+     */
+    private static Hints findHints(Class<?> c) {
+        Hints[] hints = c.getAnnotationsByType(Hints.class);
+        if (hints.length == 0) {
+            hints = c.getAnnotatedSuperclass().getAnnotationsByType(Hints.class);
+        }
+        return hints.length != 0 ? hints[0] : null;
+    }
+
+    /**
+     * The instance of the class enclosing the statement, if there is one, so
+     * that inner parameters and results classes can be constructed.
+     */
+    Object outer(Object statement) {
+        if (outerThis == null) {
+            return null;
+        }
+
+        try {
+            return outerThis.get(statement);
+        } catch (IllegalAccessException | IllegalArgumentException ex) {
+            // Best effort
+            return null;
+        }
+    }
+
+    private static Field findOuterThis(Class<?> c) {
+        // TODO this is a hack that may not work with all compilers
+        try {
+            Field f = c.getDeclaredField("this$0");
+            f.setAccessible(true);
+            return f;
+        } catch (NoSuchFieldException | SecurityException ex) {
+            // Best effort
+            return null;
+        }
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Class<?> outerClass) {
+        Constructor<?> ctor = Arrays.asList(type.getDeclaredConstructors()).stream()
+                .filter(ct -> ct.getParameterCount() == 0 || ct.getParameterCount() == 1 && outerClass != null && ct.getParameterTypes()[0].isAssignableFrom(outerClass))
+                .findFirst()
+                .orElse(null);
+
+        if (ctor != null) {
+            ctor.setAccessible(true);
+        }
+
+        return ctor;
+    }
+
+    private String initWithReflection(Class<?> c, List<Field> slots) {
+        SQL[] sql = c.getAnnotationsByType(SQL.class);
+
+        // The SQL annotation can either be on the subclass or the parent class
+        if (sql == null || sql.length == 0) {
+            AnnotatedType type = c.getAnnotatedSuperclass();
+            sql = type.getAnnotationsByType(SQL.class);
+        }
+
+        if (sql == null || sql.length != 1) {
+            throw new IllegalArgumentException("All NormStatements must have a single SQL annotation with the SQL statement on either the base class or its immediate superclass.");
+        }
+
+        String sqlStr = sql[0].value();
+
+        Set<String> dereferencedParms = new HashSet<>();
+        Set<String> referencedParms = new HashSet<>();
+
+        try {
+            Statement sqlParsed = CCJSqlParserUtil.parse(sqlStr);
+            Util.visitJdbcParameters(sqlParsed, (JdbcNamedParameter p) -> {
+                referencedParms.add(p.getName());
+
+                // Generate a very unique token for discovering slots later on
+                return "@@@" + p.getName() + "@@@";
+            });
+            sqlStr = Util.statementToString(sqlParsed);
+        } catch (JSQLParserException ex) {
+            throw new IllegalArgumentException(
+                    "@SQL annotation has a bad SQL statement: " + ex.getMessage(),
+                    ex);
+        }
+
+        for (Field f : paramsClass.getDeclaredFields()) {
+            if (f.isSynthetic()) {
+                continue;
+            }
+
+            if (!referencedParms.contains(f.getName())) {
+                if (f.isAnnotationPresent(GeneratedKey.class)) {
+                    continue;
+                }
+
+                Logger.getLogger(AbstractStatement.class.getName()).warning(
+                        "The statement parameter type " + paramsClass.getTypeName() + " has a field with name "
+                        + f.getName() + " but the @SQL query doesn't have a matching variable in " + c.getTypeName());
+            } else {
+                dereferencedParms.add(f.getName());
+            }
+
+            if (f.getType().isArray()) {
+                Type[] t = f.getAnnotationsByType(Type.class);
+                if (t == null || t.length != 1) {
+                    throw new IllegalArgumentException("Parameters class field " + f.getName() + " is an array and must have a @Type annotation to set the database type of the ARRAY");
+                }
+            }
+        }
+
+        referencedParms.removeAll(dereferencedParms);
+        if (!referencedParms.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "SQL statement references the following variables from parameters class that do not exist: " + referencedParms);
+        }
+
+        // Replace the tokens with the JDBC placeholders in a single pass, noting the slot for each one
+        Matcher m = AbstractStatement.VARIABLE_PATTERN.matcher(sqlStr);
+        StringBuffer safe = new StringBuffer();
+        while (m.find()) {
+            try {
+                Field f = paramsClass.getDeclaredField(m.group(1));
+                f.setAccessible(true);
+                slots.add(f);
+            } catch (NoSuchFieldException ignored) {
+                // This should not happen because an exception would have been thrown above
+            }
+            m.appendReplacement(safe, "?");
+        }
+        m.appendTail(safe);
+
+        return safe.toString();
+    }
+}
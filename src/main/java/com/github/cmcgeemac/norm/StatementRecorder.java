@@ -0,0 +1,131 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link StatementListener} that keeps a {@link LatencyHistogram} of the
+ * total time and of each phase for every statement class, along with counts
+ * of the executions, failures, rows and updates. Recording doesn't lock, so
+ * it can be left on for statements that are executed very often.
+ *
+ * <pre>
+ * StatementRecorder recorder = new StatementRecorder();
+ * StatementListeners.add(recorder);
+ * ...
+ * recorder.getStats().forEach((stmt, stats) -&gt; System.out.println(stmt.getName() + " " + stats));
+ * </pre>
+ */
+public final class StatementRecorder implements StatementListener {
+
+    private final Map<Class<?>, Stats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public void executed(StatementExecution execution) {
+        Stats s = stats.get(execution.getStatementClass());
+        if (s == null) {
+            s = stats.computeIfAbsent(execution.getStatementClass(), k -> new Stats());
+        }
+
+        s.record(execution);
+    }
+
+    /**
+     * The statistics for the statement class, or null if it hasn't been
+     * executed since the recorder was added or reset.
+     */
+    public Stats getStats(Class<?> statementClass) {
+        return stats.get(statementClass);
+    }
+
+    /**
+     * The statistics of all of the statement classes that have been executed.
+     * The map is a live view that gains statement classes as they are
+     * executed.
+     */
+    public Map<Class<?>, Stats> getStats() {
+        return Collections.unmodifiableMap(stats);
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * The statistics of one statement class.
+     */
+    public static final class Stats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram[] phases = new LatencyHistogram[StatementExecution.Phase.values().length];
+
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder updates = new LongAdder();
+
+        Stats() {
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = new LatencyHistogram();
+            }
+        }
+
+        void record(StatementExecution x) {
+            latency.record(x.getTotalNanos());
+            for (StatementExecution.Phase p : StatementExecution.Phase.values()) {
+                // Only queries have rows to map
+                if (p != StatementExecution.Phase.MAP || x.getKind() == StatementExecution.Kind.QUERY) {
+                    phases[p.ordinal()].record(x.getNanos(p));
+                }
+            }
+
+            if (x.getFailure() != null) {
+                failures.increment();
+            }
+            rows.add(x.getRows());
+            updates.add(x.getUpdates());
+        }
+
+        public long getExecutions() {
+            return latency.getCount();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getUpdates() {
+            return updates.sum();
+        }
+
+        /**
+         * The histogram of the total time of the executions.
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * The histogram of the time of one phase of the executions.
+         */
+        public LatencyHistogram getLatency(StatementExecution.Phase phase) {
+            return phases[phase.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return "executions=" + getExecutions() + " failures=" + getFailures() + " rows=" + getRows()
+                    + " updates=" + getUpdates() + " latency[" + latency + "]";
+        }
+    }
+}
@@ -15,6 +15,12 @@ import java.lang.annotation.Target;
  * {@link Parameters} fields. This is a required tag when the field of a
  * parameter or result has an array type so that sufficient database type
  * information can be provided.
+ *
+ * <p>
+ * On other parameter fields a JDBC type name, such as {@code VARCHAR}, sets
+ * the type that the field's nulls are bound with. Without it nulls are bound
+ * with the type that goes with the Java type of the field.
+ * </p>
  */
 @Retention(value = RetentionPolicy.RUNTIME)
 @Target(value = ElementType.FIELD)
@@ -5,15 +5,50 @@
  */
 package com.github.cmcgeemac.norm;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import net.sf.jsqlparser.expression.JdbcNamedParameter;
+import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.util.TablesNamesFinder;
 import net.sf.jsqlparser.util.deparser.ExpressionDeParser;
 import net.sf.jsqlparser.util.deparser.SelectDeParser;
 import net.sf.jsqlparser.util.deparser.StatementDeParser;
 
 class Util {
 
+    /**
+     * Finds the positions of the JDBC placeholders in the SQL, leaving out any
+     * question marks inside of quotes.
+     */
+    static List<Integer> placeholders(String sql) {
+        List<Integer> positions = new ArrayList<>();
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '\'' || ch == '"') {
+                quote = ch;
+            } else if (ch == '?') {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+
     static String statementToString(Statement sqlParsed) {
         StringBuilder buffer = new StringBuilder();
         ExpressionDeParser expr = new ExpressionDeParser();
@@ -63,4 +98,77 @@ class Util {
         };
         statement.accept(new StatementDeParser(ev, sd, new StringBuilder()));
     }
+
+    /**
+     * Works out the position of each result column from the SELECT list of
+     * the statement, keyed by the lower case column label. The map is empty
+     * when the columns can't be known without the database, such as with
+     * "SELECT *" or a UNION.
+     */
+    static Map<String, Integer> resultColumnOrdinals(Statement statement) {
+        if (!(statement instanceof Select) || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+            return Collections.emptyMap();
+        }
+
+        PlainSelect select = (PlainSelect) ((Select) statement).getSelectBody();
+        Map<String, Integer> ordinals = new HashMap<>();
+
+        int ordinal = 1;
+        for (SelectItem item : select.getSelectItems()) {
+            if (!(item instanceof SelectExpressionItem)) {
+                // Any kind of * hides the real positions of the columns
+                return Collections.emptyMap();
+            }
+
+            SelectExpressionItem expr = (SelectExpressionItem) item;
+            String label = null;
+            if (expr.getAlias() != null) {
+                label = expr.getAlias().getName();
+            } else if (expr.getExpression() instanceof Column) {
+                label = ((Column) expr.getExpression()).getColumnName();
+            }
+
+            if (label != null) {
+                // The first one wins like ResultSet.findColumn()
+                ordinals.putIfAbsent(unquote(label).toLowerCase(Locale.ROOT), ordinal);
+            }
+
+            ordinal++;
+        }
+
+        return ordinals;
+    }
+
+    /**
+     * Finds the tables that a statement reads or writes, without their schema
+     * or quotes and in lower case, so that the same table written in different
+     * ways is recognized.
+     *
+     * @return null when the tables can't be worked out
+     */
+    static Set<String> tableNames(Statement statement) {
+        List<String> names;
+        try {
+            names = new TablesNamesFinder().getTableList(statement);
+        } catch (UnsupportedOperationException e) {
+            return null;
+        }
+
+        Set<String> tables = new HashSet<>();
+        for (String name : names) {
+            String table = name.substring(name.lastIndexOf('.') + 1);
+            tables.add(unquote(table).toLowerCase(Locale.ROOT));
+        }
+        return tables;
+    }
+
+    private static String unquote(String name) {
+        if (name.length() > 1 && (name.startsWith("\"") && name.endsWith("\"")
+                || name.startsWith("`") && name.endsWith("`")
+                || name.startsWith("[") && name.endsWith("]"))) {
+            return name.substring(1, name.length() - 1);
+        }
+
+        return name;
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormExecutor {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @SQL("UPDATE bar SET foo = 1 WHERE id = :id")
+    private static class Update extends NormStatement<QueryParameters, NoR> {
+    }
+
+    private final List<Connection> connections = new ArrayList<>();
+
+    private DataSource dataSource() throws SQLException {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).then(i -> {
+            Connection c = Mockito.mock(Connection.class);
+            Mockito.when(c.prepareStatement(Mockito.anyString())).then(s -> {
+                PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+                Mockito.when(pstmt.executeUpdate()).thenReturn(1);
+                Mockito.when(pstmt.executeQuery()).then(q -> rows());
+                return pstmt;
+            });
+            connections.add(c);
+            return c;
+        });
+        return ds;
+    }
+
+    private static ResultSet rows() throws SQLException {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(rs.next()).thenReturn(true, false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        return rs;
+    }
+
+    @Test
+    public void testAffinity() throws Exception {
+        DataSource ds = dataSource();
+        Query query = new Query();
+        Update update = new Update();
+
+        try (NormExecutor db = new NormExecutor(ds)) {
+            // The update runs on a second connection while the query holds the first
+            Assert.assertEquals(1, db.executeQuery(query, new QueryParameters(), r -> db.executeUpdate(update, new QueryParameters())));
+            Assert.assertEquals(2, db.getIdleCount());
+            Assert.assertEquals(2, db.getBorrowCount());
+
+            // The query's connection was used last, but the update goes back to its own
+            Assert.assertEquals(1, db.executeUpdate(update, new QueryParameters()));
+            Assert.assertEquals(1, db.getAffinityHitCount());
+            Mockito.verify(connections.get(1), Mockito.times(1)).prepareStatement("UPDATE bar SET foo = 1 WHERE id = ?");
+            Mockito.verify(connections.get(0), Mockito.never()).prepareStatement("UPDATE bar SET foo = 1 WHERE id = ?");
+
+            Assert.assertEquals(1, db.executeQuery(query).size());
+            Assert.assertEquals(2, db.getAffinityHitCount());
+            Assert.assertEquals(2, db.getBorrowCount());
+        }
+
+        for (Connection c : connections) {
+            Mockito.verify(c).close();
+        }
+    }
+
+    @Test
+    public void testFailureGivesBackConnection() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.when(ds.getConnection()).thenReturn(c);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.anyString())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenThrow(new SQLException("boom"));
+
+        NormExecutor db = new NormExecutor(ds);
+        try {
+            db.executeUpdate(new Update(), new QueryParameters());
+            Assert.fail("The failure should be thrown");
+        } catch (SQLException expected) {
+            // Expected
+        }
+
+        Assert.assertEquals(0, db.getIdleCount());
+        Mockito.verify(c).close();
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        DataSource ds = dataSource();
+
+        NormExecutor db = new NormExecutor(ds);
+        db.setIdleTimeout(0, TimeUnit.NANOSECONDS);
+        db.executeUpdate(new Update());
+        Thread.sleep(1);
+        db.executeUpdate(new Update());
+
+        Assert.assertEquals(2, db.getBorrowCount());
+        Mockito.verify(connections.get(0)).close();
+
+        db.setMaxIdle(0);
+        db.setIdleTimeout(1, TimeUnit.HOURS);
+        db.executeUpdate(new Update());
+        Assert.assertEquals(0, db.getIdleCount());
+    }
+
+    @Test
+    public void testIdleTimeoutWithoutNewExecutions() throws Exception {
+        DataSource ds = dataSource();
+        Query query = new Query();
+        Update update = new Update();
+
+        NormExecutor db = new NormExecutor(ds);
+        db.setIdleTimeout(20, TimeUnit.MILLISECONDS);
+
+        // The connection of the update expires while the query is still running
+        db.executeQuery(query, new QueryParameters(), r -> {
+            try {
+                db.executeUpdate(update, new QueryParameters());
+                Thread.sleep(40);
+            } catch (SQLException | InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        Mockito.verify(connections.get(1)).close();
+        Assert.assertEquals(1, db.getIdleCount());
+
+        // And the last one once nothing runs anymore
+        Thread.sleep(40);
+        db.releaseIdle();
+        Mockito.verify(connections.get(0)).close();
+        Assert.assertEquals(0, db.getIdleCount());
+    }
+}
@@ -79,4 +79,21 @@ public class TestNormStatement {
 
         Assert.assertEquals(1, UPDATE_STATEMENT.executeUpdate(c));
     }
+
+    private NormStatement<NoP, NoR> inlineStatement() {
+        return new @SQL("DELETE FROM foo WHERE foo.bar = 1") NormStatement<NoP, NoR>() {
+        };
+    }
+
+    @Test
+    public void testMetadataSharedBetweenInstances() throws Exception {
+        NormStatement<NoP, NoR> first = inlineStatement();
+        NormStatement<NoP, NoR> second = inlineStatement();
+
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.metadata, second.metadata);
+        Assert.assertSame(first.safeSQL, second.safeSQL);
+        Assert.assertNotSame(first.metadata, UPDATE_STATEMENT.metadata);
+        Assert.assertEquals("DELETE FROM foo WHERE foo.bar = 1", first.safeSQL);
+    }
 }
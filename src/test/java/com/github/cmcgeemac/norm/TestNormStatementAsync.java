@@ -0,0 +1,108 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementAsync {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @SQL("UPDATE bar SET foo = 1 WHERE id = :id")
+    private static class Update extends NormStatement<QueryParameters, NoR> {
+    }
+
+    @Test
+    public void testQueryOnDefaultExecutor() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(42);
+
+        // The connection is obtained as part of the task
+        Thread caller = Thread.currentThread();
+        Thread[] runner = new Thread[1];
+        Mockito.when(ds.getConnection()).then(i -> {
+            runner[0] = Thread.currentThread();
+            return c;
+        });
+
+        List<QueryResult> results = new Query().executeQueryAsync(ds, new QueryParameters()).get(10, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(42, results.get(0).foo);
+        Assert.assertNotSame(caller, runner[0]);
+        Mockito.verify(c).close();
+    }
+
+    @Test
+    public void testUpdateFailure() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.when(ds.getConnection()).thenReturn(c);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenThrow(new SQLException("boom"));
+
+        CompletableFuture<Integer> f = new Update().executeUpdateAsync(ds, new QueryParameters(), Runnable::run);
+
+        Assert.assertTrue(f.isCompletedExceptionally());
+        try {
+            f.get();
+            Assert.fail("The failure should be thrown");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+        Mockito.verify(c).close();
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Executor rejecting = r -> {
+            throw new RejectedExecutionException("full");
+        };
+
+        CompletableFuture<Integer> f = new Update().executeUpdateAsync(ds, new QueryParameters(), rejecting);
+
+        Assert.assertTrue(f.isCompletedExceptionally());
+        Mockito.verify(ds, Mockito.never()).getConnection();
+    }
+}
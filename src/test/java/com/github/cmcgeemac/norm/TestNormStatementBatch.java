@@ -0,0 +1,98 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementBatch {
+
+    private static class InsertParameters implements NoP {
+
+        int id;
+        String name;
+
+        InsertParameters(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    @SQL("INSERT INTO foo (id, name) VALUES (:id, :name)")
+    private static class Insert extends NormStatement<InsertParameters, NoR> {
+    }
+
+    private static final Insert INSERT = new Insert();
+
+    @Test
+    public void testBatchChunks() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeBatch()).thenReturn(new int[]{1, 1}).thenReturn(new int[]{1});
+
+        int[] counts = INSERT.executeBatch(c, Arrays.asList(
+                new InsertParameters(1, "a"),
+                new InsertParameters(2, "b"),
+                new InsertParameters(3, "c")), 2);
+
+        Assert.assertArrayEquals(new int[]{1, 1, 1}, counts);
+
+        Mockito.verify(c, Mockito.times(1)).prepareStatement("INSERT INTO foo (id, name) VALUES (?, ?)");
+        Mockito.verify(pstmt, Mockito.times(3)).addBatch();
+        Mockito.verify(pstmt, Mockito.times(2)).executeBatch();
+        Mockito.verify(pstmt).setInt(1, 3);
+        Mockito.verify(pstmt).setString(2, "c");
+    }
+
+    @Test
+    public void testStream() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeBatch()).thenReturn(new int[]{1, 1, 1, 1});
+
+        int[] counts = INSERT.executeBatch(c, IntStream.range(0, 4).mapToObj(i -> new InsertParameters(i, "n" + i)));
+
+        Assert.assertEquals(4, counts.length);
+        Mockito.verify(pstmt, Mockito.times(4)).addBatch();
+        Mockito.verify(pstmt, Mockito.times(1)).executeBatch();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+
+        Assert.assertEquals(0, INSERT.executeBatch(c, Arrays.asList()).length);
+        Mockito.verify(pstmt, Mockito.never()).executeBatch();
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeBatch()).thenThrow(new BatchUpdateException(new int[]{1}));
+
+        try {
+            INSERT.executeBatch(c, Arrays.asList(new InsertParameters(1, "a"), new InsertParameters(1, "a")));
+            Assert.fail("Batch failure was not reported");
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getCause() instanceof BatchUpdateException);
+        }
+
+        Mockito.verify(pstmt).close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementBulkInsert {
+
+    private static class InsertParameters implements NoP {
+
+        int id;
+        String name;
+
+        InsertParameters(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    @SQL("INSERT INTO foo (id, name) VALUES (:id, lower(:name))")
+    private static class Insert extends NormStatement<InsertParameters, NoR> {
+    }
+
+    @SQL("INSERT INTO foo (id, name) SELECT :id, name FROM bar WHERE name = :name")
+    private static class InsertSelect extends NormStatement<InsertParameters, NoR> {
+    }
+
+    private static List<InsertParameters> rows(int n) {
+        return IntStream.range(0, n).mapToObj(i -> new InsertParameters(i, "n" + i)).collect(Collectors.toList());
+    }
+
+    private static Connection connection(List<String> prepared, PreparedStatement pstmt) throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.when(c.prepareStatement(Mockito.anyString())).then(i -> {
+            prepared.add(i.getArgument(0));
+            return pstmt;
+        });
+        return c;
+    }
+
+    @Test
+    public void testChunks() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenReturn(2, 2, 1);
+
+        // Two rows fit in five placeholders
+        Assert.assertEquals(5, new Insert().executeBulkInsert(c, rows(5), 5));
+
+        Assert.assertEquals(Arrays.asList(
+                "INSERT INTO foo (id, name) VALUES (?, lower(?)), (?, lower(?))",
+                "INSERT INTO foo (id, name) VALUES (?, lower(?))"), prepared);
+        Mockito.verify(pstmt, Mockito.times(3)).executeUpdate();
+        Mockito.verify(pstmt).setInt(3, 1);
+        Mockito.verify(pstmt).setString(4, "n1");
+        Mockito.verify(pstmt).setInt(3, 3);
+        Mockito.verify(pstmt).setInt(1, 4);
+        Mockito.verify(pstmt).setString(2, "n4");
+    }
+
+    @Test
+    public void testRemainderInPowersOfTwo() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenReturn(1000, 64, 32, 4);
+
+        // 1000 rows, then 100 more as 64 + 32 + 4
+        Assert.assertEquals(1100, new Insert().executeBulkInsert(c, rows(1100).stream()));
+        Mockito.verify(pstmt, Mockito.times(4)).executeUpdate();
+        Assert.assertEquals(4, prepared.size());
+        Assert.assertEquals(new Insert().metadata.multiRowInsert.sql(64), prepared.get(1));
+    }
+
+    @Test
+    public void testFallbackToBatch() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+        Mockito.when(pstmt.executeBatch()).thenReturn(new int[]{1, 0, 1});
+
+        Assert.assertNull(new InsertSelect().metadata.multiRowInsert);
+        Assert.assertEquals(2, new InsertSelect().executeBulkInsert(c, rows(3)));
+        Mockito.verify(pstmt, Mockito.times(3)).addBatch();
+        Mockito.verify(pstmt, Mockito.never()).executeUpdate();
+    }
+
+    @Test
+    public void testRewritable() {
+        MultiRowInsert insert = MultiRowInsert.of("INSERT INTO foo (a, b) VALUES (?, 'what?') RETURNING id");
+        Assert.assertEquals(1, insert.width);
+        Assert.assertEquals("INSERT INTO foo (a, b) VALUES (?, 'what?'), (?, 'what?') RETURNING id", insert.sql(2));
+
+        Assert.assertNull(MultiRowInsert.of("INSERT INTO foo (a) VALUES (?) ON DUPLICATE KEY UPDATE a = ?"));
+        Assert.assertNull(MultiRowInsert.of("INSERT INTO foo (a) VALUES (?), (?)"));
+        Assert.assertNull(MultiRowInsert.of("INSERT INTO foo (a) VALUES (1)"));
+        Assert.assertNull(MultiRowInsert.of("UPDATE foo SET a = ?"));
+    }
+}
+
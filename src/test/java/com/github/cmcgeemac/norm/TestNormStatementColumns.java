@@ -0,0 +1,103 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementColumns {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class Sale implements NoR {
+
+        long id;
+        Integer quantity;
+        double amount;
+        String region;
+    }
+
+    @SQL("SELECT id, quantity, amount, region FROM sales WHERE store = :id")
+    private static class Sales extends NormStatement<QueryParameters, Sale> {
+    }
+
+    @Test
+    public void testColumns() throws Exception {
+        int rows = 100;
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(rs);
+        Mockito.when(rs.findColumn("id")).thenReturn(1);
+        Mockito.when(rs.findColumn("quantity")).thenReturn(2);
+        Mockito.when(rs.findColumn("amount")).thenReturn(3);
+        Mockito.when(rs.findColumn("region")).thenReturn(4);
+
+        AtomicInteger row = new AtomicInteger();
+        Mockito.when(rs.next()).then(i -> row.incrementAndGet() <= rows);
+        Mockito.when(rs.getLong(1)).then(i -> (long) row.get());
+        // Every tenth quantity is null
+        Mockito.when(rs.getInt(2)).then(i -> row.get() % 10 == 0 ? 0 : row.get());
+        Mockito.when(rs.wasNull()).then(i -> row.get() % 10 == 0);
+        Mockito.when(rs.getDouble(3)).then(i -> row.get() * 1.5);
+        Mockito.when(rs.getString(4)).then(i -> row.get() % 2 == 0 ? "east" : null);
+
+        ResultColumns<Sale> sales = new Sales().executeQueryColumns(c, new QueryParameters());
+
+        Assert.assertEquals(rows, sales.size());
+        Assert.assertEquals(Arrays.asList("id", "quantity", "amount", "region"), Arrays.asList(sales.getFields().toArray()));
+        Assert.assertEquals(rows, sales.getLongs("id").length);
+        Assert.assertEquals(100L, sales.getLongs("id")[99]);
+        Assert.assertEquals(1, sales.getInts("quantity")[0]);
+        Assert.assertEquals(10, sales.getNulls("quantity").cardinality());
+        Assert.assertTrue(sales.isNull("quantity", 9));
+        Assert.assertFalse(sales.isNull("quantity", 10));
+        Assert.assertEquals(150.0, sales.getDoubles("amount")[99], 0);
+        Assert.assertTrue(sales.getNulls("amount").isEmpty());
+        Assert.assertEquals("east", sales.getObjects("region")[1]);
+        Assert.assertTrue(sales.isNull("region", 0));
+
+        // The wasNull() check is only needed for zeros
+        Mockito.verify(rs, Mockito.times(10)).wasNull();
+
+        try {
+            sales.getInts("amount");
+            Assert.fail("The amount isn't an int column");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(rs);
+        Mockito.when(rs.findColumn(Mockito.anyString())).thenThrow(new SQLException("no column"));
+
+        try {
+            new Sales().executeQueryColumns(c, new QueryParameters());
+            Assert.fail("The query should fail");
+        } catch (SQLException expected) {
+            // Expected
+        }
+        Mockito.verify(rs).close();
+        Mockito.verify(pstmt).close();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementConstructedResults {
+
+    private static final class Point implements NoR {
+
+        private final long id;
+        private final Integer count;
+
+        @ResultConstructor({"id", "count"})
+        Point(long id, Integer count) {
+            this.id = id;
+            this.count = count;
+        }
+    }
+
+    @SQL("SELECT id, count FROM points")
+    private static class Points extends NormStatement<NoP, Point> {
+    }
+
+    private static final class Unnamed implements NoR {
+
+        private final long id;
+        private final Integer count;
+
+        Unnamed(long id, Integer count) {
+            this.id = id;
+            this.count = count;
+        }
+    }
+
+    @SQL("SELECT id, count FROM points")
+    private static class UnnamedPoints extends NormStatement<NoP, Unnamed> {
+    }
+
+    private final class Label implements NoR {
+
+        private final String text;
+        private final long key;
+
+        @ResultConstructor({"name", "id"})
+        Label(String text, long key) {
+            this.text = text.toUpperCase();
+            this.key = key;
+        }
+    }
+
+    @SQL("SELECT id, name FROM labels")
+    private class Labels extends NormStatement<NoP, Label> {
+    }
+
+    private static Connection connection(String... labels) throws SQLException {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(rs);
+        Mockito.when(rs.next()).thenReturn(true, true, false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(labels.length);
+        for (int i = 0; i < labels.length; i++) {
+            Mockito.when(metaData.getColumnLabel(i + 1)).thenReturn(labels[i]);
+        }
+        return c;
+    }
+
+    private static ResultSet results(Connection c) throws SQLException {
+        return c.prepareStatement("").executeQuery();
+    }
+
+    @Test
+    public void testListedColumns() throws Exception {
+        Connection c = connection("id", "count");
+        ResultSet rs = results(c);
+        Mockito.when(rs.getLong(1)).thenReturn(1L, 2L);
+        Mockito.when(rs.getInt(2)).thenReturn(5, 0);
+        Mockito.when(rs.wasNull()).thenReturn(false, true);
+
+        Points points = new Points();
+        Assert.assertTrue(points.handler.isConstructed());
+
+        List<Point> results = points.executeQuery(c);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(1L, results.get(0).id);
+        Assert.assertEquals((Integer) 5, results.get(0).count);
+        Assert.assertEquals(2L, results.get(1).id);
+        Assert.assertNull(results.get(1).count);
+    }
+
+    @Test
+    public void testRowsAreNotReused() throws Exception {
+        Connection c = connection("id", "count");
+        ResultSet rs = results(c);
+        Mockito.when(rs.getLong(1)).thenReturn(1L, 2L);
+
+        List<Point> kept = new ArrayList<>();
+        Assert.assertEquals(2, new Points().executeQuery(c, null, kept::add));
+        Assert.assertNotSame(kept.get(0), kept.get(1));
+        Assert.assertEquals(1L, kept.get(0).id);
+        Assert.assertEquals(2L, kept.get(1).id);
+    }
+
+    @Test
+    public void testAnnotatedConstructor() throws Exception {
+        // The columns are in a different order than the parameters
+        Connection c = connection("id", "name");
+        ResultSet rs = results(c);
+        Mockito.when(rs.getLong(1)).thenReturn(7L, 8L);
+        Mockito.when(rs.getString(2)).thenReturn("a", "b");
+
+        List<Label> results = new Labels().executeQuery(c);
+        Assert.assertEquals("A", results.get(0).text);
+        Assert.assertEquals(7L, results.get(0).key);
+        Assert.assertEquals("B", results.get(1).text);
+        Assert.assertEquals(8L, results.get(1).key);
+    }
+
+    @Test
+    public void testUnknownParameterNames() throws Exception {
+        Assume.assumeFalse(Unnamed.class.getDeclaredConstructors()[0].getParameters()[0].isNamePresent());
+
+        // The order of the fields can't stand in for the names of the parameters
+        try {
+            new UnnamedPoints();
+            Assert.fail("The columns of the constructor aren't known");
+        } catch (IllegalArgumentException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("-parameters"));
+        }
+    }
+
+    @Test
+    public void testMissingColumn() throws Exception {
+        Connection c = connection("id");
+
+        try {
+            new Labels().executeQuery(c);
+            Assert.fail("The name column is missing");
+        } catch (SQLException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("constructor parameter for column name"));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementGeneratedKeys {
+
+    private static class ParentParameters implements NoP {
+
+        String name;
+        @GeneratedKey("parent_id")
+        long id;
+        @GeneratedKey
+        Integer version;
+
+        ParentParameters(String name) {
+            this.name = name;
+        }
+    }
+
+    @SQL("INSERT INTO parent (name) VALUES (:name)")
+    private static class InsertParent extends NormStatement<ParentParameters, NoR> {
+    }
+
+    private static class ChildParameters implements NoP {
+
+        long parent = 1;
+    }
+
+    private static class ChildKey implements NoR {
+
+        long id;
+    }
+
+    @SQL("INSERT INTO child (parent) VALUES (:parent)")
+    private static class InsertChild extends NormStatement<ChildParameters, ChildKey> {
+    }
+
+    private static final String PARENT_SQL = "INSERT INTO parent (name) VALUES (?)";
+    private static final String[] PARENT_KEYS = {"parent_id", "version"};
+
+    private static ResultSet keys(long... ids) throws SQLException {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        int[] row = {-1};
+        Mockito.when(rs.next()).then(i -> ++row[0] < ids.length);
+        Mockito.when(rs.getLong(1)).then(i -> ids[row[0]]);
+        Mockito.when(rs.getInt(2)).then(i -> 7);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("id");
+        return rs;
+    }
+
+    @Test
+    public void testKeysIntoParameters() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(PARENT_SQL, PARENT_KEYS)).thenReturn(pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenReturn(1);
+        Mockito.when(pstmt.getGeneratedKeys()).then(i -> keys(42));
+
+        InsertParent insert = new InsertParent();
+        ParentParameters p = new ParentParameters("a");
+        Assert.assertTrue(insert.executeInsert(c, p).isEmpty());
+        Assert.assertEquals(42, p.id);
+        Assert.assertEquals((Integer) 7, p.version);
+        Mockito.verify(pstmt).setString(1, "a");
+
+        // The statement that returns keys is cached apart from the plain one
+        PreparedStatement plain = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(PARENT_SQL)).thenReturn(plain);
+        insert.executeUpdate(c, new ParentParameters("b"));
+        insert.executeInsert(c, new ParentParameters("c"));
+        Mockito.verify(c, Mockito.times(1)).prepareStatement(PARENT_SQL, PARENT_KEYS);
+        Mockito.verify(plain).executeUpdate();
+    }
+
+    @Test
+    public void testKeysAsResults() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement("INSERT INTO child (parent) VALUES (?)", Statement.RETURN_GENERATED_KEYS)).thenReturn(pstmt);
+        Mockito.when(pstmt.getGeneratedKeys()).then(i -> keys(5));
+
+        List<ChildKey> results = new InsertChild().executeInsert(c, new ChildParameters());
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(5, results.get(0).id);
+    }
+
+    @Test
+    public void testBatch() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(PARENT_SQL, PARENT_KEYS)).thenReturn(pstmt);
+        Mockito.when(pstmt.executeBatch()).thenReturn(new int[]{1, 1}, new int[]{1});
+        Mockito.when(pstmt.getGeneratedKeys()).then(i -> keys(10, 11)).then(i -> keys(12));
+
+        List<ParentParameters> params = Arrays.asList(new ParentParameters("a"), new ParentParameters("b"), new ParentParameters("c"));
+        new InsertParent().executeInsertBatch(c, params, 2);
+
+        Mockito.verify(pstmt, Mockito.times(2)).executeBatch();
+        Assert.assertEquals(10, params.get(0).id);
+        Assert.assertEquals(11, params.get(1).id);
+        Assert.assertEquals(12, params.get(2).id);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementGrouped {
+
+    private static final class Row implements NoR {
+
+        private final long orderId;
+        private final String customer;
+        private final String product;
+
+        @ResultConstructor({"orderId", "customer", "product"})
+        Row(long orderId, String customer, String product) {
+            this.orderId = orderId;
+            this.customer = customer;
+            this.product = product;
+        }
+    }
+
+    @SQL("SELECT o.id AS orderId, o.customer, l.product FROM orders o LEFT JOIN lines l ON l.order_id = o.id ORDER BY o.id")
+    private static class OrdersWithLines extends NormStatement<NoP, Row> {
+    }
+
+    private static final class Order {
+
+        final long id;
+        final String customer;
+        final List<String> products = new ArrayList<>();
+
+        Order(long id, String customer) {
+            this.id = id;
+            this.customer = customer;
+        }
+    }
+
+    private final long[] ids = {1, 1, 2, 3, 3, 3};
+    private final String[] products = {"a", "b", null, "c", "d", "e"};
+
+    private int row = -1;
+
+    private PreparedStatement pstmt;
+    private ResultSet rs;
+
+    private Connection connection() throws SQLException {
+        Connection c = Mockito.mock(Connection.class);
+        pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        rs = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(rs);
+        Mockito.when(rs.next()).then(i -> ++row < ids.length);
+        Mockito.when(rs.getLong(1)).then(i -> ids[row]);
+        Mockito.when(rs.getString(2)).then(i -> "customer" + ids[row]);
+        Mockito.when(rs.getString(3)).then(i -> products[row]);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(3);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("orderId");
+        Mockito.when(metaData.getColumnLabel(2)).thenReturn("customer");
+        Mockito.when(metaData.getColumnLabel(3)).thenReturn("product");
+        return c;
+    }
+
+    private Stream<Order> orders(Connection c) throws SQLException {
+        return new OrdersWithLines().executeQueryGrouped(c,
+                r -> r.orderId,
+                r -> new Order(r.orderId, r.customer),
+                (order, r) -> {
+                    if (r.product != null) {
+                        order.products.add(r.product);
+                    }
+                });
+    }
+
+    @Test
+    public void testGrouping() throws Exception {
+        List<Order> orders;
+        try (Stream<Order> results = orders(connection())) {
+            orders = results.collect(Collectors.toList());
+        }
+
+        Assert.assertEquals(3, orders.size());
+        Assert.assertEquals(1L, orders.get(0).id);
+        Assert.assertEquals("customer1", orders.get(0).customer);
+        Assert.assertEquals(2, orders.get(0).products.size());
+        Assert.assertEquals("b", orders.get(0).products.get(1));
+        Assert.assertTrue(orders.get(1).products.isEmpty());
+        Assert.assertEquals(3, orders.get(2).products.size());
+        Mockito.verify(rs).close();
+    }
+
+    @Test
+    public void testOnlyOneParentIsReadAhead() throws Exception {
+        try (Stream<Order> results = orders(connection())) {
+            Iterator<Order> it = results.iterator();
+            Assert.assertEquals(1L, it.next().id);
+
+            // The first row of the second order was read to end the first
+            Assert.assertEquals(2, row);
+            Assert.assertEquals(2L, it.next().id);
+            Assert.assertEquals(3, row);
+        }
+
+        // Closing before the last row cancels the statement
+        Mockito.verify(pstmt).cancel();
+    }
+
+    @Test
+    public void testNullParent() throws Exception {
+        try (Stream<Order> results = new OrdersWithLines().executeQueryGrouped(connection(),
+                r -> r.orderId, r -> r.orderId == 2 ? null : new Order(r.orderId, r.customer), (order, r) -> {
+                })) {
+            results.forEach(order -> Assert.assertNotNull(order));
+            Assert.fail("The parent of order 2 is null");
+        } catch (IllegalStateException expected) {
+            Assert.assertTrue(expected.getMessage(), expected.getMessage().contains("key 2"));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+public class TestNormStatementHints {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    @Hints(fetchSize = 500, maxRows = 1000, queryTimeout = 30, cursor = true)
+    private static class CursorQuery extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    @Hints(adaptiveFetch = true)
+    private static class AdaptiveQuery extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    @Hints(adaptiveFetch = true, fetchMemory = 104_000)
+    private static class LimitedQuery extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private final Connection c = Mockito.mock(Connection.class);
+    private final PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+    private final ResultSet resultSet = Mockito.mock(ResultSet.class);
+    private final AtomicInteger row = new AtomicInteger();
+
+    private Connection connection(int rows, long fetchMillis) throws SQLException {
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).then(i -> {
+            if (fetchMillis > 0) {
+                Thread.sleep(fetchMillis);
+            }
+            return row.incrementAndGet() <= rows;
+        });
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(metaData.getColumnDisplaySize(1)).thenReturn(Integer.MAX_VALUE);
+        return c;
+    }
+
+    @After
+    public void closeStatements() {
+        StatementCache.close(c);
+    }
+
+    @Test
+    public void testHintsAndCursor() throws Exception {
+        connection(3, 0);
+        Mockito.when(c.getAutoCommit()).thenReturn(true);
+
+        Assert.assertEquals(3, new CursorQuery().executeQuery(c, new QueryParameters()).size());
+
+        InOrder order = Mockito.inOrder(c, pstmt);
+        order.verify(c).setAutoCommit(false);
+        order.verify(pstmt).setFetchSize(500);
+        order.verify(pstmt).setMaxRows(1000);
+        order.verify(pstmt).setQueryTimeout(30);
+        order.verify(pstmt).executeQuery();
+
+        // The cached statement goes back to the defaults
+        order.verify(pstmt).setFetchSize(0);
+        order.verify(pstmt).setMaxRows(0);
+        order.verify(pstmt).setQueryTimeout(0);
+        order.verify(c).setAutoCommit(true);
+        Mockito.verify(pstmt, Mockito.never()).setFetchDirection(Mockito.anyInt());
+        Mockito.verify(c, Mockito.never()).rollback();
+    }
+
+    @Test
+    public void testRuntimeOverride() throws Exception {
+        connection(0, 0);
+
+        CursorQuery q = new CursorQuery();
+        q.setFetchSize(20);
+        q.setCursor(false);
+        q.executeQuery(c, new QueryParameters());
+        Mockito.verify(pstmt).setFetchSize(20);
+        Mockito.verify(c, Mockito.never()).getAutoCommit();
+
+        // Other statement objects of the class keep the annotation's hints
+        new CursorQuery().executeQuery(c, new QueryParameters());
+        Mockito.verify(pstmt).setFetchSize(500);
+
+        try {
+            q.setFetchDirection(42);
+            Assert.fail("The direction should be rejected");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCursorFailureRollsBack() throws Exception {
+        connection(0, 0);
+        Mockito.when(c.getAutoCommit()).thenReturn(true);
+        Mockito.when(pstmt.executeQuery()).thenThrow(new SQLException("boom"));
+
+        try (Stream<QueryResult> results = new CursorQuery().executeQueryStream(c, new QueryParameters())) {
+            Assert.fail("The query should fail");
+        } catch (SQLException expected) {
+            // Expected
+        }
+
+        InOrder order = Mockito.inOrder(c);
+        order.verify(c).setAutoCommit(false);
+        order.verify(c).rollback();
+        order.verify(c).setAutoCommit(true);
+    }
+
+    @Test
+    public void testAdaptiveFetchGrowsForSlowFetches() throws Exception {
+        connection(250, 1);
+
+        try (Stream<QueryResult> results = new AdaptiveQuery().executeQueryStream(c, new QueryParameters())) {
+            Assert.assertEquals(250, results.count());
+        }
+
+        Mockito.verify(pstmt).setFetchSize(StatementHints.DEFAULT_FETCH_SIZE);
+        Mockito.verify(resultSet).setFetchSize(StatementHints.DEFAULT_FETCH_SIZE * 2);
+    }
+
+    @Test
+    public void testAdaptiveFetchStaysWithinMemory() throws Exception {
+        connection(250, 1);
+
+        // Each row is assumed to take 1040 bytes, so only 100 fit
+        Assert.assertEquals(250, new LimitedQuery().executeQuery(c, new QueryParameters()).size());
+
+        Mockito.verify(resultSet, Mockito.never()).setFetchSize(Mockito.anyInt());
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementInList {
+
+    private static class QueryParameters implements NoP {
+
+        String status = "open";
+        List<Integer> ids = Arrays.asList(1, 2, 3);
+    }
+
+    private static class QueryResult implements NoR {
+
+        int id;
+    }
+
+    @SQL("SELECT id FROM orders WHERE status = :status AND id IN (:ids) AND note <> ':ids'")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private static class DeleteParameters implements NoP {
+
+        Set<String> codes = new TreeSet<>();
+    }
+
+    @SQL("DELETE FROM country WHERE code IN (:codes)")
+    private static class Delete extends NormStatement<DeleteParameters, NoR> {
+    }
+
+    private static Connection connection(List<String> prepared, PreparedStatement pstmt) throws SQLException {
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.when(c.prepareStatement(Mockito.anyString())).then(i -> {
+            prepared.add(i.getArgument(0));
+            return pstmt;
+        });
+        return c;
+    }
+
+    private static ResultSet rows(int... ids) throws SQLException {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        int[] row = {-1};
+        Mockito.when(rs.next()).then(i -> ++row[0] < ids.length);
+        Mockito.when(rs.getInt(1)).then(i -> ids[row[0]]);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("id");
+        return rs;
+    }
+
+    @Test
+    public void testBucketedExpansion() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+        Mockito.when(pstmt.executeQuery()).then(i -> rows(1, 3));
+
+        Query query = new Query();
+        List<QueryResult> results = query.executeQuery(c);
+        Assert.assertEquals(2, results.size());
+
+        // The last value is repeated up to the size of the bucket, and quoted text is left alone
+        Assert.assertEquals("SELECT id FROM orders WHERE status = ? AND id IN (?, ?, ?, ?) AND note <> ':ids'", prepared.get(0));
+        Mockito.verify(pstmt).setString(1, "open");
+        Mockito.verify(pstmt).setObject(2, 1);
+        Mockito.verify(pstmt).setObject(3, 2);
+        Mockito.verify(pstmt).setObject(4, 3);
+        Mockito.verify(pstmt).setObject(5, 3);
+
+        // Four values share the statement for three
+        QueryParameters p = new QueryParameters();
+        p.ids = Arrays.asList(4, 5, 6, 7);
+        query.executeQuery(c, p);
+        Assert.assertEquals(prepared.get(0), query.sql(p));
+        Assert.assertEquals(1, prepared.size());
+
+        p.ids = Arrays.asList(4, 5, 6, 7, 8);
+        Assert.assertEquals("SELECT id FROM orders WHERE status = ? AND id IN (?, ?, ?, ?, ?, ?, ?, ?) AND note <> ':ids'", query.sql(p));
+    }
+
+    @Test
+    public void testBuckets() {
+        Assert.assertEquals(1, InList.bucket(0));
+        Assert.assertEquals(1, InList.bucket(1));
+        Assert.assertEquals(2, InList.bucket(2));
+        Assert.assertEquals(4, InList.bucket(3));
+        Assert.assertEquals(4, InList.bucket(4));
+        Assert.assertEquals(8, InList.bucket(5));
+        Assert.assertEquals(InList.MAX_VALUES, InList.bucket(InList.MAX_VALUES));
+    }
+
+    @Test
+    public void testEmptyBindsNull() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+
+        new Delete().executeUpdate(c);
+
+        Assert.assertEquals("DELETE FROM country WHERE code IN (?)", prepared.get(0));
+        Mockito.verify(pstmt).setNull(1, Types.NULL);
+    }
+
+    @Test
+    public void testLargeListRejected() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+
+        QueryParameters p = new QueryParameters();
+        p.ids = IntStream.rangeClosed(1, InList.MAX_VALUES + 1).boxed().collect(Collectors.toList());
+
+        // Every way of running the statement refuses the collection rather than splitting it
+        Query query = new Query();
+        assertRejected(() -> query.executeQuery(c, p));
+        assertRejected(() -> query.executeQueryStream(c, p));
+        assertRejected(() -> query.executeQueryColumns(c, p));
+        Mockito.verify(pstmt, Mockito.never()).executeQuery();
+
+        // The statement text stays within the limit
+        Assert.assertTrue(prepared.stream().allMatch(sql -> sql.split("\\?", -1).length - 1 <= InList.MAX_VALUES + 1));
+
+        p.ids = IntStream.rangeClosed(1, InList.MAX_VALUES).boxed().collect(Collectors.toList());
+        Mockito.when(pstmt.executeQuery()).then(i -> rows(1));
+        Assert.assertEquals(1, query.executeQuery(c, p).size());
+    }
+
+    @Test
+    public void testLargeSetRejected() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Connection c = connection(prepared, pstmt);
+
+        DeleteParameters p = new DeleteParameters();
+        IntStream.range(0, 600).forEach(i -> p.codes.add(String.format("%03d", i)));
+
+        assertRejected(() -> new Delete().executeUpdate(c, p));
+        Mockito.verify(pstmt, Mockito.never()).executeUpdate();
+    }
+
+    private interface Execution {
+
+        void run() throws SQLException;
+    }
+
+    private static void assertRejected(Execution e) {
+        try {
+            e.run();
+            Assert.fail("Expected the collection to be rejected");
+        } catch (SQLException ex) {
+            // Binding failures are wrapped the same way as any other failure to prepare the statement
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            Assert.assertTrue(cause.getMessage(), cause.getMessage().contains(String.valueOf(InList.MAX_VALUES)));
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testNoBatch() throws Exception {
+        List<String> prepared = new ArrayList<>();
+        Connection c = connection(prepared, Mockito.mock(PreparedStatement.class));
+
+        new Delete().executeBatch(c, Collections.singletonList(new DeleteParameters()));
+    }
+}
@@ -8,6 +8,7 @@ package com.github.cmcgeemac.norm;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -22,7 +23,11 @@ public class TestNormStatementNoParameters {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.any())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         class r implements NoR {
 
@@ -45,7 +50,11 @@ public class TestNormStatementNoParameters {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.anyString())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         class r implements NoR {
 
@@ -69,7 +78,11 @@ public class TestNormStatementNoParameters {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.anyString())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         class r implements NoR {
 
@@ -111,7 +124,11 @@ public class TestNormStatementNoParameters {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.anyString())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         QUERY.executeQuery(c).forEach(r -> Assert.assertEquals((Integer) 1, r.foo));
     }
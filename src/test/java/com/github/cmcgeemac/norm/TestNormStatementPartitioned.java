@@ -0,0 +1,178 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementPartitioned {
+
+    private static class QueryParameters implements NoP {
+
+        String status = "open";
+    }
+
+    private static class QueryResult implements NoR {
+
+        long id;
+    }
+
+    @SQL("SELECT id FROM orders WHERE status = :status")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final List<Connection> connections = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Each connection gives back every key from the lower bound up to the
+     * upper one, leaving out the upper one unless it is the last range.
+     */
+    private DataSource dataSource(long max, long failAt) throws SQLException {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).then(i -> {
+            Connection c = Mockito.mock(Connection.class);
+            connections.add(c);
+            PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+            Mockito.when(c.prepareStatement(Mockito.anyString())).thenReturn(pstmt);
+
+            long[] bounds = new long[2];
+            Mockito.doAnswer(s -> bounds[0] = (Long) s.getArgument(1)).when(pstmt).setObject(Mockito.eq(2), Mockito.any());
+            Mockito.doAnswer(s -> bounds[1] = (Long) s.getArgument(1)).when(pstmt).setObject(Mockito.eq(3), Mockito.any());
+            Mockito.when(pstmt.executeQuery()).then(e -> {
+                if (bounds[0] == failAt) {
+                    throw new SQLException("boom");
+                }
+                return rows(LongStream.range(bounds[0], bounds[1] == max ? max + 1 : bounds[1]).toArray());
+            });
+            return c;
+        });
+        return ds;
+    }
+
+    private static ResultSet rows(long... ids) throws SQLException {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        int[] row = {-1};
+        Mockito.when(rs.next()).then(i -> ++row[0] < ids.length);
+        Mockito.when(rs.getLong(1)).then(i -> ids[row[0]]);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("id");
+        return rs;
+    }
+
+    @Test
+    public void testRewrite() throws Exception {
+        PartitionedQuery.Rewrite r = PartitionedQuery.rewrite("SELECT id FROM orders WHERE status = ?", "id");
+        Assert.assertEquals("SELECT id FROM orders WHERE (status = ?) AND id >= ? AND id < ?", r.sql);
+        Assert.assertEquals("SELECT id FROM orders WHERE (status = ?) AND id >= ? AND id <= ?", r.lastSQL);
+        Assert.assertEquals(1, r.offset);
+        Assert.assertFalse(r.shifted);
+
+        r = PartitionedQuery.rewrite("SELECT o.id, count(*) FROM orders o GROUP BY o.id HAVING count(*) > ?", "o.id");
+        Assert.assertEquals("SELECT o.id, count(*) FROM orders o WHERE o.id >= ? AND o.id < ? GROUP BY o.id HAVING count(*) > ?", r.sql);
+        Assert.assertEquals(0, r.offset);
+        Assert.assertTrue(r.shifted);
+
+        // The parameters after the range move over
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        PartitionedQuery.shift(pstmt, 1).setString(1, "open");
+        PartitionedQuery.shift(pstmt, 1).setInt(2, 5);
+        Mockito.verify(pstmt).setString(1, "open");
+        Mockito.verify(pstmt).setInt(4, 5);
+
+        try {
+            PartitionedQuery.rewrite("SELECT id FROM a UNION SELECT id FROM b", "id");
+            Assert.fail("A union can't be partitioned");
+        } catch (SQLException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testRanges() {
+        KeyRanges ranges = KeyRanges.of("id", 1, 10, 3);
+        Assert.assertEquals(3, ranges.size());
+        Assert.assertEquals(1L, ranges.bound(0));
+        Assert.assertEquals(4L, ranges.bound(1));
+        Assert.assertEquals(7L, ranges.bound(2));
+        Assert.assertEquals(10L, ranges.bound(3));
+
+        Assert.assertEquals(2, KeyRanges.of("id", 5, 6, 8).size());
+        Assert.assertEquals(4, KeyRanges.of("id", Long.MIN_VALUE, Long.MAX_VALUE, 4).size());
+
+        Instant min = Instant.parse("2024-01-01T00:00:00.000000001Z");
+        KeyRanges times = KeyRanges.of("created", min, min.plusSeconds(60), 6);
+        Assert.assertEquals(6, times.size());
+        Assert.assertEquals(Timestamp.from(min), times.bound(0));
+        Assert.assertEquals(Timestamp.from(min.plusSeconds(60)), times.bound(6));
+    }
+
+    @Test
+    public void testOrdered() throws Exception {
+        DataSource ds = dataSource(1000, -1);
+
+        List<Long> ids;
+        try (Stream<QueryResult> results = new Query().executeQueryPartitioned(ds, new QueryParameters(), KeyRanges.of("id", 1, 1000, 4).ordered(), executor)) {
+            ids = results.map(r -> r.id).collect(Collectors.toList());
+        }
+
+        Assert.assertEquals(LongStream.rangeClosed(1, 1000).boxed().collect(Collectors.toList()), ids);
+        Assert.assertEquals(4, connections.size());
+        for (Connection c : connections) {
+            Mockito.verify(c, Mockito.timeout(1000)).close();
+        }
+    }
+
+    @Test
+    public void testUnordered() throws Exception {
+        DataSource ds = dataSource(5000, -1);
+
+        List<Long> ids;
+        try (Stream<QueryResult> results = new Query().executeQueryPartitioned(ds, new QueryParameters(), KeyRanges.of("id", 1, 5000, 3), executor)) {
+            ids = results.map(r -> r.id).sorted().collect(Collectors.toList());
+        }
+
+        Assert.assertEquals(LongStream.rangeClosed(1, 5000).boxed().collect(Collectors.toList()), ids);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        DataSource ds = dataSource(100, 51);
+
+        try (Stream<QueryResult> results = new Query().executeQueryPartitioned(ds, new QueryParameters(), KeyRanges.of("id", 1, 100, 2).ordered(), executor)) {
+            results.count();
+            Assert.fail("The failure should be thrown");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+    }
+}
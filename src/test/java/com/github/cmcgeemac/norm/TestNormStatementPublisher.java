@@ -0,0 +1,153 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementPublisher {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private static class Collector implements NormFlow.Subscriber<QueryResult> {
+
+        final List<Integer> items = new ArrayList<>();
+        NormFlow.Subscription subscription;
+        Throwable error;
+        boolean complete;
+
+        @Override
+        public void onSubscribe(NormFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(QueryResult item) {
+            items.add(item.foo);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            complete = true;
+        }
+    }
+
+    private final Connection c = Mockito.mock(Connection.class);
+    private final PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+    private final ResultSet resultSet = Mockito.mock(ResultSet.class);
+    private final AtomicInteger row = new AtomicInteger();
+
+    private DataSource dataSource(int rows) throws SQLException {
+        DataSource ds = Mockito.mock(DataSource.class);
+        Mockito.when(ds.getConnection()).thenReturn(c);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).then(i -> row.incrementAndGet() <= rows);
+        Mockito.when(resultSet.getInt(1)).then(i -> row.get());
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        return ds;
+    }
+
+    @Test
+    public void testDemandDriven() throws Exception {
+        DataSource ds = dataSource(5);
+        Collector s = new Collector();
+
+        new Query().executeQueryPublisher(ds, new QueryParameters(), Runnable::run).subscribe(s);
+
+        // Nothing runs until there is demand
+        Mockito.verify(ds, Mockito.never()).getConnection();
+
+        s.subscription.request(2);
+        Assert.assertEquals(2, s.items.size());
+        Assert.assertEquals(2, row.get());
+        Mockito.verify(pstmt).setFetchSize(2);
+
+        s.subscription.request(10);
+        Assert.assertEquals(5, s.items.size());
+        Mockito.verify(resultSet).setFetchSize(10);
+        Assert.assertTrue(s.complete);
+        Assert.assertNull(s.error);
+        Mockito.verify(pstmt, Mockito.never()).cancel();
+        Mockito.verify(resultSet).close();
+        Mockito.verify(c).close();
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Collector s = new Collector();
+
+        new Query().executeQueryPublisher(dataSource(100), new QueryParameters(), Runnable::run).subscribe(s);
+        s.subscription.request(Long.MAX_VALUE - 1);
+        Mockito.verify(pstmt).setFetchSize(ResultPublisher.MAX_FETCH_SIZE);
+
+        Collector cancelling = new Collector() {
+            @Override
+            public void onNext(QueryResult item) {
+                super.onNext(item);
+                if (items.size() == 3) {
+                    subscription.cancel();
+                }
+            }
+        };
+        row.set(0);
+        new Query().executeQueryPublisher(dataSource(100), new QueryParameters(), Runnable::run).subscribe(cancelling);
+        cancelling.subscription.request(Long.MAX_VALUE);
+
+        Assert.assertEquals(3, cancelling.items.size());
+        Assert.assertFalse(cancelling.complete);
+        Mockito.verify(pstmt, Mockito.atLeastOnce()).cancel();
+        Mockito.verify(c, Mockito.times(2)).close();
+    }
+
+    @Test
+    public void testFailureAndInvalidRequest() throws Exception {
+        DataSource ds = dataSource(0);
+        Mockito.when(pstmt.executeQuery()).thenThrow(new SQLException("boom"));
+        Collector s = new Collector();
+
+        new Query().executeQueryPublisher(ds, new QueryParameters(), Runnable::run).subscribe(s);
+        s.subscription.request(1);
+
+        Assert.assertTrue(s.error instanceof SQLException);
+        Mockito.verify(c).close();
+
+        Collector invalid = new Collector();
+        new Query().executeQueryPublisher(ds, new QueryParameters(), Runnable::run).subscribe(invalid);
+        invalid.subscription.request(0);
+        Assert.assertTrue(invalid.error instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementRowConsumer {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private final PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+
+    private Connection connection(int rows) throws SQLException {
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        AtomicInteger row = new AtomicInteger();
+        Mockito.when(resultSet.next()).then(i -> row.incrementAndGet() <= rows);
+        Mockito.when(resultSet.getInt(1)).then(i -> row.get());
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        return c;
+    }
+
+    @Test
+    public void testSingleInstance() throws Exception {
+        List<QueryResult> seen = new ArrayList<>();
+        int[] sum = new int[1];
+
+        int rows = new Query().executeQuery(connection(4), new QueryParameters(), r -> {
+            seen.add(r);
+            sum[0] += r.foo;
+        });
+
+        Assert.assertEquals(4, rows);
+        Assert.assertEquals(1 + 2 + 3 + 4, sum[0]);
+        Assert.assertEquals(4, seen.size());
+        for (QueryResult r : seen) {
+            Assert.assertSame(seen.get(0), r);
+        }
+    }
+
+    @Test
+    public void testConsumerFailure() throws Exception {
+        Connection c = connection(4);
+        try {
+            new Query().executeQuery(c, new QueryParameters(), r -> {
+                throw new SQLException("stop");
+            });
+            Assert.fail("The consumer's exception should be thrown");
+        } catch (SQLException e) {
+            Assert.assertEquals("stop", e.getCause().getMessage());
+        }
+
+        // The statement was abandoned part way through
+        Mockito.verify(pstmt).close();
+    }
+}
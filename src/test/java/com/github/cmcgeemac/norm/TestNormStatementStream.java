@@ -0,0 +1,150 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestNormStatementStream {
+
+    private static class QueryParameters implements NoP {
+
+        int baz = 100;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL(
+            "SELECT foo "
+            + "FROM bar "
+            + "WHERE bar.baz = :baz;")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private static final Query QUERY = new Query();
+
+    @Test
+    public void testFullConsumption() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1).thenReturn(2);
+
+        List<Integer> foos = QUERY.executeQueryStream(c).map(r -> r.foo).collect(Collectors.toList());
+
+        Assert.assertEquals(2, foos.size());
+        Assert.assertEquals((Integer) 1, foos.get(0));
+        Assert.assertEquals((Integer) 2, foos.get(1));
+
+        Mockito.verify(pstmt).setInt(1, 100);
+        Mockito.verify(resultSet).close();
+        Mockito.verify(pstmt, Mockito.never()).cancel();
+
+        // The statement goes back into the cache for the next execution
+        Mockito.verify(pstmt, Mockito.never()).close();
+        QUERY.executeQueryStream(c).count();
+        Mockito.verify(c, Mockito.times(1)).prepareStatement(Mockito.any());
+    }
+
+    @Test
+    public void testEarlyTermination() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
+
+        try (Stream<QueryResult> results = QUERY.executeQueryStream(c, new QueryParameters())) {
+            Assert.assertEquals(1, results.findFirst().get().foo);
+
+            // Nothing is released until the stream is closed
+            Mockito.verify(resultSet, Mockito.never()).close();
+        }
+
+        Mockito.verify(resultSet, Mockito.times(1)).next();
+
+        // A cancelled statement is closed instead of being reused
+        Mockito.verify(pstmt).cancel();
+        Mockito.verify(resultSet).close();
+        Mockito.verify(pstmt).close();
+    }
+
+    @Test
+    public void testErrorWhileReading() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.next()).thenThrow(new SQLException("Connection reset"));
+
+        try {
+            QUERY.executeQueryStream(c).count();
+            Assert.fail("Read error was not reported");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getCause() instanceof SQLException);
+        }
+
+        Mockito.verify(resultSet).close();
+        Mockito.verify(pstmt).close();
+    }
+
+    @Test
+    public void testInlineConstruction() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
+
+        class r implements NoR {
+
+            int foo;
+        }
+
+        try (Stream<r> results = new @SQL("SELECT foo FROM bar WHERE bar.baz = 'abc'") NormStatement<NoP, r>() {
+        }.executeQueryStream(c)) {
+            results.forEach(r -> Assert.assertEquals(1, r.foo));
+        }
+
+        Mockito.verify(pstmt, Mockito.never()).cancel();
+    }
+}
@@ -8,6 +8,8 @@ package com.github.cmcgeemac.norm;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -22,7 +24,11 @@ public class TestNormStatementWithResult {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.any())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         class p implements NoP {
 
@@ -52,7 +58,11 @@ public class TestNormStatementWithResult {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.anyString())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         class p implements NoP {
 
@@ -83,7 +93,11 @@ public class TestNormStatementWithResult {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.anyString())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         class p implements NoP {
 
@@ -135,11 +149,76 @@ public class TestNormStatementWithResult {
         ResultSet resultSet = Mockito.mock(ResultSet.class);
         Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
         Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
-        Mockito.when(resultSet.getInt(Mockito.anyString())).thenReturn(1);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        Mockito.when(resultSet.getInt(1)).thenReturn(1);
 
         QUERY.executeQuery(c).forEach(r -> Assert.assertEquals((Integer) 1, r.foo));
 
         Mockito.verify(pstmt).setInt(1, 100);
     }
 
+    private static class WideResult implements NoR {
+
+        static final String CONSTANT = "ignored";
+
+        String name;
+        Long total;
+        double ratio;
+    }
+
+    @SQL("SELECT * FROM bar")
+    private static class WideQuery extends NormStatement<NoP, WideResult> {
+    }
+
+    @Test
+    public void testColumnsResolvedByIndex() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(4);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("ID");
+        Mockito.when(metaData.getColumnLabel(2)).thenReturn("RATIO");
+        Mockito.when(metaData.getColumnLabel(3)).thenReturn("NAME");
+        Mockito.when(metaData.getColumnLabel(4)).thenReturn("TOTAL");
+        Mockito.when(resultSet.getString(3)).thenReturn("a");
+        Mockito.when(resultSet.getLong(4)).thenReturn(0L);
+        Mockito.when(resultSet.wasNull()).thenReturn(true);
+        Mockito.when(resultSet.getDouble(2)).thenReturn(0.5);
+
+        WideQuery query = new WideQuery();
+        query.executeQuery(c).forEach(r -> {
+            Assert.assertEquals("a", r.name);
+            Assert.assertNull(r.total);
+            Assert.assertEquals(0.5, r.ratio, 0.0);
+        });
+
+        // The same shape of results reuses the plan, a different one is resolved again
+        query.executeQuery(c);
+        Mockito.when(metaData.getColumnLabel(3)).thenReturn("TOTAL");
+        Mockito.when(metaData.getColumnLabel(4)).thenReturn("NAME");
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+        Mockito.when(resultSet.getString(4)).thenReturn("b");
+        query.executeQuery(c).forEach(r -> Assert.assertEquals("b", r.name));
+
+        Mockito.verify(resultSet, Mockito.never()).getString(Mockito.anyString());
+        Mockito.verify(resultSet, Mockito.never()).getObject(Mockito.anyString());
+
+        // A field that isn't in the results is reported before any rows are read
+        Mockito.when(metaData.getColumnCount()).thenReturn(2);
+        try {
+            query.executeQuery(c);
+            Assert.fail("Missing column not detected");
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getMessage().contains("name"));
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestReflectiveStatementHandler {
+
+    private static class QueryParameters implements NoP {
+
+        private long id = 5L;
+        private Integer limit;
+        private double ratio = 0.5;
+        private BigDecimal amount = BigDecimal.TEN;
+        private Object other = "abc";
+        @Type("VARCHAR")
+        private String[] names = {"a", "b"};
+    }
+
+    private static class QueryResult implements NoR {
+
+        private long id;
+        private Integer count;
+        private boolean flag;
+        private String name;
+    }
+
+    @SQL("SELECT id, count, flag, name FROM foo "
+            + "WHERE id = :id AND ratio > :ratio AND amount = :amount AND other = :other AND name = ANY(:names) "
+            + "LIMIT :limit")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @SQL("SELECT id FROM foo WHERE id = :id")
+    private static class Strict extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @Test
+    public void testStrictMode() {
+        long fallbacks = HandlerRegistry.getReflectionFallbackCount();
+
+        HandlerRegistry.setStrict(true);
+        try {
+            new Strict();
+            Assert.fail("Strict mode should forbid reflection");
+        } catch (IllegalStateException expected) {
+            // Expected
+        } finally {
+            HandlerRegistry.setStrict(false);
+        }
+
+        Assert.assertFalse(new Strict().metadata.generated);
+        Assert.assertEquals(fallbacks + 2, HandlerRegistry.getReflectionFallbackCount());
+    }
+
+    @Test
+    public void testTypedBindingAndMapping() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        java.sql.Array array = Mockito.mock(java.sql.Array.class);
+        Mockito.when(c.createArrayOf(Mockito.eq("VARCHAR"), Mockito.any())).thenReturn(array);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(4);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("id");
+        Mockito.when(metaData.getColumnLabel(2)).thenReturn("count");
+        Mockito.when(metaData.getColumnLabel(3)).thenReturn("flag");
+        Mockito.when(metaData.getColumnLabel(4)).thenReturn("name");
+        Mockito.when(resultSet.getLong(1)).thenReturn(7L);
+        Mockito.when(resultSet.getInt(2)).thenReturn(3);
+        Mockito.when(resultSet.getBoolean(3)).thenReturn(true);
+        Mockito.when(resultSet.getString(4)).thenReturn("foo");
+
+        Query query = new Query();
+        Assert.assertFalse(query.metadata.generated);
+        Assert.assertTrue(query.handler instanceof ReflectiveStatementHandler);
+
+        QueryResult r = query.executeQuery(c, new QueryParameters()).get(0);
+        Assert.assertEquals(7L, r.id);
+        Assert.assertEquals((Integer) 3, r.count);
+        Assert.assertTrue(r.flag);
+        Assert.assertEquals("foo", r.name);
+
+        Mockito.verify(pstmt).setLong(1, 5L);
+        Mockito.verify(pstmt).setDouble(2, 0.5);
+        Mockito.verify(pstmt).setBigDecimal(3, BigDecimal.TEN);
+        Mockito.verify(pstmt).setString(4, "abc");
+        Mockito.verify(pstmt).setArray(5, array);
+        Mockito.verify(pstmt).setNull(6, Types.INTEGER);
+    }
+
+    @Test
+    public void testNullsKeepTheirType() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+
+        QueryParameters p = new QueryParameters();
+        p.amount = null;
+        p.other = null;
+        p.names = null;
+        new Query().createPreparedStatement(c, p);
+
+        Mockito.verify(pstmt).setNull(3, Types.NUMERIC);
+        // Nothing says what the type of an Object is
+        Mockito.verify(pstmt).setNull(4, Types.NULL);
+        Mockito.verify(pstmt).setNull(5, Types.ARRAY);
+        Mockito.verify(c, Mockito.never()).createArrayOf(Mockito.any(), Mockito.any());
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestResultCache {
+
+    private static class CodeParameters implements NoP {
+
+        String code = "ca";
+    }
+
+    private static class Country implements NoR {
+
+        String name;
+    }
+
+    @SQL("SELECT name FROM countries c JOIN regions r ON r.id = c.region WHERE code = :code")
+    @CacheResults(maxEntries = 2)
+    private static class CountryName extends NormStatement<CodeParameters, Country> {
+    }
+
+    @SQL("SELECT name FROM countries WHERE code = :code")
+    @CacheResults(maxEntries = 2)
+    private static class CountryByCode extends NormStatement<CodeParameters, Country> {
+    }
+
+    @SQL("SELECT name FROM currencies WHERE code = :code")
+    @CacheResults(ttl = 1, unit = TimeUnit.MILLISECONDS)
+    private static class CurrencyName extends NormStatement<CodeParameters, Country> {
+    }
+
+    @SQL("UPDATE public.\"Regions\" SET name = 'x' WHERE code = :code")
+    private static class RenameRegion extends NormStatement<CodeParameters, NoR> {
+    }
+
+    @SQL("UPDATE cities SET name = 'x' WHERE code = :code")
+    private static class RenameCity extends NormStatement<CodeParameters, NoR> {
+    }
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private Connection connection() throws SQLException {
+        Connection c = Mockito.mock(Connection.class);
+        Mockito.when(c.getAutoCommit()).thenReturn(true);
+        Mockito.when(c.prepareStatement(Mockito.any())).then(i -> {
+            PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+            ResultSet resultSet = Mockito.mock(ResultSet.class);
+            Mockito.when(pstmt.executeQuery()).then(q -> {
+                queries.incrementAndGet();
+                return resultSet;
+            });
+            Mockito.when(resultSet.next()).thenReturn(true, false);
+            Mockito.when(resultSet.getString(1)).thenReturn("Canada");
+            ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+            Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+            Mockito.when(metaData.getColumnCount()).thenReturn(1);
+            Mockito.when(metaData.getColumnLabel(1)).thenReturn("name");
+            return pstmt;
+        });
+        return c;
+    }
+
+    private static CodeParameters code(String code) {
+        CodeParameters p = new CodeParameters();
+        p.code = code;
+        return p;
+    }
+
+    @Test
+    public void testHitsAndInvalidation() throws Exception {
+        Connection c = connection();
+
+        List<Country> first = new CountryName().executeQuery(c, code("ca"));
+        List<Country> second = new CountryName().executeQuery(c, code("ca"));
+        Assert.assertEquals("Canada", second.get(0).name);
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(first.get(0), second.get(0));
+        Assert.assertEquals(1, queries.get());
+
+        // Writes to other tables leave the results alone
+        new RenameCity().executeUpdate(c, code("ca"));
+        new CountryName().executeQuery(c, code("ca"));
+        Assert.assertEquals(1, queries.get());
+
+        // Schemas, quotes and case don't hide the table
+        new RenameRegion().executeUpdate(c, code("ca"));
+        new CountryName().executeQuery(c, code("ca"));
+        Assert.assertEquals(2, queries.get());
+
+        ResultCache.invalidate("countries");
+        new CountryName().executeQuery(c, code("ca"));
+        Assert.assertEquals(3, queries.get());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        Connection c = connection();
+        new CountryName().executeQuery(c, code("jp"));
+        Assert.assertEquals(1, queries.get());
+
+        // Inside a transaction the cache is neither read nor filled
+        Connection tx = connection();
+        Mockito.when(tx.getAutoCommit()).thenReturn(false);
+        new CountryName().executeQuery(tx, code("jp"));
+        new CountryName().executeQuery(tx, code("kr"));
+        Assert.assertEquals(3, queries.get());
+
+        new CountryName().executeQuery(c, code("jp"));
+        new CountryName().executeQuery(c, code("kr"));
+        Assert.assertEquals(4, queries.get());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        Connection c = connection();
+        long evictions = ResultCache.getEvictionCount();
+
+        new CountryByCode().executeQuery(c, code("us"));
+        new CountryByCode().executeQuery(c, code("mx"));
+        new CountryByCode().executeQuery(c, code("us"));
+        new CountryByCode().executeQuery(c, code("fr"));
+        Assert.assertEquals(evictions + 1, ResultCache.getEvictionCount());
+
+        // The least recently used one is gone
+        new CountryByCode().executeQuery(c, code("us"));
+        Assert.assertEquals(3, queries.get());
+        new CountryByCode().executeQuery(c, code("mx"));
+        Assert.assertEquals(4, queries.get());
+    }
+
+    @Test
+    public void testExpiryAndDisabled() throws Exception {
+        Connection c = connection();
+
+        new CurrencyName().executeQuery(c, code("cad"));
+        Thread.sleep(5);
+        new CurrencyName().executeQuery(c, code("cad"));
+        Assert.assertEquals(2, queries.get());
+
+        ResultCache.setEnabled(false);
+        try {
+            new CountryName().executeQuery(c, code("de"));
+            new CountryName().executeQuery(c, code("de"));
+            Assert.assertEquals(4, queries.get());
+        } finally {
+            ResultCache.setEnabled(true);
+        }
+    }
+
+    @Test
+    public void testTableNames() throws Exception {
+        Assert.assertEquals(new HashSet<>(Arrays.asList("foo", "bar")),
+                Util.tableNames(CCJSqlParserUtil.parse("SELECT a FROM s.\"Foo\" WHERE b IN (SELECT b FROM Bar)")));
+    }
+}
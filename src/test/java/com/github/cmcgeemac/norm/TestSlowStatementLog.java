@@ -0,0 +1,174 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestSlowStatementLog {
+
+    private static class UpdateParameters implements NoP {
+
+        int id = 7;
+        @Redact
+        String password = "hunter2";
+        @Redact
+        @Type("INTEGER")
+        Integer[] pins = {1, 2, 3};
+        String name = "bob";
+    }
+
+    @SQL("UPDATE users SET password = :password, pins = :pins, name = :name WHERE id = :id")
+    private static class Update extends NormStatement<UpdateParameters, NoR> {
+    }
+
+    private static class QueryParameters implements NoP {
+
+        int id = 7;
+    }
+
+    private static class QueryResult implements NoR {
+
+        String name;
+    }
+
+    @SQL("SELECT name FROM users WHERE id = :id")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    private final List<LogRecord> records = new ArrayList<>();
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private SlowStatementLog slow;
+
+    @Before
+    public void addHandler() {
+        Logger.getLogger(SlowStatementLog.class.getName()).addHandler(handler);
+    }
+
+    @After
+    public void removeListener() {
+        Logger.getLogger(SlowStatementLog.class.getName()).removeHandler(handler);
+        if (slow != null) {
+            StatementListeners.remove(slow);
+        }
+    }
+
+    @Test
+    public void testRedactedEntry() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.startsWith("UPDATE"))).thenReturn(pstmt);
+        Mockito.when(c.getAutoCommit()).thenReturn(true);
+        Mockito.when(pstmt.executeUpdate()).thenReturn(1);
+
+        slow = new SlowStatementLog(0, TimeUnit.MILLISECONDS);
+        slow.setPlanCapture("EXPLAIN ", 1, TimeUnit.HOURS);
+        StatementListeners.add(slow);
+
+        new Update().executeUpdate(c, new UpdateParameters());
+
+        Assert.assertEquals(1, records.size());
+        SlowStatementLog.Entry entry = (SlowStatementLog.Entry) records.get(0).getParameters()[0];
+        Assert.assertEquals(Update.class, entry.getStatementClass());
+        Assert.assertEquals(1, entry.getUpdates());
+        Assert.assertEquals("7", entry.getParameters().get("id"));
+        Assert.assertEquals("<redacted String(7)>", entry.getParameters().get("password"));
+        Assert.assertEquals("<redacted Integer[3]>", entry.getParameters().get("pins"));
+        Assert.assertEquals("'bob'", entry.getParameters().get("name"));
+        Assert.assertFalse(records.get(0).getMessage(), records.get(0).getMessage().contains("hunter2"));
+
+        // Writes are never explained
+        Assert.assertNull(entry.getPlan());
+        Mockito.verify(c, Mockito.never()).prepareStatement(Mockito.startsWith("EXPLAIN "));
+    }
+
+    @Test
+    public void testPlanCapture() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.startsWith("SELECT"))).thenReturn(pstmt);
+        Mockito.when(pstmt.executeQuery()).then(i -> empty());
+
+        PreparedStatement explain = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.startsWith("EXPLAIN "))).thenReturn(explain);
+        ResultSet plan = Mockito.mock(ResultSet.class);
+        Mockito.when(explain.executeQuery()).thenReturn(plan);
+        Mockito.when(plan.next()).thenReturn(true, true, false);
+        Mockito.when(plan.getString(1)).thenReturn("Index Scan using users_pkey", "  Index Cond: (id = 7)");
+
+        slow = new SlowStatementLog(0, TimeUnit.MILLISECONDS);
+        slow.setPlanCapture("EXPLAIN ", 1, TimeUnit.HOURS);
+        StatementListeners.add(slow);
+
+        // Not inside a transaction, which a failed EXPLAIN could abort
+        Query query = new Query();
+        Mockito.when(c.getAutoCommit()).thenReturn(false);
+        query.executeQuery(c, new QueryParameters());
+        Mockito.when(c.getAutoCommit()).thenReturn(true);
+        query.executeQuery(c, new QueryParameters());
+        query.executeQuery(c, new QueryParameters());
+
+        Assert.assertEquals(3, records.size());
+        Assert.assertNull(((SlowStatementLog.Entry) records.get(0).getParameters()[0]).getPlan());
+        Assert.assertEquals("Index Scan using users_pkey\n  Index Cond: (id = 7)",
+                ((SlowStatementLog.Entry) records.get(1).getParameters()[0]).getPlan());
+
+        // The plan is only captured once per interval
+        Assert.assertNull(((SlowStatementLog.Entry) records.get(2).getParameters()[0]).getPlan());
+        Mockito.verify(explain).setInt(1, 7);
+        Mockito.verify(c, Mockito.times(1)).prepareStatement(Mockito.startsWith("EXPLAIN "));
+    }
+
+    private static ResultSet empty() throws SQLException {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(rs.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("name");
+        return rs;
+    }
+
+    @Test
+    public void testBelowThreshold() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+
+        slow = new SlowStatementLog(1, TimeUnit.HOURS);
+        StatementListeners.add(slow);
+
+        new Update().executeUpdate(c, new UpdateParameters());
+        Assert.assertTrue(records.isEmpty());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestStatementCache {
+
+    private static class UpdateParameters implements NoP {
+
+        int baz = 1;
+    }
+
+    @SQL("UPDATE foo SET bar = 1 WHERE foo.baz = :baz")
+    private static class Update extends NormStatement<UpdateParameters, NoR> {
+    }
+
+    @SQL("UPDATE foo SET bar = 2 WHERE foo.baz = :baz")
+    private static class OtherUpdate extends NormStatement<UpdateParameters, NoR> {
+    }
+
+    @Test
+    public void testReuseAcrossExecutionsAndInstances() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+
+        long hits = StatementCache.getHitCount();
+        long misses = StatementCache.getMissCount();
+
+        new Update().executeUpdate(c);
+        new Update().executeUpdate(c);
+        new Update().executeUpdate(c, new UpdateParameters());
+
+        Mockito.verify(c, Mockito.times(1)).prepareStatement(Mockito.any());
+        Mockito.verify(pstmt, Mockito.times(3)).executeUpdate();
+        Mockito.verify(pstmt, Mockito.never()).close();
+        Assert.assertTrue(StatementCache.getHitCount() - hits >= 2);
+        Assert.assertTrue(StatementCache.getMissCount() - misses >= 1);
+
+        StatementCache.close(c);
+        Mockito.verify(pstmt).close();
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        int capacity = StatementCache.getCapacity();
+        StatementCache.setCapacity(1);
+
+        try {
+            Connection c = Mockito.mock(Connection.class);
+            PreparedStatement first = Mockito.mock(PreparedStatement.class);
+            PreparedStatement second = Mockito.mock(PreparedStatement.class);
+            Mockito.when(c.prepareStatement("UPDATE foo SET bar = 1 WHERE foo.baz = ?")).thenReturn(first);
+            Mockito.when(c.prepareStatement("UPDATE foo SET bar = 2 WHERE foo.baz = ?")).thenReturn(second);
+
+            new Update().executeUpdate(c);
+            new OtherUpdate().executeUpdate(c);
+
+            // The least recently used one is closed to make room
+            Mockito.verify(first).close();
+            Mockito.verify(second, Mockito.never()).close();
+
+            StatementCache.close(c);
+            Mockito.verify(second).close();
+        } finally {
+            StatementCache.setCapacity(capacity);
+        }
+    }
+
+    @Test
+    public void testFailedStatementIsNotReused() throws Exception {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenThrow(new SQLException("Deadlock"));
+
+        try {
+            new Update().executeUpdate(c);
+            Assert.fail("Exception not thrown");
+        } catch (SQLException e) {
+            // Expected
+        }
+
+        Mockito.verify(pstmt).close();
+    }
+
+    @Test
+    public void testClosedConnection() throws Exception {
+        Connection other = Mockito.mock(Connection.class);
+        Mockito.when(other.prepareStatement(Mockito.any())).thenReturn(Mockito.mock(PreparedStatement.class));
+        new Update().executeUpdate(other);
+
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        new Update().executeUpdate(c);
+        Mockito.when(c.isClosed()).thenReturn(true);
+
+        // The connections that are still in use sweep it up before long
+        Update update = new Update();
+        for (int i = 0; i < StatementCache.SWEEP_INTERVAL; i++) {
+            update.executeUpdate(other);
+        }
+
+        Mockito.verify(pstmt).close();
+        Assert.assertFalse(StatementCache.isCached(c, update.sql(null)));
+        StatementCache.close(other);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        int capacity = StatementCache.getCapacity();
+        StatementCache.setCapacity(0);
+
+        try {
+            Connection c = Mockito.mock(Connection.class);
+            PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+            Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+
+            new Update().executeUpdate(c);
+            new Update().executeUpdate(c);
+
+            Mockito.verify(c, Mockito.times(2)).prepareStatement(Mockito.any());
+            Mockito.verify(pstmt, Mockito.times(2)).close();
+        } finally {
+            StatementCache.setCapacity(capacity);
+        }
+    }
+}
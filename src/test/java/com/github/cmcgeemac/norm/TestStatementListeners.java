@@ -0,0 +1,162 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package com.github.cmcgeemac.norm;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class TestStatementListeners {
+
+    private static class QueryParameters implements NoP {
+
+        int id = 1;
+    }
+
+    private static class QueryResult implements NoR {
+
+        int foo;
+    }
+
+    @SQL("SELECT foo FROM bar WHERE id = :id")
+    private static class Query extends NormStatement<QueryParameters, QueryResult> {
+    }
+
+    @SQL("UPDATE bar SET foo = 1 WHERE id = :id")
+    private static class Update extends NormStatement<QueryParameters, NoR> {
+    }
+
+    private final List<StatementListener> added = new ArrayList<>();
+
+    private void add(StatementListener l) {
+        StatementListeners.add(l);
+        added.add(l);
+    }
+
+    @After
+    public void removeListeners() {
+        added.forEach(StatementListeners::remove);
+    }
+
+    private static Connection queryConnection(int rows) throws SQLException {
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        ResultSet resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+        Boolean[] more = new Boolean[rows];
+        Arrays.fill(more, true);
+        Mockito.when(resultSet.next()).thenReturn(rows > 0, Arrays.copyOfRange(more, Math.min(1, rows), rows)).thenReturn(false);
+        ResultSetMetaData metaData = Mockito.mock(ResultSetMetaData.class);
+        Mockito.when(resultSet.getMetaData()).thenReturn(metaData);
+        Mockito.when(metaData.getColumnCount()).thenReturn(1);
+        Mockito.when(metaData.getColumnLabel(1)).thenReturn("foo");
+        return c;
+    }
+
+    @Test
+    public void testQueryExecution() throws Exception {
+        List<StatementExecution> executions = new ArrayList<>();
+        add(executions::add);
+
+        Assert.assertEquals(3, new Query().executeQuery(queryConnection(3), new QueryParameters()).size());
+
+        Assert.assertEquals(1, executions.size());
+        StatementExecution x = executions.get(0);
+        Assert.assertEquals(Query.class, x.getStatementClass());
+        Assert.assertEquals(StatementExecution.Kind.QUERY, x.getKind());
+        Assert.assertEquals("SELECT foo FROM bar WHERE id = ?", x.getSQL());
+        Assert.assertEquals(3, x.getRows());
+        Assert.assertNull(x.getFailure());
+
+        long phases = 0;
+        for (StatementExecution.Phase p : StatementExecution.Phase.values()) {
+            Assert.assertTrue(x.getNanos(p) >= 0);
+            phases += x.getNanos(p);
+        }
+        Assert.assertTrue(x.getTotalNanos() >= phases);
+    }
+
+    @Test
+    public void testFailureAndRecorder() throws Exception {
+        StatementRecorder recorder = new StatementRecorder();
+        add(recorder);
+
+        Connection c = Mockito.mock(Connection.class);
+        PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+        Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+        Mockito.when(pstmt.executeUpdate()).thenReturn(2).thenThrow(new SQLException("boom"));
+
+        Update update = new Update();
+        Assert.assertEquals(2, update.executeUpdate(c, new QueryParameters()));
+        try {
+            update.executeUpdate(c, new QueryParameters());
+            Assert.fail("The failure should be thrown");
+        } catch (SQLException expected) {
+            // Expected
+        }
+
+        StatementRecorder.Stats stats = recorder.getStats(Update.class);
+        Assert.assertEquals(2, stats.getExecutions());
+        Assert.assertEquals(1, stats.getFailures());
+        Assert.assertEquals(2, stats.getUpdates());
+        Assert.assertEquals(0, stats.getLatency(StatementExecution.Phase.MAP).getCount());
+        Assert.assertEquals(2, stats.getLatency(StatementExecution.Phase.BIND).getCount());
+        Assert.assertNull(recorder.getStats(Query.class));
+    }
+
+    @Test
+    public void testFailingListenerIgnored() throws Exception {
+        add(x -> {
+            throw new IllegalStateException("listener");
+        });
+        StatementRecorder recorder = new StatementRecorder();
+        add(recorder);
+
+        Assert.assertEquals(1, new Query().executeQuery(queryConnection(1), new QueryParameters()).size());
+        Assert.assertEquals(1, recorder.getStats(Query.class).getRows());
+
+        added.forEach(StatementListeners::remove);
+        new Query().executeQuery(queryConnection(1), new QueryParameters());
+        Assert.assertEquals(1, recorder.getStats(Query.class).getExecutions());
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        Assert.assertEquals(0, h.getPercentileNanos(0.5));
+
+        for (long i = 1; i <= 1000; i++) {
+            h.record(i * 1000);
+        }
+
+        Assert.assertEquals(1000, h.getCount());
+        Assert.assertEquals(1_000_000, h.getMaxNanos());
+        Assert.assertEquals(500_500, h.getMeanNanos());
+
+        long p50 = h.getPercentileNanos(0.5);
+        Assert.assertTrue(String.valueOf(p50), p50 >= 500_000 && p50 <= 500_000 * 1.25);
+        long p99 = h.getPercentileNanos(0.99);
+        Assert.assertTrue(String.valueOf(p99), p99 >= 990_000 && p99 <= 1_000_000);
+        Assert.assertEquals(1_000_000, h.getPercentileNanos(1));
+
+        // Every value falls inside its bucket
+        for (long v : new long[]{0, 1, 3, 4, 5, 7, 8, 1023, 1024, 123_456_789, Long.MAX_VALUE}) {
+            int b = LatencyHistogram.bucket(v);
+            Assert.assertTrue(v + " in " + b, v <= LatencyHistogram.upperBound(b));
+            Assert.assertTrue(v + " in " + b, b == 0 || v > LatencyHistogram.upperBound(b - 1));
+        }
+    }
+}
@@ -5,13 +5,29 @@
  */
 package com.github.cmcgeemac.norm;
 
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
 import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.statement.Statement;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
 
 public class TestStatementProcessor {
 
@@ -69,4 +85,296 @@ public class TestStatementProcessor {
         });
         Assert.assertEquals(Arrays.asList("id", "bar"), results);
     }
+
+    @Test
+    public void testResultColumnOrdinals() throws Exception {
+        Map<String, Integer> ordinals = Util.resultColumnOrdinals(CCJSqlParserUtil.parse(
+                "SELECT foo.id, \"Name\", count(*) AS total, id + 1 FROM foo"));
+        Assert.assertEquals((Integer) 1, ordinals.get("id"));
+        Assert.assertEquals((Integer) 2, ordinals.get("name"));
+        Assert.assertEquals((Integer) 3, ordinals.get("total"));
+        Assert.assertEquals(3, ordinals.size());
+
+        // Positions aren't known without the database
+        Assert.assertEquals(Collections.emptyMap(), Util.resultColumnOrdinals(CCJSqlParserUtil.parse("SELECT foo.*, id FROM foo")));
+        Assert.assertEquals(Collections.emptyMap(), Util.resultColumnOrdinals(CCJSqlParserUtil.parse("UPDATE foo SET id = 1")));
+    }
+
+    private static final String SOURCE = "package sample;\n"
+            + "\n"
+            + "import com.github.cmcgeemac.norm.*;\n"
+            + "\n"
+            + "public class Outer {\n"
+            + "    public static class Params implements NoP {\n"
+            + "        int id = 3;\n"
+            + "    }\n"
+            + "\n"
+            + "    public class Result implements NoR {\n"
+            + "        String name;\n"
+            + "        Integer count;\n"
+            + "        long id;\n"
+            + "    }\n"
+            + "\n"
+            + "    @SQL(\"SELECT id, \\\"Name\\\", count(*) AS count FROM foo WHERE id = :id GROUP BY id, \\\"Name\\\"\")\n"
+            + "    public class Query extends NormStatement<Params, Result> {\n"
+            + "    }\n"
+            + "\n"
+            + "    public static class ListParams implements NoP {\n"
+            + "        String name = \"bar\";\n"
+            + "        java.util.List<Long> ids = java.util.Arrays.asList(1L, 2L, 3L);\n"
+            + "        Integer limit = 10;\n"
+            + "    }\n"
+            + "\n"
+            + "    @SQL(\"UPDATE foo SET \\\"Name\\\" = :name WHERE id IN (:ids) AND count < :limit\")\n"
+            + "    public class Rename extends NormStatement<ListParams, NoR> {\n"
+            + "    }\n"
+            + "\n"
+            + "    public static final class Point implements NoR {\n"
+            + "        final long id;\n"
+            + "        final Integer count;\n"
+            + "\n"
+            + "        Point(long id, Integer count) {\n"
+            + "            this.id = id;\n"
+            + "            this.count = count;\n"
+            + "        }\n"
+            + "    }\n"
+            + "\n"
+            + "    @SQL(\"SELECT count, id FROM points\")\n"
+            + "    public class Points extends NormStatement<NoP, Point> {\n"
+            + "    }\n"
+            + "}\n";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static String classpath() throws Exception {
+        return Arrays.asList(NormStatement.class, CCJSqlParserUtil.class).stream()
+                .map(c -> {
+                    try {
+                        return new File(c.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                })
+                .reduce((a, b) -> a + File.pathSeparator + b)
+                .get();
+    }
+
+    @Test
+    public void testGeneratedHandlerUsesOrdinalsAndFactories() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests must run with a JDK", compiler);
+
+        Path src = tmp.newFolder("src").toPath();
+        Path out = tmp.newFolder("out").toPath();
+        Path file = src.resolve("sample").resolve("Outer.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        int rc = compiler.run(null, null, null,
+                "-classpath", classpath(),
+                "-processor", SQLStatementProcessor.class.getName(),
+                "-s", out.toString(),
+                "-d", out.toString(),
+                file.toString());
+        Assert.assertEquals(0, rc);
+
+        String generated = new String(Files.readAllBytes(out.resolve("sample").resolve("OuterQueryNormHandler.java")), StandardCharsets.UTF_8);
+        Assert.assertTrue(generated, generated.contains("r.id = rs.getLong(1);"));
+        Assert.assertTrue(generated, generated.contains("r.name = rs.getString(2);"));
+        Assert.assertTrue(generated, generated.contains("r.count = rs.getInt(3);"));
+        Assert.assertTrue(generated, generated.contains("return new sample.Outer.Params();"));
+        Assert.assertTrue(generated, generated.contains("((sample.Outer) outer).new Result();"));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{out.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> outerClass = loader.loadClass("sample.Outer");
+            Object outer = outerClass.getDeclaredConstructor().newInstance();
+            Class<?> queryClass = loader.loadClass("sample.Outer$Query");
+            @SuppressWarnings("unchecked")
+            NormStatement<NoP, NoR> query = (NormStatement<NoP, NoR>) queryClass.getConstructor(outerClass).newInstance(outer);
+
+            Assert.assertTrue(query.metadata.generated);
+
+            Connection c = Mockito.mock(Connection.class);
+            PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+            Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+            ResultSet resultSet = Mockito.mock(ResultSet.class);
+            Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+            Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+            Mockito.when(resultSet.getLong(1)).thenReturn(3L);
+            Mockito.when(resultSet.getString(2)).thenReturn("foo");
+            Mockito.when(resultSet.getInt(3)).thenReturn(0);
+            Mockito.when(resultSet.wasNull()).thenReturn(true);
+
+            List<NoR> results = query.executeQuery(c);
+            Assert.assertEquals(1, results.size());
+            Assert.assertEquals(outerClass.getName() + "$Result", results.get(0).getClass().getName());
+
+            Mockito.verify(pstmt).setInt(1, 3);
+            // Columns are never looked up by name
+            Mockito.verify(resultSet, Mockito.never()).getMetaData();
+            Mockito.verify(resultSet, Mockito.never()).getString(Mockito.anyString());
+
+            // The columnar mode uses the same ordinals
+            Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+            ResultColumns<NoR> columns = query.executeQueryColumns(c);
+            Assert.assertArrayEquals(new long[]{3L}, columns.getLongs("id"));
+            Assert.assertEquals("foo", columns.getObjects("name")[0]);
+            Assert.assertTrue(columns.isNull("count", 0));
+            Mockito.verify(resultSet, Mockito.never()).findColumn(Mockito.anyString());
+        }
+    }
+
+    @Test
+    public void testGeneratedHandlerExpandsCollections() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests must run with a JDK", compiler);
+
+        Path src = tmp.newFolder("src").toPath();
+        Path out = tmp.newFolder("out").toPath();
+        Path file = src.resolve("sample").resolve("Outer.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        int rc = compiler.run(null, null, null,
+                "-classpath", classpath(),
+                "-processor", SQLStatementProcessor.class.getName(),
+                "-s", out.toString(),
+                "-d", out.toString(),
+                file.toString());
+        Assert.assertEquals(0, rc);
+
+        String generated = new String(Files.readAllBytes(out.resolve("sample").resolve("OuterRenameNormHandler.java")), StandardCharsets.UTF_8);
+        Assert.assertTrue(generated, generated.contains("idx = com.github.cmcgeemac.norm.InList.bind(pstmt, idx, p.ids);"));
+        Assert.assertTrue(generated, generated.contains("public int setParameters(sample.Outer.ListParams p, PreparedStatement pstmt, Connection conn, int idx)"));
+        // A null limit keeps the type of the parameter rather than failing to unbox
+        Assert.assertTrue(generated, generated.contains("pstmt.setNull(idx++, java.sql.Types.INTEGER);"));
+        Assert.assertTrue(generated, generated.contains("pstmt.setNull(idx++, java.sql.Types.VARCHAR);"));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{out.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> outerClass = loader.loadClass("sample.Outer");
+            Object outer = outerClass.getDeclaredConstructor().newInstance();
+            Class<?> renameClass = loader.loadClass("sample.Outer$Rename");
+            @SuppressWarnings("unchecked")
+            NormStatement<NoP, NoR> rename = (NormStatement<NoP, NoR>) renameClass.getConstructor(outerClass).newInstance(outer);
+
+            Assert.assertTrue(rename.metadata.generated);
+
+            Connection c = Mockito.mock(Connection.class);
+            PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+            Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+            Mockito.when(pstmt.executeUpdate()).thenReturn(3);
+
+            Assert.assertEquals(3, rename.executeUpdate(c));
+
+            Mockito.verify(c).prepareStatement("UPDATE foo SET \"Name\" = ? WHERE id IN (?, ?, ?, ?) AND count < ?");
+            Mockito.verify(pstmt).setString(1, "bar");
+            Mockito.verify(pstmt).setObject(2, 1L);
+            Mockito.verify(pstmt).setObject(3, 2L);
+            Mockito.verify(pstmt, Mockito.times(2)).setObject(Mockito.anyInt(), Mockito.eq(3L));
+            Mockito.verify(pstmt).setObject(5, 3L);
+            Mockito.verify(pstmt).setInt(6, 10);
+        }
+    }
+
+    @Test
+    public void testHandlerIndex() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests must run with a JDK", compiler);
+
+        Path src = tmp.newFolder("src").toPath();
+        Path out = tmp.newFolder("out").toPath();
+        Path file = src.resolve("sample").resolve("Outer.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        int rc = compiler.run(null, null, null,
+                "-classpath", classpath(),
+                "-processor", SQLStatementProcessor.class.getName(),
+                "-s", out.toString(),
+                "-d", out.toString(),
+                file.toString());
+        Assert.assertEquals(0, rc);
+
+        List<String> index = Files.readAllLines(out.resolve(HandlerRegistry.INDEX), StandardCharsets.UTF_8);
+        Assert.assertTrue(index.toString(), index.contains("sample.Outer$Query=sample.NormHandlerFactory"));
+        Assert.assertTrue(index.toString(), index.contains("sample.Outer$Rename=sample.NormHandlerFactory"));
+
+        String generated = new String(Files.readAllBytes(out.resolve("sample").resolve("NormHandlerFactory.java")), StandardCharsets.UTF_8);
+        Assert.assertTrue(generated, generated.contains("return new sample.OuterQueryNormHandler();"));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{out.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> queryClass = loader.loadClass("sample.Outer$Query");
+            Assert.assertEquals("sample.OuterQueryNormHandler", HandlerRegistry.find(queryClass).getClass().getName());
+
+            HandlerFactory factory = (HandlerFactory) loader.loadClass("sample.NormHandlerFactory").getDeclaredConstructor().newInstance();
+            Assert.assertNull(factory.create("sample.Outer$Missing"));
+        }
+
+        // Handlers left out of the index are still found by their name
+        Files.delete(out.resolve(HandlerRegistry.INDEX));
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{out.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> renameClass = loader.loadClass("sample.Outer$Rename");
+            Assert.assertEquals("sample.OuterRenameNormHandler", HandlerRegistry.find(renameClass).getClass().getName());
+        }
+    }
+
+    @Test
+    public void testGeneratedHandlerConstructsResults() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests must run with a JDK", compiler);
+
+        Path src = tmp.newFolder("src").toPath();
+        Path out = tmp.newFolder("out").toPath();
+        Path file = src.resolve("sample").resolve("Outer.java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+
+        int rc = compiler.run(null, null, null,
+                "-classpath", classpath(),
+                "-processor", SQLStatementProcessor.class.getName(),
+                "-s", out.toString(),
+                "-d", out.toString(),
+                file.toString());
+        Assert.assertEquals(0, rc);
+
+        String generated = new String(Files.readAllBytes(out.resolve("sample").resolve("OuterPointsNormHandler.java")), StandardCharsets.UTF_8);
+        Assert.assertTrue(generated, generated.contains("c0 = rs.getLong(2);"));
+        Assert.assertTrue(generated, generated.contains("c1 = rs.getInt(1);"));
+        Assert.assertTrue(generated, generated.contains("return new sample.Outer.Point(c0, c1);"));
+
+        // The final fields are only set by the constructor, and there is no default one
+        Assert.assertFalse(generated, generated.contains("r.id ="));
+        Assert.assertTrue(generated, generated.contains("No result class constructor could be found."));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{out.toUri().toURL()}, getClass().getClassLoader())) {
+            Class<?> outerClass = loader.loadClass("sample.Outer");
+            Object outer = outerClass.getDeclaredConstructor().newInstance();
+            Class<?> pointsClass = loader.loadClass("sample.Outer$Points");
+            @SuppressWarnings("unchecked")
+            NormStatement<NoP, NoR> points = (NormStatement<NoP, NoR>) pointsClass.getConstructor(outerClass).newInstance(outer);
+
+            Assert.assertTrue(points.metadata.generated);
+            Assert.assertTrue(points.handler.isConstructed());
+
+            Connection c = Mockito.mock(Connection.class);
+            PreparedStatement pstmt = Mockito.mock(PreparedStatement.class);
+            Mockito.when(c.prepareStatement(Mockito.any())).thenReturn(pstmt);
+            ResultSet resultSet = Mockito.mock(ResultSet.class);
+            Mockito.when(pstmt.executeQuery()).thenReturn(resultSet);
+            Mockito.when(resultSet.next()).thenReturn(true).thenReturn(false);
+            Mockito.when(resultSet.getLong(2)).thenReturn(4L);
+            Mockito.when(resultSet.getInt(1)).thenReturn(9);
+
+            List<NoR> results = points.executeQuery(c);
+            Assert.assertEquals(1, results.size());
+            Class<?> pointClass = loader.loadClass("sample.Outer$Point");
+            java.lang.reflect.Field id = pointClass.getDeclaredField("id");
+            java.lang.reflect.Field count = pointClass.getDeclaredField("count");
+            id.setAccessible(true);
+            count.setAccessible(true);
+            Assert.assertEquals(4L, id.get(results.get(0)));
+            Assert.assertEquals(9, count.get(results.get(0)));
+        }
+    }
 }